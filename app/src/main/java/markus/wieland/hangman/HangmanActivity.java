@@ -3,6 +3,7 @@ package markus.wieland.hangman;
 import android.os.Bundle;
 import android.view.WindowManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import markus.wieland.games.GameActivity;
@@ -14,6 +15,7 @@ import markus.wieland.games.persistence.GameSaver;
 import markus.wieland.games.screen.view.EndScreenView;
 import markus.wieland.games.screen.view.StartScreenView;
 import markus.wieland.hangman.database.HangmanRepository;
+import markus.wieland.hangman.database.PendingWritesJobService;
 import markus.wieland.hangman.database.models.GameHistory;
 import markus.wieland.hangman.database.models.LetterTry;
 
@@ -83,6 +85,9 @@ public class HangmanActivity extends GameActivity<HangmanConfiguration, Highscor
     protected void onStop() {
         if (game != null && gameSaver != null && game.isRunning())
             gameSaver.save(game.getGameState());
+        // A job keeps the process alive until the queued games are written, onStop itself never waits for the disk
+        if (repository != null && repository.hasPendingWrites())
+            PendingWritesJobService.schedule(this);
         super.onStop();
     }
 
@@ -100,7 +105,7 @@ public class HangmanActivity extends GameActivity<HangmanConfiguration, Highscor
         
         try {
             // Get letter tries from the game
-            List<LetterTry> letterTries = game.getLetterTries();
+            List<LetterTry> letterTries = new ArrayList<>(game.getLetterTries());
             
             // Count wrong attempts
             int wrongAttempts = 0;
@@ -119,8 +124,8 @@ public class HangmanActivity extends GameActivity<HangmanConfiguration, Highscor
                 isCustomWord
             );
             
-            // Save to database
-            repository.saveGame(gameHistory, letterTries);
+            // Save to database in the background, the end screen never waits for the disk
+            repository.enqueueGame(gameHistory, letterTries);
         } catch (Exception e) {
             e.printStackTrace();
         }
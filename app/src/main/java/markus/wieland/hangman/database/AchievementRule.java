@@ -0,0 +1,200 @@
+package markus.wieland.hangman.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.List;
+
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * The achievement rules and how a finished game advances them.
+ * Every rule keeps a single progress value in the achievements table that a game changes with one
+ * constant-time update: a counter adds the game's contribution, a run adds one or starts over and a
+ * letter set ORs in the game's letters as a bitmask. No rule ever reads the game history.
+ *
+ * When the table is created the progress is seeded from the maintained statistics instead, so
+ * players with an existing history do not start from zero.
+ */
+public enum AchievementRule {
+
+    FIRST_WIN("first_win", "First Win", "Win a game", Kind.COUNTER, 1,
+        (game, tries) -> game.isWin() ? 1 : 0,
+        "SELECT " + HangmanDatabaseHelper.COLUMN_WINS + " FROM " + HangmanDatabaseHelper.TABLE_GAME_STATISTICS),
+
+    FLAWLESS("flawless", "Flawless", "Win a game without a wrong guess", Kind.COUNTER, 1,
+        (game, tries) -> game.isWin() && game.getWrongAttempts() == 0 ? 1 : 0,
+        "SELECT SUM(" + HangmanDatabaseHelper.COLUMN_BREAKDOWN_WINS + ") FROM " + HangmanDatabaseHelper.TABLE_BREAKDOWN_STATISTICS +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS + " = 0"),
+
+    // Seeded with the current run if it is a win run, a past run of ten wins unlocks it as well
+    WIN_STREAK("win_streak_10", "On a Roll", "Win 10 games in a row", Kind.RUN, 10,
+        (game, tries) -> game.isWin() ? 1 : 0,
+        "SELECT CASE WHEN " + HangmanDatabaseHelper.COLUMN_RUN_IS_WIN + " = 1 THEN " + HangmanDatabaseHelper.COLUMN_RUN_LENGTH + " ELSE 0 END, " +
+        "(SELECT MAX(" + HangmanDatabaseHelper.COLUMN_RUN_LENGTH + ") FROM " + HangmanDatabaseHelper.TABLE_STREAK_RUNS +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_RUN_IS_WIN + " = 1)" +
+        " FROM " + HangmanDatabaseHelper.TABLE_STREAK_RUNS +
+        " ORDER BY " + HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " DESC, " + HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID + " DESC LIMIT 1"),
+
+    CUSTOM_WORDS("custom_words_100", "Wordsmith", "Play 100 custom words", Kind.COUNTER, 100,
+        (game, tries) -> game.isCustomWord() ? 1 : 0,
+        "SELECT " + HangmanDatabaseHelper.COLUMN_CUSTOM_GAMES + " FROM " + HangmanDatabaseHelper.TABLE_GAME_STATISTICS),
+
+    DEDICATED("games_1000", "Dedicated", "Play 1000 games", Kind.COUNTER, 1000,
+        (game, tries) -> 1,
+        "SELECT " + HangmanDatabaseHelper.COLUMN_GAMES_PLAYED + " FROM " + HangmanDatabaseHelper.TABLE_GAME_STATISTICS),
+
+    // One bit per letter from A to Z. Letters whose tries were pruned by the retention policy are still counted by the archive
+    ALPHABET("alphabet", "Alphabet", "Guess every letter from A to Z correctly", Kind.LETTER_SET, (1L << 26) - 1,
+        (game, tries) -> correctLetterMask(tries),
+        "SELECT SUM(1 << (UNICODE(" + HangmanDatabaseHelper.COLUMN_LETTER + ") - 65)) FROM (" +
+        "SELECT " + HangmanDatabaseHelper.COLUMN_LETTER + " FROM " + HangmanDatabaseHelper.TABLE_LETTER_STATISTICS +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_LETTER_HITS + " > 0 UNION " +
+        "SELECT " + HangmanDatabaseHelper.COLUMN_LETTER + " FROM " + HangmanDatabaseHelper.TABLE_LETTER_STATISTICS_ARCHIVE +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_LETTER_HITS + " > 0)" +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_LETTER + " BETWEEN 'A' AND 'Z'");
+
+    /**
+     * How a game changes the progress of a rule
+     */
+    public enum Kind {
+        // progress += contribution, unlocked once progress >= target
+        COUNTER,
+        // progress = contribution != 0 ? progress + 1 : 0, unlocked once progress >= target
+        RUN,
+        // progress |= contribution, unlocked once progress contains all bits of target
+        LETTER_SET
+    }
+
+    /**
+     * Computes what a game contributes to a rule, it must only look at the game itself
+     */
+    interface Contribution {
+        long of(GameHistory game, List<LetterTry> letterTries);
+    }
+
+    // Keeps the unlock time of a row that is already unlocked
+    private static final String INSERT_ACHIEVEMENT =
+        "INSERT OR REPLACE INTO " + HangmanDatabaseHelper.TABLE_ACHIEVEMENTS + " (" +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_ID + ", " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + ", " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT + ") VALUES (?1, ?2, COALESCE((" +
+        "SELECT " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT + " FROM " + HangmanDatabaseHelper.TABLE_ACHIEVEMENTS +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_ID + " = ?1), ?3))";
+
+    private final String id;
+    private final String title;
+    private final String description;
+    private final Kind kind;
+    private final long target;
+    private final Contribution contribution;
+    // Returns the seeded progress and optionally a second value that is checked against the target instead
+    private final String seedQuery;
+
+    AchievementRule(String id, String title, String description, Kind kind, long target,
+                    Contribution contribution, String seedQuery) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.kind = kind;
+        this.target = target;
+        this.contribution = contribution;
+        this.seedQuery = seedQuery;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the progress value that unlocks the rule, a bitmask for letter sets
+     */
+    public long getTarget() {
+        return target;
+    }
+
+    /**
+     * Get what a game contributes: 0 for nothing, the increment of a counter, whether a run
+     * continues (non-zero) or the bitmask of a letter set
+     */
+    public long getContribution(GameHistory game, List<LetterTry> letterTries) {
+        return contribution.of(game, letterTries);
+    }
+
+    /**
+     * Whether a progress value unlocks the rule
+     */
+    public boolean isReached(long progress) {
+        return kind == Kind.LETTER_SET ? (progress & target) == target : progress >= target;
+    }
+
+    /**
+     * Find a rule by the ID stored in the database
+     * @return The rule, or null for an ID of a rule that no longer exists
+     */
+    public static AchievementRule fromId(String id) {
+        for (AchievementRule rule : values()) {
+            if (rule.id.equals(id)) return rule;
+        }
+        return null;
+    }
+
+    /**
+     * Write the progress of every rule computed from the maintained statistics, unlocking the
+     * reached rules at the given time. Reads only aggregate tables, never the game history.
+     * Rules that are already unlocked stay unlocked with their original time.
+     */
+    public static void seed(SQLiteDatabase db, long unlockedAt) {
+        for (AchievementRule rule : values()) {
+            rule.seedProgress(db, unlockedAt);
+        }
+    }
+
+    /**
+     * Write the progress of this rule computed from the maintained statistics, see {@link #seed(SQLiteDatabase, long)}
+     */
+    public void seedProgress(SQLiteDatabase db, long unlockedAt) {
+        long progress = 0;
+        long best = 0;
+        Cursor cursor = db.rawQuery(seedQuery, null);
+        try {
+            if (cursor.moveToFirst()) {
+                progress = cursor.getLong(0);
+                best = cursor.getColumnCount() > 1 ? cursor.getLong(1) : progress;
+            }
+        } finally {
+            cursor.close();
+        }
+        db.execSQL(INSERT_ACHIEVEMENT, new Object[]{
+            id,
+            progress,
+            isReached(best) ? unlockedAt : null
+        });
+    }
+
+    /**
+     * Bitmask of the letters A to Z the game guessed correctly, bit 0 for A
+     */
+    private static long correctLetterMask(List<LetterTry> letterTries) {
+        long mask = 0;
+        if (letterTries == null) return mask;
+        for (LetterTry letterTry : letterTries) {
+            int letter = Character.toUpperCase(letterTry.getLetter()) - 'A';
+            if (letterTry.isCorrect() && letter >= 0 && letter < 26) mask |= 1L << letter;
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,98 @@
+package markus.wieland.hangman.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the results of async repository calls on the main thread for as long as its owner lives.
+ * When the owner is destroyed all pending calls are cancelled: queued calls that have not started
+ * are skipped and results that arrive later are dropped, so a callback never touches destroyed views.
+ */
+public class DatabaseCallScope implements LifecycleEventObserver {
+
+    private static final String TAG = "DatabaseCallScope";
+
+    private final Handler mainHandler;
+    private final Set<CompletableFuture<?>> pendingCalls;
+    // Only read and written on the main thread
+    private boolean isCancelled;
+
+    /**
+     * Create a scope that is cancelled when the owner is destroyed.
+     * Fragments that update their views should pass their view lifecycle owner.
+     */
+    public DatabaseCallScope(LifecycleOwner owner) {
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.pendingCalls = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        owner.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * Receive the result of a call on the main thread, errors are logged
+     */
+    @MainThread
+    public <T> void deliver(CompletableFuture<T> call, Consumer<T> onResult) {
+        deliver(call, onResult, null);
+    }
+
+    /**
+     * Receive the result or the error of a call on the main thread
+     * @param call Future returned by one of the async methods of {@link HangmanRepository}
+     * @param onResult Called with the result
+     * @param onError Called with the error if the call failed, may be null to only log it
+     */
+    @MainThread
+    public <T> void deliver(CompletableFuture<T> call, Consumer<T> onResult, Consumer<Throwable> onError) {
+        if (isCancelled) {
+            call.cancel(false);
+            return;
+        }
+        pendingCalls.add(call);
+        call.whenComplete((result, error) -> {
+            pendingCalls.remove(call);
+            mainHandler.post(() -> {
+                if (isCancelled) return;
+                if (error == null) {
+                    onResult.accept(result);
+                } else if (onError != null) {
+                    onError.accept(error);
+                } else {
+                    Log.e(TAG, "Database call failed", error);
+                }
+            });
+        });
+    }
+
+    /**
+     * Cancel all pending calls and drop their results, also done when the owner is destroyed
+     */
+    @MainThread
+    public void cancel() {
+        isCancelled = true;
+        for (CompletableFuture<?> call : pendingCalls) {
+            call.cancel(false);
+        }
+        pendingCalls.clear();
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner owner, @NonNull Lifecycle.Event event) {
+        if (event == Lifecycle.Event.ON_DESTROY) {
+            cancel();
+            owner.getLifecycle().removeObserver(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package markus.wieland.hangman.database;
+
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+
+import markus.wieland.hangman.database.models.GameHistory;
+
+/**
+ * Size-bounded LRU cache of complete games with their decoded letter tries, keyed by game ID.
+ * Every write that changes or removes a stored game invalidates it here, so a cached game
+ * always equals what the database would return.
+ *
+ * A load that races with an invalidation must not put the old state back into the cache.
+ * Every invalidation therefore bumps a generation counter and a loaded game is only stored
+ * if no invalidation happened since its load started.
+ */
+public class GameHistoryCache {
+
+    /**
+     * Snapshot of the cache metrics
+     */
+    public static class Metrics {
+        private final int hits;
+        private final int misses;
+        private final int size;
+        private final int maxSize;
+        private final long prefetched;
+
+        Metrics(int hits, int misses, int size, int maxSize, long prefetched) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+            this.maxSize = maxSize;
+            this.prefetched = prefetched;
+        }
+
+        public int getHits() {
+            return hits;
+        }
+
+        public int getMisses() {
+            return misses;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * Get the number of games put into the cache by a prefetch
+         */
+        public long getPrefetched() {
+            return prefetched;
+        }
+
+        /**
+         * Get the share of lookups answered from the cache as a percentage
+         */
+        public double getHitRate() {
+            int lookups = hits + misses;
+            return lookups == 0 ? 0.0 : hits * 100.0 / lookups;
+        }
+    }
+
+    private final LruCache<Long, GameHistory> games;
+    private long generation;
+    // Guarded by this
+    private long prefetched;
+
+    public GameHistoryCache(int maxGames) {
+        this.games = new LruCache<>(maxGames);
+    }
+
+    /**
+     * Get a game from the cache or load and cache it.
+     * The returned game is shared with later callers and must not be modified.
+     * @param gameId The game ID
+     * @param loader Loads the complete game from the database, returning null if it does not exist
+     * @return The game, or null if it does not exist
+     */
+    public GameHistory get(long gameId, LongFunction<GameHistory> loader) {
+        GameHistory game = games.get(gameId);
+        if (game != null) return game;
+
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+        game = loader.apply(gameId);
+        if (game == null) return null;
+
+        synchronized (this) {
+            if (loadGeneration == generation) games.put(gameId, game);
+        }
+        return game;
+    }
+
+    /**
+     * Load the games that are not cached yet with one query and cache them, e.g. for the rows of a list
+     * that are about to be opened. Follows the same invalidation rules as {@link #get}, so the lookups
+     * of the prefetched games count as hits later while the prefetch itself counts as neither.
+     * @param gameIds The games to cache, at most the size of the cache so they do not evict each other
+     * @param loader Loads the complete games with the given IDs, missing games are left out
+     * @return Number of games loaded and cached
+     */
+    public int prefetch(long[] gameIds, Function<long[], List<GameHistory>> loader) {
+        Map<Long, GameHistory> cached = games.snapshot();
+        long[] missingIds = LongStream.of(gameIds).filter(gameId -> !cached.containsKey(gameId)).toArray();
+        if (missingIds.length == 0) return 0;
+
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+        List<GameHistory> loaded = loader.apply(missingIds);
+
+        synchronized (this) {
+            if (loadGeneration != generation) return 0;
+            for (GameHistory game : loaded) {
+                games.put(game.getGameId(), game);
+            }
+            prefetched += loaded.size();
+        }
+        return loaded.size();
+    }
+
+    /**
+     * Drop a changed or deleted game
+     */
+    public synchronized void invalidate(long gameId) {
+        generation++;
+        games.remove(gameId);
+    }
+
+    /**
+     * Drop every game, e.g. after clearing the history
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        games.evictAll();
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(games.hitCount(), games.missCount(), games.size(), games.maxSize(), prefetched);
+    }
+}
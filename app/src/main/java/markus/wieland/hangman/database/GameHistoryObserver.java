@@ -0,0 +1,30 @@
+package markus.wieland.hangman.database;
+
+import java.util.List;
+
+import markus.wieland.hangman.database.models.GameHistory;
+
+/**
+ * Receives the changes of the game history, registered with {@link HangmanRepository#registerObserver}.
+ * The methods are called on the thread that made the change, after its transaction is committed,
+ * so observers that touch views have to post to the main thread themselves.
+ */
+public interface GameHistoryObserver {
+
+    /**
+     * Games were saved or imported
+     * @param games The new games in insert order, their game IDs are set. Do not modify them.
+     */
+    void onGamesInserted(List<GameHistory> games);
+
+    /**
+     * Games were deleted
+     * @param gameIds IDs of the deleted games
+     */
+    void onGamesDeleted(long[] gameIds);
+
+    /**
+     * The whole history was deleted
+     */
+    void onHistoryCleared();
+}
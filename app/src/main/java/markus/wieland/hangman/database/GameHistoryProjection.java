@@ -0,0 +1,353 @@
+package markus.wieland.hangman.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import markus.wieland.hangman.database.dao.GameRow;
+import markus.wieland.hangman.database.models.GameHistory;
+
+/**
+ * Columnar in-memory copy of the game history for analytics.
+ * Every game is one index into primitive columns sorted by game ID: timestamps, game IDs, wrong and
+ * total attempts, a word ID into an interned word table and one bit each for win and custom word.
+ * That is about 22 bytes per game plus the distinct words, instead of a {@link GameHistory} object
+ * with its own word string per game, and a statistic over the whole history is a loop over arrays.
+ *
+ * The columns are loaded on the first query page by page in game ID order and kept up to date by
+ * the repository after every committed insert, delete or clear. The load does not hold the lock of
+ * the projection, events that arrive meanwhile are buffered and applied when it is done, so the writer
+ * thread never waits for a load. Queries run while holding the lock, so they see one consistent state
+ * and an event waits until they are done.
+ */
+public class GameHistoryProjection {
+
+    // Games read per query while loading, each page is a primary key range
+    private static final int LOAD_PAGE_SIZE = 5000;
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Loads one page of games with a larger ID than the given one in game ID order,
+     * see {@link markus.wieland.hangman.database.dao.GameHistoryDao#forEachGameAfter}
+     */
+    public interface Loader {
+        int load(long afterGameId, int limit, GameRow.Callback callback);
+    }
+
+    /**
+     * A computation over the columns, it may only read them during the call
+     */
+    public interface Query<T> {
+        T run(GameHistoryProjection projection);
+    }
+
+    private final Loader loader;
+    // Only one thread loads the columns, the others wait for it without holding the lock of the projection
+    private final Object loadLock = new Object();
+
+    // All guarded by this, except that the load writes the columns without it while loading is set
+    private long[] gameIds = new long[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private byte[] wrongAttempts = new byte[INITIAL_CAPACITY];
+    private byte[] totalAttempts = new byte[INITIAL_CAPACITY];
+    private int[] wordIds = new int[INITIAL_CAPACITY];
+    private final BitSet wins = new BitSet();
+    private final BitSet customWords = new BitSet();
+    private final List<String> words = new ArrayList<>();
+    private final Map<String, Integer> wordIndex = new HashMap<>();
+    private int size;
+    private boolean loaded;
+    private boolean loading;
+    // Events that arrived while the columns were loading
+    private final List<Runnable> pendingEvents = new ArrayList<>();
+    // Games up to this ID were read by the load, their insert events are already contained
+    private long loadedMaxGameId;
+
+    public GameHistoryProjection(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Run a query over the columns, loading them first if needed.
+     * The first call reads the whole history, call it on a background thread.
+     */
+    public <T> T query(Query<T> query) {
+        ensureLoaded();
+        synchronized (this) {
+            return query.run(this);
+        }
+    }
+
+    /**
+     * Add games after their insert was committed, ignored until the columns are loaded
+     */
+    synchronized void addGames(List<GameHistory> games) {
+        if (loading) {
+            pendingEvents.add(() -> applyInserted(games));
+        } else if (loaded) {
+            applyInserted(games);
+        }
+    }
+
+    /**
+     * Remove games after their delete was committed.
+     * Their words stay in the word table until the history is cleared.
+     */
+    synchronized void removeGames(long[] removedGameIds) {
+        if (loading) {
+            pendingEvents.add(() -> applyRemoved(removedGameIds));
+        } else if (loaded) {
+            applyRemoved(removedGameIds);
+        }
+    }
+
+    /**
+     * Empty the columns after the whole history was deleted, the empty state counts as loaded
+     */
+    synchronized void clear() {
+        if (loading) {
+            pendingEvents.add(this::reset);
+        } else {
+            reset();
+            loaded = true;
+        }
+    }
+
+    private void ensureLoaded() {
+        synchronized (loadLock) {
+            synchronized (this) {
+                if (loaded) return;
+                loading = true;
+            }
+
+            boolean succeeded = false;
+            try {
+                load();
+                succeeded = true;
+            } finally {
+                synchronized (this) {
+                    loading = false;
+                    loaded = succeeded;
+                    // Applied in the order they arrived, a failed load is simply retried by the next query
+                    if (succeeded) {
+                        for (Runnable event : pendingEvents) {
+                            event.run();
+                        }
+                    }
+                    pendingEvents.clear();
+                }
+            }
+        }
+    }
+
+    private void applyInserted(List<GameHistory> games) {
+        for (GameHistory game : games) {
+            // Committed before the load read its page, so it is already contained
+            if (game.getGameId() <= loadedMaxGameId) continue;
+            add(game.getGameId(), game.getTimestamp(), game.getWrongAttempts(), game.getTotalAttempts(),
+                    game.getWord(), game.isWin(), game.isCustomWord());
+        }
+    }
+
+    private void applyRemoved(long[] removedGameIds) {
+        BitSet removed = new BitSet(size);
+        for (long gameId : removedGameIds) {
+            int index = Arrays.binarySearch(gameIds, 0, size, gameId);
+            if (index >= 0) removed.set(index);
+        }
+        if (removed.isEmpty()) return;
+
+        // Compact all columns in one pass from the first removed game on
+        int target = removed.nextSetBit(0);
+        for (int source = target; source < size; source++) {
+            if (removed.get(source)) continue;
+            gameIds[target] = gameIds[source];
+            timestamps[target] = timestamps[source];
+            wrongAttempts[target] = wrongAttempts[source];
+            totalAttempts[target] = totalAttempts[source];
+            wordIds[target] = wordIds[source];
+            wins.set(target, wins.get(source));
+            customWords.set(target, customWords.get(source));
+            target++;
+        }
+        wins.clear(target, size);
+        customWords.clear(target, size);
+        size = target;
+    }
+
+    private void load() {
+        reset();
+        long afterGameId = 0;
+        int read;
+        do {
+            read = loader.load(afterGameId, LOAD_PAGE_SIZE, row -> add(row.getGameId(), row.getTimestamp(),
+                    row.getWrongAttempts(), row.getTotalAttempts(), row.getWord(), row.isWin(), row.isCustomWord()));
+            if (size > 0) afterGameId = gameIds[size - 1];
+        } while (read == LOAD_PAGE_SIZE);
+        loadedMaxGameId = afterGameId;
+    }
+
+    private void reset() {
+        gameIds = new long[INITIAL_CAPACITY];
+        timestamps = new long[INITIAL_CAPACITY];
+        wrongAttempts = new byte[INITIAL_CAPACITY];
+        totalAttempts = new byte[INITIAL_CAPACITY];
+        wordIds = new int[INITIAL_CAPACITY];
+        wins.clear();
+        customWords.clear();
+        words.clear();
+        wordIndex.clear();
+        size = 0;
+        loadedMaxGameId = 0;
+    }
+
+    private void add(long gameId, long timestamp, int wrong, int total, String word, boolean win, boolean custom) {
+        if (size == gameIds.length) grow();
+
+        // Games arrive in ID order, only a save that commits out of order needs to shift the columns
+        int index = size;
+        if (size > 0 && gameId <= gameIds[size - 1]) {
+            index = Arrays.binarySearch(gameIds, 0, size, gameId);
+            if (index >= 0) return;
+            index = -index - 1;
+            shiftRight(index);
+        }
+
+        gameIds[index] = gameId;
+        timestamps[index] = timestamp;
+        wrongAttempts[index] = (byte) wrong;
+        totalAttempts[index] = (byte) total;
+        wordIds[index] = intern(word);
+        wins.set(index, win);
+        customWords.set(index, custom);
+        size++;
+    }
+
+    private void shiftRight(int index) {
+        int count = size - index;
+        System.arraycopy(gameIds, index, gameIds, index + 1, count);
+        System.arraycopy(timestamps, index, timestamps, index + 1, count);
+        System.arraycopy(wrongAttempts, index, wrongAttempts, index + 1, count);
+        System.arraycopy(totalAttempts, index, totalAttempts, index + 1, count);
+        System.arraycopy(wordIds, index, wordIds, index + 1, count);
+        for (int i = size; i > index; i--) {
+            wins.set(i, wins.get(i - 1));
+            customWords.set(i, customWords.get(i - 1));
+        }
+    }
+
+    private void grow() {
+        int capacity = gameIds.length + (gameIds.length >> 1);
+        gameIds = Arrays.copyOf(gameIds, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        wrongAttempts = Arrays.copyOf(wrongAttempts, capacity);
+        totalAttempts = Arrays.copyOf(totalAttempts, capacity);
+        wordIds = Arrays.copyOf(wordIds, capacity);
+    }
+
+    private int intern(String word) {
+        Integer wordId = wordIndex.get(word);
+        if (wordId == null) {
+            wordId = words.size();
+            words.add(word);
+            wordIndex.put(word, wordId);
+        }
+        return wordId;
+    }
+
+    // Column access, only valid inside a query
+
+    /**
+     * Get the number of games, valid indexes are 0 to size() - 1 in game ID order
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getGameId(int index) {
+        return gameIds[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int getWrongAttempts(int index) {
+        return wrongAttempts[index] & 0xFF;
+    }
+
+    public int getTotalAttempts(int index) {
+        return totalAttempts[index] & 0xFF;
+    }
+
+    public boolean isWin(int index) {
+        return wins.get(index);
+    }
+
+    public boolean isCustomWord(int index) {
+        return customWords.get(index);
+    }
+
+    /**
+     * Get the ID of the game's word in the word table, equal words share one ID
+     */
+    public int getWordId(int index) {
+        return wordIds[index];
+    }
+
+    public String getWord(int wordId) {
+        return words.get(wordId);
+    }
+
+    /**
+     * Get the number of distinct words in the word table
+     */
+    public int getWordCount() {
+        return words.size();
+    }
+
+    /**
+     * Count the won games by counting the set bits of the win column
+     */
+    public int countWins() {
+        return wins.cardinality();
+    }
+
+    /**
+     * Get the win rate of the games in a time range as a percentage
+     * @param fromTimestamp Inclusive start in milliseconds
+     * @param toTimestamp Exclusive end in milliseconds
+     */
+    public double getWinRate(long fromTimestamp, long toTimestamp) {
+        int games = 0;
+        int won = 0;
+        for (int i = 0; i < size; i++) {
+            long timestamp = timestamps[i];
+            if (timestamp < fromTimestamp || timestamp >= toTimestamp) continue;
+            games++;
+            if (wins.get(i)) won++;
+        }
+        return games == 0 ? 0.0 : (won * 100.0) / games;
+    }
+
+    /**
+     * Get how often each word was played, indexed by word ID
+     */
+    public int[] getPlayCountsByWord() {
+        int[] counts = new int[words.size()];
+        for (int i = 0; i < size; i++) {
+            counts[wordIds[i]]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Estimate the memory used by the columns in bytes, without the strings of the word table
+     */
+    public long getColumnBytes() {
+        return (long) gameIds.length * (8 + 8 + 1 + 1 + 4) + (wins.size() + customWords.size()) / 8;
+    }
+}
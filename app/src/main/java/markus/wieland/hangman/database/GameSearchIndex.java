@@ -0,0 +1,110 @@
+package markus.wieland.hangman.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Locale;
+
+/**
+ * Builds the content and the queries of the game_search full-text table.
+ * Every game is indexed with all suffixes of its word as tokens, e.g. APPLE as "APPLE PPLE PLE LE E".
+ * A substring of the word is then a prefix of one of the tokens and both searches are FTS prefix queries:
+ * "PL*" finds APPLE by substring, "^AP*" only matches the first token and finds it by prefix.
+ */
+public final class GameSearchIndex {
+
+    public static final String INSERT_GAME_SEARCH =
+        "INSERT INTO " + HangmanDatabaseHelper.TABLE_GAME_SEARCH + " (docid, " +
+        HangmanDatabaseHelper.COLUMN_SEARCH_SUFFIXES + ") VALUES (?, ?)";
+
+    // Number of games indexed per query when filling the table from an existing history
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    // A single letter occurs in nearly every word, as substring it would match the whole history
+    private static final int MIN_SUBSTRING_LENGTH = 2;
+
+    private GameSearchIndex() {
+    }
+
+    /**
+     * Get the indexed text of a word, its suffixes separated by spaces
+     */
+    public static String toSuffixes(String word) {
+        String normalized = normalize(word);
+        StringBuilder suffixes = new StringBuilder(normalized.length() * (normalized.length() + 3) / 2);
+        for (int start = 0; start < normalized.length(); start++) {
+            if (start > 0) suffixes.append(' ');
+            suffixes.append(normalized, start, normalized.length());
+        }
+        return suffixes.toString();
+    }
+
+    /**
+     * Get the MATCH expression for a search text
+     * @param text Search text, everything except letters and digits is ignored
+     * @param prefixOnly true to only match words starting with the text, single letters are always a prefix search
+     * @return The expression, or null if the text contains nothing to search for
+     */
+    public static String toMatchQuery(String text, boolean prefixOnly) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) return null;
+        if (prefixOnly || normalized.length() < MIN_SUBSTRING_LENGTH) return "^" + normalized + "*";
+        return normalized + "*";
+    }
+
+    /**
+     * Whether a word matches a search text the same way the expression of {@link #toMatchQuery} does,
+     * e.g. to check a new game against the current search without a query
+     */
+    public static boolean matches(String word, String text, boolean prefixOnly) {
+        String normalizedText = normalize(text);
+        if (normalizedText.isEmpty()) return true;
+        String normalizedWord = normalize(word);
+        if (prefixOnly || normalizedText.length() < MIN_SUBSTRING_LENGTH) return normalizedWord.startsWith(normalizedText);
+        return normalizedWord.contains(normalizedText);
+    }
+
+    /**
+     * Refills the table from the game history, reading the games in pages of game IDs
+     */
+    public static void rebuild(SQLiteDatabase db) {
+        db.delete(HangmanDatabaseHelper.TABLE_GAME_SEARCH, null, null);
+        SQLiteStatement insert = db.compileStatement(INSERT_GAME_SEARCH);
+        try {
+            long lastGameId = 0;
+            int pageSize;
+            do {
+                pageSize = 0;
+                Cursor cursor = db.rawQuery(
+                    "SELECT " + HangmanDatabaseHelper.COLUMN_GAME_ID + ", " + HangmanDatabaseHelper.COLUMN_WORD +
+                    " FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY +
+                    " WHERE " + HangmanDatabaseHelper.COLUMN_GAME_ID + " > ?" +
+                    " ORDER BY " + HangmanDatabaseHelper.COLUMN_GAME_ID + " LIMIT " + REBUILD_BATCH_SIZE,
+                    new String[]{String.valueOf(lastGameId)});
+                try {
+                    while (cursor.moveToNext()) {
+                        lastGameId = cursor.getLong(0);
+                        insert.bindLong(1, lastGameId);
+                        insert.bindString(2, toSuffixes(cursor.getString(1)));
+                        insert.executeInsert();
+                        pageSize++;
+                    }
+                } finally {
+                    cursor.close();
+                }
+            } while (pageSize == REBUILD_BATCH_SIZE);
+        } finally {
+            insert.close();
+        }
+    }
+
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) normalized.append(c);
+        }
+        return normalized.toString().toUpperCase(Locale.ROOT);
+    }
+}
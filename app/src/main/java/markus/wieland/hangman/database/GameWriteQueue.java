@@ -0,0 +1,285 @@
+package markus.wieland.hangman.database;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Write-behind queue for finished games.
+ * A single writer thread takes the games off the queue and persists them, so callers never
+ * wait for the disk. Games that pile up while a commit is running are committed together
+ * in the next transaction (group commit).
+ *
+ * Other writes can be queued as tasks. They run on the same thread in queue order, so all
+ * background writes of the app are serialized and a task sees every game queued before it.
+ */
+public class GameWriteQueue {
+
+    private static final String TAG = "GameWriteQueue";
+    private static final int MAX_BATCH_SIZE = 32;
+
+    /**
+     * Persists a batch of games, ideally in a single transaction
+     */
+    interface BatchWriter {
+        void writeGames(List<PendingGame> batch);
+    }
+
+    /**
+     * A finished game waiting to be written
+     */
+    static class PendingGame {
+        final GameHistory gameHistory;
+        final List<LetterTry> letterTries;
+
+        PendingGame(GameHistory gameHistory, List<LetterTry> letterTries) {
+            this.gameHistory = gameHistory;
+            this.letterTries = letterTries;
+        }
+    }
+
+    /**
+     * Snapshot of the queue metrics
+     */
+    public static class Metrics {
+        private final int queueDepth;
+        private final int maxQueueDepth;
+        private final long committedGames;
+        private final long commits;
+        private final double lastCommitLatencyMillis;
+        private final double averageCommitLatencyMillis;
+        private final double maxCommitLatencyMillis;
+
+        Metrics(int queueDepth, int maxQueueDepth, long committedGames, long commits,
+                long lastCommitNanos, long totalCommitNanos, long maxCommitNanos) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.committedGames = committedGames;
+            this.commits = commits;
+            this.lastCommitLatencyMillis = lastCommitNanos / 1_000_000.0;
+            this.averageCommitLatencyMillis = commits == 0 ? 0.0 : totalCommitNanos / 1_000_000.0 / commits;
+            this.maxCommitLatencyMillis = maxCommitNanos / 1_000_000.0;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public long getCommittedGames() {
+            return committedGames;
+        }
+
+        public long getCommits() {
+            return commits;
+        }
+
+        public double getLastCommitLatencyMillis() {
+            return lastCommitLatencyMillis;
+        }
+
+        public double getAverageCommitLatencyMillis() {
+            return averageCommitLatencyMillis;
+        }
+
+        public double getMaxCommitLatencyMillis() {
+            return maxCommitLatencyMillis;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format("Queue depth: %d (max %d)\nCommitted games: %d in %d commits\n" +
+                            "Commit latency: last %.2f ms, avg %.2f ms, max %.2f ms",
+                    queueDepth, maxQueueDepth, committedGames, commits,
+                    lastCommitLatencyMillis, averageCommitLatencyMillis, maxCommitLatencyMillis);
+        }
+    }
+
+    // Holds PendingGame and Runnable entries
+    private final LinkedBlockingQueue<Object> queue;
+    private final BatchWriter batchWriter;
+    private final Object lock;
+    private Thread writerThread;
+
+    // Guarded by lock
+    private boolean closed;
+    private long enqueuedWrites;
+    private long processedWrites;
+    private int maxQueueDepth;
+    private long committedGames;
+    private long commits;
+    private long lastCommitNanos;
+    private long totalCommitNanos;
+    private long maxCommitNanos;
+
+    GameWriteQueue(BatchWriter batchWriter) {
+        this.queue = new LinkedBlockingQueue<>();
+        this.batchWriter = batchWriter;
+        this.lock = new Object();
+    }
+
+    /**
+     * Queue a finished game to be written in the background
+     */
+    void enqueue(GameHistory gameHistory, List<LetterTry> letterTries) {
+        add(new PendingGame(gameHistory, letterTries));
+    }
+
+    /**
+     * Queue a write task to run on the writer thread after everything queued before it
+     */
+    void execute(Runnable task) {
+        add(task);
+    }
+
+    private void add(Object write) {
+        synchronized (lock) {
+            if (closed) throw new RejectedExecutionException("Write queue is closed");
+            // The writer thread is only started once there is something to write
+            if (writerThread == null) {
+                writerThread = new Thread(this::processQueue, "hangman-db-writer");
+                writerThread.start();
+            }
+            enqueuedWrites++;
+            queue.add(write);
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        }
+    }
+
+    /**
+     * Block until every game and task queued before this call has been written
+     * @param timeoutMillis Maximum time to wait
+     * @return true if all games were written, false if the timeout elapsed first
+     */
+    boolean flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (lock) {
+            long target = enqueuedWrites;
+            while (processedWrites < target) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) return false;
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Write everything queued so far and stop the writer thread, later games and tasks are rejected.
+     * A write still running when the timeout elapses is finished first, the ones queued after it are dropped.
+     * @param timeoutMillis Maximum time to wait for the queued writes
+     * @return true if all queued writes were written
+     */
+    boolean close(long timeoutMillis) {
+        Thread thread;
+        synchronized (lock) {
+            closed = true;
+            thread = writerThread;
+        }
+        boolean flushed = flush(timeoutMillis);
+        if (thread == null) return flushed;
+
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            Log.w(TAG, "Dropped " + queue.size() + " queued write(s) on close");
+            queue.clear();
+        }
+        return flushed;
+    }
+
+    /**
+     * Whether a game or task is queued or being written
+     */
+    boolean hasPendingWrites() {
+        synchronized (lock) {
+            return processedWrites < enqueuedWrites;
+        }
+    }
+
+    Metrics getMetrics() {
+        synchronized (lock) {
+            return new Metrics(queue.size(), maxQueueDepth, committedGames, commits,
+                    lastCommitNanos, totalCommitNanos, maxCommitNanos);
+        }
+    }
+
+    private void processQueue() {
+        List<PendingGame> batch = new ArrayList<>();
+        while (true) {
+            Object write;
+            try {
+                write = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (write instanceof Runnable) {
+                runTask((Runnable) write);
+                continue;
+            }
+
+            // Group the games up to the next task, this is the only thread taking entries off the queue
+            batch.add((PendingGame) write);
+            while (batch.size() < MAX_BATCH_SIZE && queue.peek() instanceof PendingGame) {
+                batch.add((PendingGame) queue.poll());
+            }
+
+            long start = System.nanoTime();
+            boolean committed = true;
+            try {
+                batchWriter.writeGames(batch);
+            } catch (RuntimeException e) {
+                committed = false;
+                Log.e(TAG, "Failed to write " + batch.size() + " game(s)", e);
+            }
+            long latency = System.nanoTime() - start;
+
+            synchronized (lock) {
+                processedWrites += batch.size();
+                if (committed) {
+                    committedGames += batch.size();
+                    commits++;
+                    lastCommitNanos = latency;
+                    totalCommitNanos += latency;
+                    maxCommitNanos = Math.max(maxCommitNanos, latency);
+                }
+                lock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Write task failed", e);
+        }
+        synchronized (lock) {
+            processedWrites++;
+            lock.notifyAll();
+        }
+    }
+}
@@ -1,17 +1,35 @@
 package markus.wieland.hangman.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import markus.wieland.hangman.database.models.LetterTry;
 
 /**
  * Database helper for managing the Hangman game database.
- * Stores game history and individual letter tries.
+ * Stores game history with the letter tries of every game packed into the game row.
  */
 public class HangmanDatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "hangman.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 11;
+
+    // Number of games converted per step when migrating the letter tries
+    private static final int MIGRATION_BATCH_SIZE = 500;
+
+    // Write-ahead log tuning: checkpoint every ~2 MB of changes and truncate the log to 1 MB afterwards
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 500;
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 1024 * 1024;
+
+    // Value of PRAGMA auto_vacuum for incremental vacuum
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
 
     // Game History Table
     public static final String TABLE_GAME_HISTORY = "game_history";
@@ -22,8 +40,9 @@ public class HangmanDatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_WRONG_ATTEMPTS = "wrong_attempts";
     public static final String COLUMN_TIMESTAMP = "timestamp";
     public static final String COLUMN_IS_CUSTOM_WORD = "is_custom_word";
+    public static final String COLUMN_LETTER_SEQUENCE = "letter_sequence";
 
-    // Letter Tries Table
+    // Letter Tries Table (before version 3, only read when migrating)
     public static final String TABLE_LETTER_TRIES = "letter_tries";
     public static final String COLUMN_TRY_ID = "try_id";
     public static final String COLUMN_FK_GAME_ID = "game_id";
@@ -31,6 +50,80 @@ public class HangmanDatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_IS_CORRECT = "is_correct";
     public static final String COLUMN_TRY_ORDER = "try_order";
 
+    // Game Statistics Table (single row, maintained on every write)
+    public static final String TABLE_GAME_STATISTICS = "game_statistics";
+    public static final String COLUMN_STATISTICS_ID = "statistics_id";
+    public static final String COLUMN_GAMES_PLAYED = "games_played";
+    public static final String COLUMN_WINS = "wins";
+    public static final String COLUMN_LOSSES = "losses";
+    public static final String COLUMN_ATTEMPTS_SUM = "attempts_sum";
+    public static final String COLUMN_WRONG_ATTEMPTS_SUM = "wrong_attempts_sum";
+    public static final String COLUMN_CUSTOM_GAMES = "custom_games";
+    public static final String COLUMN_CUSTOM_WINS = "custom_wins";
+    public static final String COLUMN_RANDOM_GAMES = "random_games";
+    public static final String COLUMN_RANDOM_WINS = "random_wins";
+    public static final long STATISTICS_ROW_ID = 1;
+
+    // Word Statistics Table (one row per word, maintained on every write)
+    public static final String TABLE_WORD_STATISTICS = "word_stats";
+    public static final String COLUMN_WORD_PLAYS = "plays";
+    public static final String COLUMN_WORD_WINS = "wins";
+    public static final String COLUMN_WORD_TOTAL_ATTEMPTS = "total_attempts";
+    public static final String COLUMN_WORD_WRONG_ATTEMPTS = "wrong_attempts";
+    public static final String COLUMN_WORD_LAST_PLAYED = "last_played";
+
+    // Letter Statistics Table (one row per letter A-Z, maintained on every write)
+    public static final String TABLE_LETTER_STATISTICS = "letter_stats";
+    // Contributions of games whose letter tries were removed by the retention policy, same columns
+    public static final String TABLE_LETTER_STATISTICS_ARCHIVE = "letter_stats_archive";
+    public static final String COLUMN_LETTER_GUESSES = "guesses";
+    public static final String COLUMN_LETTER_HITS = "hits";
+    public static final String COLUMN_LETTER_POSITION_SUM = "position_sum";
+    public static final String COLUMN_LETTER_FIRST_GUESSES = "first_guesses";
+    public static final String COLUMN_LETTER_FIRST_GUESS_WINS = "first_guess_wins";
+
+    // Daily Statistics Table (one row per local day with games, maintained on every write)
+    public static final String TABLE_DAILY_STATISTICS = "daily_stats";
+    public static final String COLUMN_DAY = "day";
+    public static final String COLUMN_DAY_GAMES = "games";
+    public static final String COLUMN_DAY_WINS = "wins";
+    public static final String COLUMN_DAY_ATTEMPTS_SUM = "attempts_sum";
+    public static final String COLUMN_DAY_WRONG_ATTEMPTS_SUM = "wrong_attempts_sum";
+
+    // Breakdown Statistics Table (one row per word length, word type and number of wrong attempts, maintained on every write)
+    public static final String TABLE_BREAKDOWN_STATISTICS = "breakdown_stats";
+    public static final String COLUMN_WORD_LENGTH = "word_length";
+    public static final String COLUMN_BREAKDOWN_GAMES = "games";
+    public static final String COLUMN_BREAKDOWN_WINS = "wins";
+    public static final String COLUMN_BREAKDOWN_ATTEMPTS_SUM = "attempts_sum";
+
+    // Game Search Table (full-text index of the words, docid = game_id)
+    public static final String TABLE_GAME_SEARCH = "game_search";
+    public static final String COLUMN_SEARCH_SUFFIXES = "suffixes";
+
+    // Streak Runs Table (maximal runs of wins or losses in (timestamp, game_id) order)
+    public static final String TABLE_STREAK_RUNS = "streak_runs";
+    public static final String COLUMN_RUN_ID = "run_id";
+    public static final String COLUMN_RUN_IS_WIN = "is_win";
+    public static final String COLUMN_RUN_LENGTH = "length";
+    public static final String COLUMN_RUN_FIRST_TIMESTAMP = "first_timestamp";
+    public static final String COLUMN_RUN_FIRST_GAME_ID = "first_game_id";
+    public static final String COLUMN_RUN_LAST_TIMESTAMP = "last_timestamp";
+    public static final String COLUMN_RUN_LAST_GAME_ID = "last_game_id";
+
+    // Achievements Table (one row per achievement rule)
+    public static final String TABLE_ACHIEVEMENTS = "achievements";
+    public static final String COLUMN_ACHIEVEMENT_ID = "achievement_id";
+    public static final String COLUMN_ACHIEVEMENT_PROGRESS = "progress";
+    public static final String COLUMN_ACHIEVEMENT_UNLOCKED_AT = "unlocked_at";
+
+    /**
+     * Ranking expression for the hardest words: average wrong attempts per play.
+     * Queries have to order by exactly this expression to use idx_word_stats_difficulty.
+     */
+    public static final String WORD_DIFFICULTY =
+        "CAST(" + COLUMN_WORD_WRONG_ATTEMPTS + " AS REAL) / " + COLUMN_WORD_PLAYS;
+
     // Create Game History Table
     private static final String CREATE_GAME_HISTORY_TABLE = 
         "CREATE TABLE " + TABLE_GAME_HISTORY + " (" +
@@ -40,32 +133,258 @@ public class HangmanDatabaseHelper extends SQLiteOpenHelper {
         COLUMN_TOTAL_ATTEMPTS + " INTEGER NOT NULL, " +
         COLUMN_WRONG_ATTEMPTS + " INTEGER NOT NULL, " +
         COLUMN_TIMESTAMP + " INTEGER NOT NULL, " +
-        COLUMN_IS_CUSTOM_WORD + " INTEGER NOT NULL DEFAULT 0" +
+        COLUMN_IS_CUSTOM_WORD + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_LETTER_SEQUENCE + " BLOB" +
+        ");";
+
+    // Create Game Statistics Table
+    private static final String CREATE_GAME_STATISTICS_TABLE =
+        "CREATE TABLE " + TABLE_GAME_STATISTICS + " (" +
+        COLUMN_STATISTICS_ID + " INTEGER PRIMARY KEY, " +
+        COLUMN_GAMES_PLAYED + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_WINS + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_LOSSES + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_ATTEMPTS_SUM + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_WRONG_ATTEMPTS_SUM + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_CUSTOM_GAMES + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_CUSTOM_WINS + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_RANDOM_GAMES + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_RANDOM_WINS + " INTEGER NOT NULL DEFAULT 0" +
+        ");";
+
+    // Create Word Statistics Table
+    private static final String CREATE_WORD_STATISTICS_TABLE =
+        "CREATE TABLE " + TABLE_WORD_STATISTICS + " (" +
+        COLUMN_WORD + " TEXT PRIMARY KEY, " +
+        COLUMN_WORD_PLAYS + " INTEGER NOT NULL, " +
+        COLUMN_WORD_WINS + " INTEGER NOT NULL, " +
+        COLUMN_WORD_TOTAL_ATTEMPTS + " INTEGER NOT NULL, " +
+        COLUMN_WORD_WRONG_ATTEMPTS + " INTEGER NOT NULL, " +
+        COLUMN_WORD_LAST_PLAYED + " INTEGER NOT NULL" +
+        ") WITHOUT ROWID;";
+
+    // Create Letter Statistics Table. Without a rowid the primary key b-tree holds every column,
+    // so it is a covering index for any breakdown over the 26 letters
+    private static final String CREATE_LETTER_STATISTICS_TABLE = createLetterStatisticsTable(TABLE_LETTER_STATISTICS);
+
+    private static final String CREATE_LETTER_STATISTICS_ARCHIVE_TABLE =
+        createLetterStatisticsTable("IF NOT EXISTS " + TABLE_LETTER_STATISTICS_ARCHIVE);
+
+    private static String createLetterStatisticsTable(String table) {
+        return "CREATE TABLE " + table + " (" +
+            COLUMN_LETTER + " TEXT PRIMARY KEY, " +
+            COLUMN_LETTER_GUESSES + " INTEGER NOT NULL DEFAULT 0, " +
+            COLUMN_LETTER_HITS + " INTEGER NOT NULL DEFAULT 0, " +
+            COLUMN_LETTER_POSITION_SUM + " INTEGER NOT NULL DEFAULT 0, " +
+            COLUMN_LETTER_FIRST_GUESSES + " INTEGER NOT NULL DEFAULT 0, " +
+            COLUMN_LETTER_FIRST_GUESS_WINS + " INTEGER NOT NULL DEFAULT 0" +
+            ") WITHOUT ROWID;";
+    }
+
+    /**
+     * Adds to the statistics of one letter, see {@link LetterStatisticsDelta}
+     */
+    public static final String UPDATE_LETTER_STATISTICS = updateLetterStatistics(TABLE_LETTER_STATISTICS);
+
+    /**
+     * Adds to the archived statistics of one letter, see {@link LetterStatisticsDelta#applyToArchive}
+     */
+    public static final String UPDATE_LETTER_STATISTICS_ARCHIVE = updateLetterStatistics(TABLE_LETTER_STATISTICS_ARCHIVE);
+
+    private static String updateLetterStatistics(String table) {
+        return "UPDATE " + table + " SET " +
+            COLUMN_LETTER_GUESSES + " = " + COLUMN_LETTER_GUESSES + " + ?, " +
+            COLUMN_LETTER_HITS + " = " + COLUMN_LETTER_HITS + " + ?, " +
+            COLUMN_LETTER_POSITION_SUM + " = " + COLUMN_LETTER_POSITION_SUM + " + ?, " +
+            COLUMN_LETTER_FIRST_GUESSES + " = " + COLUMN_LETTER_FIRST_GUESSES + " + ?, " +
+            COLUMN_LETTER_FIRST_GUESS_WINS + " = " + COLUMN_LETTER_FIRST_GUESS_WINS + " + ? " +
+            "WHERE " + COLUMN_LETTER + " = ?";
+    }
+
+    // Create Daily Statistics Table, the day is the local date as epoch day (days since 1970-01-01)
+    private static final String CREATE_DAILY_STATISTICS_TABLE =
+        "CREATE TABLE " + TABLE_DAILY_STATISTICS + " (" +
+        COLUMN_DAY + " INTEGER PRIMARY KEY, " +
+        COLUMN_DAY_GAMES + " INTEGER NOT NULL, " +
+        COLUMN_DAY_WINS + " INTEGER NOT NULL, " +
+        COLUMN_DAY_ATTEMPTS_SUM + " INTEGER NOT NULL, " +
+        COLUMN_DAY_WRONG_ATTEMPTS_SUM + " INTEGER NOT NULL" +
         ");";
 
-    // Create Letter Tries Table
-    private static final String CREATE_LETTER_TRIES_TABLE = 
-        "CREATE TABLE " + TABLE_LETTER_TRIES + " (" +
-        COLUMN_TRY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-        COLUMN_FK_GAME_ID + " INTEGER NOT NULL, " +
-        COLUMN_LETTER + " TEXT NOT NULL, " +
-        COLUMN_IS_CORRECT + " INTEGER NOT NULL, " +
-        COLUMN_TRY_ORDER + " INTEGER NOT NULL, " +
-        "FOREIGN KEY(" + COLUMN_FK_GAME_ID + ") REFERENCES " + 
-        TABLE_GAME_HISTORY + "(" + COLUMN_GAME_ID + ") ON DELETE CASCADE" +
+    /**
+     * Recomputes the daily statistics from the game history in a single scan.
+     * SQLite buckets the timestamps by the local date of the device, like the app does on every save.
+     */
+    public static final String REBUILD_DAILY_STATISTICS =
+        "INSERT OR REPLACE INTO " + TABLE_DAILY_STATISTICS + " (" +
+        COLUMN_DAY + ", " +
+        COLUMN_DAY_GAMES + ", " +
+        COLUMN_DAY_WINS + ", " +
+        COLUMN_DAY_ATTEMPTS_SUM + ", " +
+        COLUMN_DAY_WRONG_ATTEMPTS_SUM + ") " +
+        "SELECT CAST(julianday(date(" + COLUMN_TIMESTAMP + " / 1000, 'unixepoch', 'localtime')) - 2440587.5 AS INTEGER), " +
+        "COUNT(*), " +
+        "TOTAL(" + COLUMN_IS_WIN + "), " +
+        "TOTAL(" + COLUMN_TOTAL_ATTEMPTS + "), " +
+        "TOTAL(" + COLUMN_WRONG_ATTEMPTS + ") " +
+        "FROM " + TABLE_GAME_HISTORY + " GROUP BY 1;";
+
+    // Create Breakdown Statistics Table. Hangman words have a few dozen lengths and a handful of possible
+    // wrong attempts, so the table stays at a few hundred rows however long the history gets
+    private static final String CREATE_BREAKDOWN_STATISTICS_TABLE =
+        "CREATE TABLE " + TABLE_BREAKDOWN_STATISTICS + " (" +
+        COLUMN_WORD_LENGTH + " INTEGER NOT NULL, " +
+        COLUMN_IS_CUSTOM_WORD + " INTEGER NOT NULL, " +
+        COLUMN_WRONG_ATTEMPTS + " INTEGER NOT NULL, " +
+        COLUMN_BREAKDOWN_GAMES + " INTEGER NOT NULL, " +
+        COLUMN_BREAKDOWN_WINS + " INTEGER NOT NULL, " +
+        COLUMN_BREAKDOWN_ATTEMPTS_SUM + " INTEGER NOT NULL, " +
+        "PRIMARY KEY (" + COLUMN_WORD_LENGTH + ", " + COLUMN_IS_CUSTOM_WORD + ", " + COLUMN_WRONG_ATTEMPTS + ")" +
+        ") WITHOUT ROWID;";
+
+    /**
+     * Recomputes the breakdown statistics from the game history in a single scan
+     */
+    public static final String REBUILD_BREAKDOWN_STATISTICS =
+        "INSERT OR REPLACE INTO " + TABLE_BREAKDOWN_STATISTICS + " (" +
+        COLUMN_WORD_LENGTH + ", " +
+        COLUMN_IS_CUSTOM_WORD + ", " +
+        COLUMN_WRONG_ATTEMPTS + ", " +
+        COLUMN_BREAKDOWN_GAMES + ", " +
+        COLUMN_BREAKDOWN_WINS + ", " +
+        COLUMN_BREAKDOWN_ATTEMPTS_SUM + ") " +
+        "SELECT LENGTH(" + COLUMN_WORD + "), " +
+        COLUMN_IS_CUSTOM_WORD + ", " +
+        COLUMN_WRONG_ATTEMPTS + ", " +
+        "COUNT(*), " +
+        "TOTAL(" + COLUMN_IS_WIN + "), " +
+        "TOTAL(" + COLUMN_TOTAL_ATTEMPTS + ") " +
+        "FROM " + TABLE_GAME_HISTORY + " GROUP BY 1, 2, 3;";
+
+    // Create Achievements Table, unlocked_at is NULL until the achievement is unlocked
+    private static final String CREATE_ACHIEVEMENTS_TABLE =
+        "CREATE TABLE " + TABLE_ACHIEVEMENTS + " (" +
+        COLUMN_ACHIEVEMENT_ID + " TEXT PRIMARY KEY, " +
+        COLUMN_ACHIEVEMENT_PROGRESS + " INTEGER NOT NULL DEFAULT 0, " +
+        COLUMN_ACHIEVEMENT_UNLOCKED_AT + " INTEGER" +
+        ") WITHOUT ROWID;";
+
+    // Create Streak Runs Table
+    private static final String CREATE_STREAK_RUNS_TABLE =
+        "CREATE TABLE " + TABLE_STREAK_RUNS + " (" +
+        COLUMN_RUN_ID + " INTEGER PRIMARY KEY, " +
+        COLUMN_RUN_IS_WIN + " INTEGER NOT NULL, " +
+        COLUMN_RUN_LENGTH + " INTEGER NOT NULL, " +
+        COLUMN_RUN_FIRST_TIMESTAMP + " INTEGER NOT NULL, " +
+        COLUMN_RUN_FIRST_GAME_ID + " INTEGER NOT NULL, " +
+        COLUMN_RUN_LAST_TIMESTAMP + " INTEGER NOT NULL, " +
+        COLUMN_RUN_LAST_GAME_ID + " INTEGER NOT NULL" +
         ");";
 
+    // Runs never overlap, so ordering by their first game also orders them by their last game
+    private static final String CREATE_STREAK_RUNS_POSITION_INDEX =
+        "CREATE INDEX idx_streak_runs_position ON " + TABLE_STREAK_RUNS + "(" +
+        COLUMN_RUN_FIRST_TIMESTAMP + ", " + COLUMN_RUN_FIRST_GAME_ID + ");";
+
+    // Longest win or losing streak is the last entry of one is_win range
+    private static final String CREATE_STREAK_RUNS_LENGTH_INDEX =
+        "CREATE INDEX idx_streak_runs_length ON " + TABLE_STREAK_RUNS + "(" +
+        COLUMN_RUN_IS_WIN + ", " + COLUMN_RUN_LENGTH + ");";
+
+    /**
+     * Recomputes the word statistics from the game history in a single scan over idx_word
+     */
+    public static final String REBUILD_WORD_STATISTICS =
+        "INSERT OR REPLACE INTO " + TABLE_WORD_STATISTICS + " (" +
+        COLUMN_WORD + ", " +
+        COLUMN_WORD_PLAYS + ", " +
+        COLUMN_WORD_WINS + ", " +
+        COLUMN_WORD_TOTAL_ATTEMPTS + ", " +
+        COLUMN_WORD_WRONG_ATTEMPTS + ", " +
+        COLUMN_WORD_LAST_PLAYED + ") " +
+        "SELECT " + COLUMN_WORD + ", " +
+        "COUNT(*), " +
+        "TOTAL(" + COLUMN_IS_WIN + "), " +
+        "TOTAL(" + COLUMN_TOTAL_ATTEMPTS + "), " +
+        "TOTAL(" + COLUMN_WRONG_ATTEMPTS + "), " +
+        "MAX(" + COLUMN_TIMESTAMP + ") " +
+        "FROM " + TABLE_GAME_HISTORY + " GROUP BY " + COLUMN_WORD + ";";
+
+    /**
+     * Recomputes the statistics row from the game history in a single scan
+     */
+    public static final String REBUILD_GAME_STATISTICS =
+        "INSERT OR REPLACE INTO " + TABLE_GAME_STATISTICS + " (" +
+        COLUMN_STATISTICS_ID + ", " +
+        COLUMN_GAMES_PLAYED + ", " +
+        COLUMN_WINS + ", " +
+        COLUMN_LOSSES + ", " +
+        COLUMN_ATTEMPTS_SUM + ", " +
+        COLUMN_WRONG_ATTEMPTS_SUM + ", " +
+        COLUMN_CUSTOM_GAMES + ", " +
+        COLUMN_CUSTOM_WINS + ", " +
+        COLUMN_RANDOM_GAMES + ", " +
+        COLUMN_RANDOM_WINS + ") " +
+        "SELECT " + STATISTICS_ROW_ID + ", " +
+        "COUNT(*), " +
+        "TOTAL(" + COLUMN_IS_WIN + "), " +
+        "COUNT(*) - TOTAL(" + COLUMN_IS_WIN + "), " +
+        "TOTAL(" + COLUMN_TOTAL_ATTEMPTS + "), " +
+        "TOTAL(" + COLUMN_WRONG_ATTEMPTS + "), " +
+        "TOTAL(" + COLUMN_IS_CUSTOM_WORD + "), " +
+        "TOTAL(" + COLUMN_IS_CUSTOM_WORD + " * " + COLUMN_IS_WIN + "), " +
+        "COUNT(*) - TOTAL(" + COLUMN_IS_CUSTOM_WORD + "), " +
+        "TOTAL((1 - " + COLUMN_IS_CUSTOM_WORD + ") * " + COLUMN_IS_WIN + ") " +
+        "FROM " + TABLE_GAME_HISTORY + ";";
+
     // Create index for faster queries
     private static final String CREATE_TIMESTAMP_INDEX = 
         "CREATE INDEX idx_timestamp ON " + TABLE_GAME_HISTORY + "(" + COLUMN_TIMESTAMP + ");";
 
-    private static final String CREATE_GAME_ID_INDEX = 
-        "CREATE INDEX idx_game_id ON " + TABLE_LETTER_TRIES + "(" + COLUMN_FK_GAME_ID + ");";
+    // Games of one word, newest first, and the last played time of a word after a delete
+    private static final String CREATE_WORD_INDEX =
+        "CREATE INDEX idx_word ON " + TABLE_GAME_HISTORY + "(" + COLUMN_WORD + ", " + COLUMN_TIMESTAMP + ");";
+
+    // Only games that still have their letter tries, so the retention policy finds the next
+    // games to prune without walking over the ones it already pruned
+    private static final String CREATE_LETTER_SEQUENCE_TIMESTAMP_INDEX =
+        "CREATE INDEX idx_letter_sequence_timestamp ON " + TABLE_GAME_HISTORY + "(" + COLUMN_TIMESTAMP + ") " +
+        "WHERE " + COLUMN_LETTER_SEQUENCE + " IS NOT NULL;";
+
+    // Every combination of the result and word type filters is an equality prefix followed by the
+    // timestamp range, so filtered history pages are index range scans in display order
+    private static final String CREATE_RESULT_TIMESTAMP_INDEX =
+        "CREATE INDEX idx_result_timestamp ON " + TABLE_GAME_HISTORY + "(" +
+        COLUMN_IS_WIN + ", " + COLUMN_TIMESTAMP + ");";
+
+    private static final String CREATE_CUSTOM_TIMESTAMP_INDEX =
+        "CREATE INDEX idx_custom_timestamp ON " + TABLE_GAME_HISTORY + "(" +
+        COLUMN_IS_CUSTOM_WORD + ", " + COLUMN_TIMESTAMP + ");";
+
+    private static final String CREATE_RESULT_CUSTOM_TIMESTAMP_INDEX =
+        "CREATE INDEX idx_result_custom_timestamp ON " + TABLE_GAME_HISTORY + "(" +
+        COLUMN_IS_WIN + ", " + COLUMN_IS_CUSTOM_WORD + ", " + COLUMN_TIMESTAMP + ");";
+
+    // Prefix indexes for two and three letters keep short searches from walking many terms
+    private static final String CREATE_GAME_SEARCH_TABLE =
+        "CREATE VIRTUAL TABLE " + TABLE_GAME_SEARCH + " USING fts4(" +
+        COLUMN_SEARCH_SUFFIXES + ", prefix=\"2,3\");";
+
+    // Top-K queries over the word statistics only read K index entries
+    private static final String CREATE_WORD_DIFFICULTY_INDEX =
+        "CREATE INDEX idx_word_stats_difficulty ON " + TABLE_WORD_STATISTICS + "(" + WORD_DIFFICULTY + ");";
+
+    private static final String CREATE_WORD_PLAYS_INDEX =
+        "CREATE INDEX idx_word_stats_plays ON " + TABLE_WORD_STATISTICS + "(" + COLUMN_WORD_PLAYS + ");";
 
     private static HangmanDatabaseHelper instance;
 
-    private HangmanDatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Debug builds turn this off, so any query on the main thread fails loudly instead of janking
+    private volatile boolean mainThreadQueriesAllowed = true;
+    private final QueryMetrics queryMetrics = new QueryMetrics(this);
+
+    private HangmanDatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
     }
 
     /**
@@ -73,30 +392,372 @@ public class HangmanDatabaseHelper extends SQLiteOpenHelper {
      */
     public static synchronized HangmanDatabaseHelper getInstance(Context context) {
         if (instance == null) {
-            instance = new HangmanDatabaseHelper(context.getApplicationContext());
+            instance = new HangmanDatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
         }
         return instance;
     }
 
+    /**
+     * Create a helper for a separate database file with the same schema, e.g. for benchmarks.
+     * The returned helper is not shared, the caller is responsible for closing it.
+     */
+    public static HangmanDatabaseHelper createForDatabase(Context context, String databaseName) {
+        return new HangmanDatabaseHelper(context.getApplicationContext(), databaseName);
+    }
+
+    /**
+     * Get the latency histograms and the slow query log of the DAO queries on this database
+     */
+    public QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+
+    /**
+     * Allow or forbid database access from the main thread.
+     * When forbidden, every DAO call made on the main thread throws an IllegalStateException.
+     */
+    public void setMainThreadQueriesAllowed(boolean allowed) {
+        this.mainThreadQueriesAllowed = allowed;
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        checkNotMainThread();
+        return super.getWritableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        checkNotMainThread();
+        return super.getReadableDatabase();
+    }
+
+    private void checkNotMainThread() {
+        if (!mainThreadQueriesAllowed && Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("Database access on the main thread, use the async API of HangmanRepository");
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_GAME_HISTORY_TABLE);
-        db.execSQL(CREATE_LETTER_TRIES_TABLE);
         db.execSQL(CREATE_TIMESTAMP_INDEX);
-        db.execSQL(CREATE_GAME_ID_INDEX);
+        db.execSQL(CREATE_GAME_STATISTICS_TABLE);
+        db.execSQL(REBUILD_GAME_STATISTICS);
+        createWordStatistics(db);
+        createLetterStatistics(db);
+        createDailyStatistics(db);
+        createStreakRuns(db);
+        createGameSearch(db);
+        db.execSQL(CREATE_LETTER_SEQUENCE_TIMESTAMP_INDEX);
+        createBreakdownStatistics(db);
+        createAchievements(db);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // For future versions, add migration logic here
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_LETTER_TRIES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GAME_HISTORY);
-        onCreate(db);
+        // Migrations run one version at a time so existing history is kept
+        if (oldVersion < 2) {
+            db.execSQL(CREATE_GAME_STATISTICS_TABLE);
+            db.execSQL(REBUILD_GAME_STATISTICS);
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_GAME_HISTORY + " ADD COLUMN " + COLUMN_LETTER_SEQUENCE + " BLOB");
+            migrateLetterTries(db);
+            db.execSQL("DROP TABLE " + TABLE_LETTER_TRIES);
+        }
+        if (oldVersion < 4) {
+            createWordStatistics(db);
+        }
+        if (oldVersion < 5) {
+            createLetterStatistics(db);
+        }
+        if (oldVersion < 6) {
+            createDailyStatistics(db);
+        }
+        if (oldVersion < 7) {
+            createStreakRuns(db);
+        }
+        if (oldVersion < 8) {
+            createGameSearch(db);
+        }
+        if (oldVersion < 9) {
+            createLetterStatisticsArchive(db);
+            db.execSQL(CREATE_LETTER_SEQUENCE_TIMESTAMP_INDEX);
+        }
+        if (oldVersion < 10) {
+            createBreakdownStatistics(db);
+        }
+        if (oldVersion < 11) {
+            createAchievements(db);
+        }
+    }
+
+    private static void createGameSearch(SQLiteDatabase db) {
+        db.execSQL(CREATE_RESULT_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_CUSTOM_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_RESULT_CUSTOM_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_GAME_SEARCH_TABLE);
+        GameSearchIndex.rebuild(db);
+    }
+
+    private static void createStreakRuns(SQLiteDatabase db) {
+        db.execSQL(CREATE_STREAK_RUNS_TABLE);
+        db.execSQL(CREATE_STREAK_RUNS_POSITION_INDEX);
+        db.execSQL(CREATE_STREAK_RUNS_LENGTH_INDEX);
+        StreakRunBuilder.rebuildRuns(db, StreakRunBuilder.START, StreakRunBuilder.END);
+    }
+
+    private static void createBreakdownStatistics(SQLiteDatabase db) {
+        db.execSQL(CREATE_BREAKDOWN_STATISTICS_TABLE);
+        db.execSQL(REBUILD_BREAKDOWN_STATISTICS);
+    }
+
+    /**
+     * Creates the achievements table, their progress is seeded from the maintained statistics
+     */
+    private static void createAchievements(SQLiteDatabase db) {
+        db.execSQL(CREATE_ACHIEVEMENTS_TABLE);
+        AchievementRule.seed(db, System.currentTimeMillis());
+    }
+
+    private static void createDailyStatistics(SQLiteDatabase db) {
+        db.execSQL(CREATE_DAILY_STATISTICS_TABLE);
+        db.execSQL(REBUILD_DAILY_STATISTICS);
+    }
+
+    private static void createLetterStatistics(SQLiteDatabase db) {
+        createLetterStatisticsArchive(db);
+        db.execSQL(CREATE_LETTER_STATISTICS_TABLE);
+        rebuildLetterStatistics(db);
+    }
+
+    /**
+     * Creates the archive with 26 zero rows, also when the letter statistics are created by an older migration step
+     */
+    private static void createLetterStatisticsArchive(SQLiteDatabase db) {
+        db.execSQL(CREATE_LETTER_STATISTICS_ARCHIVE_TABLE);
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_LETTER_STATISTICS_ARCHIVE + " (" + COLUMN_LETTER + ") VALUES (?)",
+                    new Object[]{String.valueOf(letter)});
+        }
+    }
+
+    /**
+     * Resets the 26 letter rows to the archived contributions of pruned games and adds the packed
+     * letter tries of every other game. Scans the whole history once, only needed when creating or
+     * repairing the table.
+     */
+    public static void rebuildLetterStatistics(SQLiteDatabase db) {
+        String columns = COLUMN_LETTER + ", " + COLUMN_LETTER_GUESSES + ", " + COLUMN_LETTER_HITS + ", " +
+                COLUMN_LETTER_POSITION_SUM + ", " + COLUMN_LETTER_FIRST_GUESSES + ", " + COLUMN_LETTER_FIRST_GUESS_WINS;
+        db.delete(TABLE_LETTER_STATISTICS, null, null);
+        db.execSQL("INSERT INTO " + TABLE_LETTER_STATISTICS + " (" + columns + ") " +
+                "SELECT " + columns + " FROM " + TABLE_LETTER_STATISTICS_ARCHIVE);
+
+        LetterStatisticsDelta delta = new LetterStatisticsDelta();
+        Cursor cursor = db.rawQuery(
+            "SELECT " + COLUMN_GAME_ID + ", " + COLUMN_IS_WIN + ", " + COLUMN_LETTER_SEQUENCE +
+            " FROM " + TABLE_GAME_HISTORY + " WHERE " + COLUMN_LETTER_SEQUENCE + " IS NOT NULL", null);
+        try {
+            while (cursor.moveToNext()) {
+                delta.addGame(cursor.getInt(1) == 1, LetterTryCodec.decode(cursor.getLong(0), cursor.getBlob(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        delta.applyTo(db);
+    }
+
+    private static void createWordStatistics(SQLiteDatabase db) {
+        db.execSQL(CREATE_WORD_INDEX);
+        db.execSQL(CREATE_WORD_STATISTICS_TABLE);
+        db.execSQL(CREATE_WORD_DIFFICULTY_INDEX);
+        db.execSQL(CREATE_WORD_PLAYS_INDEX);
+        db.execSQL(REBUILD_WORD_STATISTICS);
+    }
+
+    /**
+     * Packs the rows of the old letter_tries table into the letter_sequence column.
+     * The games are converted in ranges of game IDs, so only one batch of tries is held in memory.
+     */
+    private static void migrateLetterTries(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement(
+            "UPDATE " + TABLE_GAME_HISTORY + " SET " + COLUMN_LETTER_SEQUENCE + " = ? " +
+            "WHERE " + COLUMN_GAME_ID + " = ?");
+        try {
+            long lastGameId = 0;
+            while (true) {
+                long batchEnd = getBatchEnd(db, lastGameId);
+                if (batchEnd == -1) break;
+
+                Cursor cursor = db.rawQuery(
+                    "SELECT " + COLUMN_FK_GAME_ID + ", " + COLUMN_LETTER + ", " + COLUMN_IS_CORRECT +
+                    " FROM " + TABLE_LETTER_TRIES +
+                    " WHERE " + COLUMN_FK_GAME_ID + " > ? AND " + COLUMN_FK_GAME_ID + " <= ?" +
+                    " ORDER BY " + COLUMN_FK_GAME_ID + ", " + COLUMN_TRY_ORDER,
+                    new String[]{String.valueOf(lastGameId), String.valueOf(batchEnd)});
+                try {
+                    long gameId = -1;
+                    List<LetterTry> letterTries = new ArrayList<>();
+                    while (cursor.moveToNext()) {
+                        if (cursor.getLong(0) != gameId) {
+                            writeLetterSequence(update, gameId, letterTries);
+                            gameId = cursor.getLong(0);
+                            letterTries.clear();
+                        }
+                        letterTries.add(new LetterTry(gameId, cursor.getString(1).charAt(0),
+                                cursor.getInt(2) == 1, letterTries.size()));
+                    }
+                    writeLetterSequence(update, gameId, letterTries);
+                } finally {
+                    cursor.close();
+                }
+                lastGameId = batchEnd;
+            }
+        } finally {
+            update.close();
+        }
+    }
+
+    /**
+     * Get the highest game ID of the next migration batch, or -1 if all games are migrated
+     */
+    private static long getBatchEnd(SQLiteDatabase db, long lastGameId) {
+        Cursor cursor = db.rawQuery(
+            "SELECT MAX(" + COLUMN_GAME_ID + ") FROM (SELECT " + COLUMN_GAME_ID +
+            " FROM " + TABLE_GAME_HISTORY + " WHERE " + COLUMN_GAME_ID + " > ?" +
+            " ORDER BY " + COLUMN_GAME_ID + " LIMIT " + MIGRATION_BATCH_SIZE + ")",
+            new String[]{String.valueOf(lastGameId)});
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void writeLetterSequence(SQLiteStatement update, long gameId, List<LetterTry> letterTries) {
+        if (letterTries.isEmpty()) return;
+        update.bindBlob(1, LetterTryCodec.encode(letterTries));
+        update.bindLong(2, gameId);
+        update.executeUpdateDelete();
     }
 
     @Override
     public void onConfigure(SQLiteDatabase db) {
         super.onConfigure(db);
         db.setForeignKeyConstraintsEnabled(true);
+
+        // Only takes effect while the database has no tables yet, older databases are switched
+        // by enableIncrementalVacuum(). Pages freed by the retention policy are then returned
+        // to the file system in small steps instead of one long VACUUM
+        runPragma(db, "PRAGMA auto_vacuum = INCREMENTAL");
+
+        // With write-ahead logging readers see the last committed state and never wait
+        // for a running write transaction, the connection pool serves them in parallel
+        db.enableWriteAheadLogging();
+        // NORMAL only syncs on checkpoints, which is safe with WAL and much cheaper per commit
+        runPragma(db, "PRAGMA synchronous = NORMAL");
+        runPragma(db, "PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+        runPragma(db, "PRAGMA journal_size_limit = " + JOURNAL_SIZE_LIMIT_BYTES);
+    }
+
+    /**
+     * Copy the write-ahead log back into the database file without blocking readers or writers,
+     * e.g. after a bulk import that grew the log
+     */
+    public void checkpoint() {
+        runPragma(getWritableDatabase(), "PRAGMA wal_checkpoint(PASSIVE)");
+    }
+
+    /**
+     * Whether freed pages can be returned with {@link #incrementalVacuum(int)}.
+     * Databases created before version 9 need {@link #enableIncrementalVacuum()} first.
+     */
+    public boolean isIncrementalVacuumEnabled() {
+        Cursor cursor = getReadableDatabase().rawQuery("PRAGMA auto_vacuum", null);
+        try {
+            return !cursor.moveToFirst() || cursor.getInt(0) == AUTO_VACUUM_INCREMENTAL;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Switch the database to incremental auto-vacuum if it is not yet.
+     * Databases created before version 9 need one full VACUUM for that, which rewrites the file and
+     * holds the write lock for as long as that takes on a large history. Never call it on the writer
+     * thread, {@link VacuumConversionJobService} runs it while the device is idle.
+     */
+    public void enableIncrementalVacuum() {
+        if (isIncrementalVacuumEnabled()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        runPragma(db, "PRAGMA auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+    }
+
+    /**
+     * Get the number of unused pages in the database file
+     */
+    public long getFreePageCount() {
+        Cursor cursor = getReadableDatabase().rawQuery("PRAGMA freelist_count", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return up to the given number of free pages to the file system, only holds the write lock briefly
+     */
+    public void incrementalVacuum(int pages) {
+        runPragma(getWritableDatabase(), "PRAGMA incremental_vacuum(" + pages + ")");
+    }
+
+    /**
+     * Empty the game history by dropping and recreating it together with its indexes and the search index.
+     * Unlike a DELETE this frees whole pages without visiting every row and index entry. The freed pages stay
+     * in the file until they are vacuumed.
+     * Dropping the table also drops its AUTOINCREMENT counter, it is written back so new games never reuse the
+     * ID of a cleared one that caches or prefetches in flight may still hold.
+     * Must run inside a transaction, the statistics tables are reset by their DAOs.
+     */
+    public void truncateGameHistory() {
+        SQLiteDatabase db = getWritableDatabase();
+        String[] table = {TABLE_GAME_HISTORY};
+        Cursor cursor = db.rawQuery("SELECT seq FROM sqlite_sequence WHERE name = ?", table);
+        Long lastGameId;
+        try {
+            lastGameId = cursor.moveToFirst() ? cursor.getLong(0) : null;
+        } finally {
+            cursor.close();
+        }
+
+        db.execSQL("DROP TABLE " + TABLE_GAME_SEARCH);
+        db.execSQL("DROP TABLE " + TABLE_GAME_HISTORY);
+        db.execSQL(CREATE_GAME_HISTORY_TABLE);
+        db.execSQL(CREATE_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_WORD_INDEX);
+        db.execSQL(CREATE_LETTER_SEQUENCE_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_RESULT_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_CUSTOM_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_RESULT_CUSTOM_TIMESTAMP_INDEX);
+        db.execSQL(CREATE_GAME_SEARCH_TABLE);
+        if (lastGameId != null) {
+            db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)", new Object[]{TABLE_GAME_HISTORY, lastGameId});
+        }
+    }
+
+    /**
+     * Pragmas that return a row have to be run as a query and the cursor has to be consumed
+     */
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        if (cursor != null) {
+            cursor.moveToFirst();
+            cursor.close();
+        }
     }
 }
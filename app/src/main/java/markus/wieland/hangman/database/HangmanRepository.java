@@ -1,27 +1,122 @@
 package markus.wieland.hangman.database;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
+import markus.wieland.hangman.database.dao.AchievementDao;
+import markus.wieland.hangman.database.dao.BreakdownStatisticsDao;
+import markus.wieland.hangman.database.dao.DailyStatisticsDao;
 import markus.wieland.hangman.database.dao.GameHistoryDao;
+import markus.wieland.hangman.database.dao.GameRow;
+import markus.wieland.hangman.database.dao.LetterStatisticsDao;
 import markus.wieland.hangman.database.dao.LetterTryDao;
+import markus.wieland.hangman.database.dao.StatisticsDao;
+import markus.wieland.hangman.database.dao.StreakDao;
+import markus.wieland.hangman.database.dao.WordStatisticsDao;
+import markus.wieland.hangman.database.models.Achievement;
+import markus.wieland.hangman.database.models.DashboardStatistics;
 import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.GameHistoryFilter;
+import markus.wieland.hangman.database.models.GameStatistics;
+import markus.wieland.hangman.database.models.LetterStatistics;
 import markus.wieland.hangman.database.models.LetterTry;
+import markus.wieland.hangman.database.models.PeriodStatistics;
+import markus.wieland.hangman.database.models.StreakStatistics;
+import markus.wieland.hangman.database.models.WordStatistics;
 
 /**
  * Repository class that provides a unified interface for database operations.
- * This class combines the functionality of GameHistoryDao and LetterTryDao.
+ * This class combines the functionality of GameHistoryDao and LetterTryDao
+ * and keeps the aggregated statistics in sync with every write.
+ *
+ * The database runs in write-ahead logging mode: writes use non-exclusive transactions on the
+ * primary connection, while reads outside a transaction are served by the secondary connections
+ * of the pool. History and statistics queries therefore run concurrently with a save on the
+ * writer thread and see the last committed state instead of waiting for it.
+ *
+ * Screens use the async methods, which run queries on a small reader pool and writes on the
+ * single writer thread of the write queue, and receive the results through a {@link DatabaseCallScope}.
+ * The synchronous methods are meant for background threads; in debuggable builds the database
+ * helper throws if they are called on the main thread.
  */
 public class HangmanRepository {
 
+    private static final String TAG = "HangmanRepository";
+
+    // The retention policy is enforced on the writer thread after every this many saved games
+    static final int RETENTION_INTERVAL_GAMES = 100;
+    // Games pruned per transaction and pages returned to the file system after each of them
+    private static final int RETENTION_BATCH_SIZE = 200;
+    private static final int RETENTION_VACUUM_PAGES = 256;
+    // Complete games kept decoded for the detail dialog
+    private static final int GAME_CACHE_SIZE = 64;
+    // Games deleted per transaction by a bulk delete, so other writes and readers wait at most one chunk
+    private static final int DELETE_CHUNK_SIZE = 100;
+    // Games loaded by one prefetch, half the cache so it cannot evict the recently opened games
+    public static final int PREFETCH_LIMIT = GAME_CACHE_SIZE / 2;
+    // Time close() waits for the queued games before the writer thread is stopped
+    private static final long CLOSE_FLUSH_TIMEOUT_MILLIS = 60_000;
+    // Reader threads of the async API, WAL lets them query concurrently with the writer thread
+    private static final int READER_THREADS = 2;
+
     private static HangmanRepository instance;
+    private final Context context;
+    private final HangmanDatabaseHelper dbHelper;
     private final GameHistoryDao gameHistoryDao;
     private final LetterTryDao letterTryDao;
+    private final StatisticsDao statisticsDao;
+    private final WordStatisticsDao wordStatisticsDao;
+    private final LetterStatisticsDao letterStatisticsDao;
+    private final DailyStatisticsDao dailyStatisticsDao;
+    private final BreakdownStatisticsDao breakdownStatisticsDao;
+    private final StreakDao streakDao;
+    private final AchievementDao achievementDao;
+    private final GameWriteQueue writeQueue;
+    private final GameHistoryCache gameCache = new GameHistoryCache(GAME_CACHE_SIZE);
+    private final GameHistoryProjection projection;
+    private final List<GameHistoryObserver> observers = new CopyOnWriteArrayList<>();
+    private final ExecutorService readExecutor;
+    // Bounds the stored tries, only games beyond the newest 10000 lose their details
+    private volatile RetentionPolicy retentionPolicy = RetentionPolicy.DEFAULT;
+    // Only touched by the writer thread
+    private int gamesSinceRetention;
+
+    private HangmanRepository(Context context, HangmanDatabaseHelper dbHelper) {
+        this.context = context;
+        this.dbHelper = dbHelper;
+        this.gameHistoryDao = new GameHistoryDao(dbHelper);
+        this.letterTryDao = new LetterTryDao(dbHelper);
+        this.statisticsDao = new StatisticsDao(dbHelper);
+        this.wordStatisticsDao = new WordStatisticsDao(dbHelper);
+        this.letterStatisticsDao = new LetterStatisticsDao(dbHelper);
+        this.dailyStatisticsDao = new DailyStatisticsDao(dbHelper);
+        this.breakdownStatisticsDao = new BreakdownStatisticsDao(dbHelper);
+        this.streakDao = new StreakDao(dbHelper);
+        this.achievementDao = new AchievementDao(dbHelper);
+        this.writeQueue = new GameWriteQueue(this::saveGames);
+        this.projection = new GameHistoryProjection(gameHistoryDao::forEachGameAfter);
 
-    private HangmanRepository(Context context) {
-        this.gameHistoryDao = new GameHistoryDao(context);
-        this.letterTryDao = new LetterTryDao(context);
+        AtomicInteger readerCount = new AtomicInteger();
+        this.readExecutor = Executors.newFixedThreadPool(READER_THREADS,
+                runnable -> new Thread(runnable, "hangman-db-reader-" + readerCount.incrementAndGet()));
     }
 
     /**
@@ -29,11 +124,34 @@ public class HangmanRepository {
      */
     public static synchronized HangmanRepository getInstance(Context context) {
         if (instance == null) {
-            instance = new HangmanRepository(context.getApplicationContext());
+            HangmanDatabaseHelper dbHelper = HangmanDatabaseHelper.getInstance(context);
+            boolean debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+            dbHelper.setMainThreadQueriesAllowed(!debuggable);
+            instance = new HangmanRepository(context.getApplicationContext(), dbHelper);
         }
         return instance;
     }
 
+    /**
+     * Create a repository on a separate database file, e.g. for benchmarks.
+     * The returned repository is not shared, close it with {@link #close()} when done.
+     */
+    public static HangmanRepository createForDatabase(Context context, String databaseName) {
+        return new HangmanRepository(context.getApplicationContext(), HangmanDatabaseHelper.createForDatabase(context, databaseName));
+    }
+
+    /**
+     * Write the queued games, stop the writer thread and close the underlying database, in that order.
+     * Only meant for repositories created with {@link #createForDatabase(Context, String)}.
+     */
+    public void close() {
+        if (!writeQueue.close(CLOSE_FLUSH_TIMEOUT_MILLIS)) {
+            Log.w(TAG, "Closed before all queued games were written");
+        }
+        readExecutor.shutdown();
+        dbHelper.close();
+    }
+
     /**
      * Save a complete game with all its letter tries
      * @param gameHistory The game history to save
@@ -41,31 +159,256 @@ public class HangmanRepository {
      * @return The game ID if successful, -1 otherwise
      */
     public long saveGame(GameHistory gameHistory, List<LetterTry> letterTries) {
-        long gameId = gameHistoryDao.insertGameHistory(gameHistory);
-        
-        if (gameId != -1 && letterTries != null && !letterTries.isEmpty()) {
-            // Set the game ID for all letter tries
-            for (LetterTry letterTry : letterTries) {
-                letterTry.setGameId(gameId);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long gameId;
+
+        db.beginTransactionNonExclusive();
+        try {
+            gameId = insertGame(gameHistory, letterTries);
+            if (gameId != -1) db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (gameId != -1) notifyGamesInserted(Collections.singletonList(gameHistory));
+        return gameId;
+    }
+
+    /**
+     * Import a large number of games in batched transactions, e.g. from a backup.
+     * Every game carries its own letter tries (see {@link GameHistory#getLetterTries()}),
+     * the statistics are updated once per batch instead of once per game.
+     * @param games The games to import
+     * @param batchSize Number of games committed per transaction
+     * @return Number of imported games
+     */
+    public int importGames(Iterator<GameHistory> games, int batchSize) {
+        int imported = 0;
+        while (games.hasNext()) {
+            imported += importBatch(games, batchSize);
+        }
+
+        // A large import grows the write-ahead log, fold it back while nobody is waiting
+        checkpointDatabase();
+        return imported;
+    }
+
+    /**
+     * Export the whole history with its letter tries, streaming from the database to the channel
+     * @param channel Destination, it is not closed
+     * @param format CSV or JSON Lines
+     * @param listener Progress listener, may be null
+     * @return Number of exported games
+     */
+    public long exportHistory(WritableByteChannel channel, HistoryFormat format,
+                              HistoryExporter.ProgressListener listener) throws IOException {
+        return new HistoryExporter(gameHistoryDao).export(channel, format, listener);
+    }
+
+    /**
+     * Import an exported history in batched transactions, streaming from the channel to the database.
+     * The games get new IDs, importing the same export twice adds its games twice.
+     * @param channel Source, it is not closed
+     * @param format Format the history was exported with
+     * @param startOffset 0, or the last checkpoint offset of an interrupted import of the same source
+     * @param batchSize Number of games committed per transaction
+     * @param listener Receives the number of imported games and the checkpoint offset after every batch, may be null
+     * @return Number of imported games
+     */
+    public long importHistory(ReadableByteChannel channel, HistoryFormat format, long startOffset, int batchSize,
+                              HistoryImporter.ProgressListener listener) throws IOException {
+        return new HistoryImporter(this, batchSize).importHistory(channel, format, startOffset, listener);
+    }
+
+    /**
+     * Imports up to batchSize games in one transaction, the statistics are updated once for the batch
+     * @return Number of imported games
+     */
+    int importBatch(Iterator<GameHistory> games, int batchSize) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        GameStatistics batchStatistics = new GameStatistics();
+        LetterStatisticsDelta batchLetterStatistics = new LetterStatisticsDelta();
+        List<GameHistory> imported = new ArrayList<>(batchSize);
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < batchSize && games.hasNext(); i++) {
+                GameHistory gameHistory = games.next();
+                if (gameHistoryDao.insertGameHistory(gameHistory) == -1) continue;
+                wordStatisticsDao.addGame(gameHistory);
+                dailyStatisticsDao.addGame(gameHistory);
+                breakdownStatisticsDao.addGame(gameHistory);
+                streakDao.addGame(gameHistory);
+                achievementDao.addImportedGame(gameHistory);
+                batchStatistics.addGame(gameHistory);
+                batchLetterStatistics.addGame(gameHistory.isWin(), gameHistory.getLetterTries());
+                imported.add(gameHistory);
+            }
+            statisticsDao.addStatistics(batchStatistics);
+            letterStatisticsDao.applyDelta(batchLetterStatistics);
+            // The imported games may be older than the history, the streak runs know the order by time
+            if (!imported.isEmpty()) achievementDao.reseedRuns();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        notifyGamesInserted(imported);
+        return imported.size();
+    }
+
+    /**
+     * Fold the write-ahead log back into the database after a bulk write
+     */
+    void checkpointDatabase() {
+        dbHelper.checkpoint();
+    }
+
+    /**
+     * Queue a finished game to be saved on the background writer thread.
+     * Returns immediately, the game ID is set on the game history once it is written.
+     * @param gameHistory The game history to save
+     * @param letterTries List of letter tries for the game
+     */
+    public void enqueueGame(GameHistory gameHistory, List<LetterTry> letterTries) {
+        writeQueue.enqueue(gameHistory, letterTries);
+    }
+
+    /**
+     * Wait until all queued games are written, e.g. before the app goes away.
+     * Never call it on the main thread, {@link PendingWritesJobService} drains the queue when the app is left.
+     * @param timeoutMillis Maximum time to wait
+     * @return true if all queued games were written in time
+     */
+    public boolean flushPendingWrites(long timeoutMillis) {
+        return writeQueue.flush(timeoutMillis);
+    }
+
+    /**
+     * Whether games or writes are queued that are not written yet
+     */
+    public boolean hasPendingWrites() {
+        return writeQueue.hasPendingWrites();
+    }
+
+    /**
+     * Get queue depth and commit latency of the background writer
+     */
+    public GameWriteQueue.Metrics getWriteQueueMetrics() {
+        return writeQueue.getMetrics();
+    }
+
+    /**
+     * Writes a burst of queued games in one transaction.
+     * If one of them fails the group is rolled back and the games are saved one by one,
+     * so a single bad game never takes the others with it.
+     */
+    private void saveGames(List<GameWriteQueue.PendingGame> batch) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        boolean committed = false;
+
+        db.beginTransactionNonExclusive();
+        try {
+            committed = true;
+            for (GameWriteQueue.PendingGame pendingGame : batch) {
+                if (insertGame(pendingGame.gameHistory, pendingGame.letterTries) == -1) {
+                    committed = false;
+                    break;
+                }
+            }
+            if (committed) db.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            committed = false;
+            Log.w(TAG, "Group commit failed, saving games one by one", e);
+        } finally {
+            db.endTransaction();
+        }
+
+        if (committed) {
+            List<GameHistory> saved = new ArrayList<>(batch.size());
+            for (GameWriteQueue.PendingGame pendingGame : batch) {
+                saved.add(pendingGame.gameHistory);
+            }
+            notifyGamesInserted(saved);
+        } else {
+            // saveGame() notifies the observers of every game it saved
+            for (GameWriteQueue.PendingGame pendingGame : batch) {
+                try {
+                    if (saveGame(pendingGame.gameHistory, pendingGame.letterTries) == -1) {
+                        Log.e(TAG, "Failed to save game " + pendingGame.gameHistory);
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to save game " + pendingGame.gameHistory, e);
+                }
             }
-            letterTryDao.insertLetterTries(letterTries);
         }
-        
+
+        gamesSinceRetention += batch.size();
+        if (gamesSinceRetention >= RETENTION_INTERVAL_GAMES) {
+            gamesSinceRetention = 0;
+            try {
+                applyRetentionPolicy();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Applying the retention policy failed", e);
+            }
+        }
+    }
+
+    /**
+     * Inserts a game with its packed letter tries and updates its statistics.
+     * Must be called inside a transaction.
+     */
+    private long insertGame(GameHistory gameHistory, List<LetterTry> letterTries) {
+        long gameId = gameHistoryDao.insertGameHistory(gameHistory, letterTries);
+        if (gameId == -1) return -1;
+
+        statisticsDao.addGame(gameHistory);
+        wordStatisticsDao.addGame(gameHistory);
+        dailyStatisticsDao.addGame(gameHistory);
+        breakdownStatisticsDao.addGame(gameHistory);
+        streakDao.addGame(gameHistory);
+        achievementDao.addGame(gameHistory, letterTries);
+
+        LetterStatisticsDelta letterStatistics = new LetterStatisticsDelta();
+        letterStatistics.addGame(gameHistory.isWin(), letterTries);
+        letterStatisticsDao.applyDelta(letterStatistics);
         return gameId;
     }
 
     /**
-     * Get complete game history with letter tries
+     * Get complete game history with letter tries.
+     * Recently opened games are served from an LRU cache without a query, the returned
+     * game is shared with later callers and must not be modified.
      * @param gameId The game ID
      * @return GameHistory with letter tries loaded
      */
     public GameHistory getCompleteGameHistory(long gameId) {
-        GameHistory gameHistory = gameHistoryDao.getGameHistoryById(gameId);
-        if (gameHistory != null) {
-            List<LetterTry> letterTries = letterTryDao.getLetterTriesByGameId(gameId);
-            gameHistory.setLetterTries(letterTries);
-        }
-        return gameHistory;
+        return gameCache.get(gameId, gameHistoryDao::getCompleteGameHistoryById);
+    }
+
+    /**
+     * Load the complete games that are not cached yet with one query, so opening them later
+     * costs no query. Used for the rows of the history list that are on screen.
+     * @param gameIds The games to load, at most PREFETCH_LIMIT; further IDs are ignored
+     * @return Number of games loaded
+     */
+    public int prefetchCompleteGames(long[] gameIds) {
+        long[] limited = gameIds.length > PREFETCH_LIMIT ? Arrays.copyOf(gameIds, PREFETCH_LIMIT) : gameIds;
+        return gameCache.prefetch(limited, gameHistoryDao::getCompleteGameHistoryByIds);
+    }
+
+    /**
+     * Get hits, misses and size of the complete game cache
+     */
+    public GameHistoryCache.Metrics getGameCacheMetrics() {
+        return gameCache.getMetrics();
+    }
+
+    /**
+     * Get the latency histograms and slow-query log of the DAO queries
+     */
+    public QueryMetrics getQueryMetrics() {
+        return dbHelper.getQueryMetrics();
     }
 
     /**
@@ -101,6 +444,45 @@ public class HangmanRepository {
         return gameHistoryDao.getRecentGameHistory(limit);
     }
 
+    /**
+     * Stream every game through the callback without loading the history into memory.
+     * The row passed to the callback is reused and only valid during the call.
+     * @return Number of games read
+     */
+    public int forEachGame(GameRow.Callback callback) {
+        return gameHistoryDao.forEachGame(callback);
+    }
+
+    /**
+     * Run a computation over the columnar in-memory copy of the history, see {@link GameHistoryProjection}.
+     * The first call loads the copy from the database, later calls only read memory.
+     */
+    public <T> T queryProjection(GameHistoryProjection.Query<T> query) {
+        return projection.query(query);
+    }
+
+    public List<GameHistory> getGameHistoryPageBefore(long timestamp, long gameId, int limit) {
+        return gameHistoryDao.getGameHistoryPageBefore(timestamp, gameId, limit);
+    }
+
+    public List<GameHistory> getGameHistoryPageAfter(long timestamp, long gameId, int limit) {
+        return gameHistoryDao.getGameHistoryPageAfter(timestamp, gameId, limit);
+    }
+
+    /**
+     * Get the next page of older games matching a filter, see {@link GameHistoryDao#searchGameHistoryPageBefore}
+     */
+    public List<GameHistory> searchGameHistoryPageBefore(GameHistoryFilter filter, long timestamp, long gameId, int limit) {
+        return gameHistoryDao.searchGameHistoryPageBefore(filter, timestamp, gameId, limit);
+    }
+
+    /**
+     * Get the previous page of newer games matching a filter, see {@link GameHistoryDao#searchGameHistoryPageAfter}
+     */
+    public List<GameHistory> searchGameHistoryPageAfter(GameHistoryFilter filter, long timestamp, long gameId, int limit) {
+        return gameHistoryDao.searchGameHistoryPageAfter(filter, timestamp, gameId, limit);
+    }
+
     public GameHistory getGameHistoryById(long gameId) {
         return gameHistoryDao.getGameHistoryById(gameId);
     }
@@ -110,23 +492,436 @@ public class HangmanRepository {
     }
 
     public int getTotalGamesPlayed() {
-        return gameHistoryDao.getTotalGamesPlayed();
+        return statisticsDao.getStatistics().getGamesPlayed();
     }
 
     public int getTotalWins() {
-        return gameHistoryDao.getTotalWins();
+        return statisticsDao.getStatistics().getWins();
     }
 
     public int getTotalLosses() {
-        return gameHistoryDao.getTotalLosses();
+        return statisticsDao.getStatistics().getLosses();
     }
 
+    /**
+     * Delete a game and remove it from the statistics in one transaction
+     * @param gameId The game ID to delete
+     * @return Number of rows deleted
+     */
     public int deleteGameHistory(long gameId) {
-        return gameHistoryDao.deleteGameHistory(gameId);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int deleted = 0;
+
+        db.beginTransactionNonExclusive();
+        try {
+            // The letter tries are needed to take the game out of the letter statistics
+            GameHistory gameHistory = gameHistoryDao.getCompleteGameHistoryById(gameId);
+            if (gameHistory != null) {
+                deleted = gameHistoryDao.deleteGameHistory(gameId);
+                if (deleted > 0) {
+                    statisticsDao.removeGame(gameHistory);
+                    wordStatisticsDao.removeGame(gameHistory);
+                    dailyStatisticsDao.removeGame(gameHistory);
+                    breakdownStatisticsDao.removeGame(gameHistory);
+                    streakDao.removeGame(gameHistory);
+
+                    LetterStatisticsDelta letterStatistics = new LetterStatisticsDelta();
+                    letterStatistics.removeGame(gameHistory.isWin(), gameHistory.getLetterTries());
+                    letterStatisticsDao.applyDelta(letterStatistics);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // After the commit, so a concurrent load cannot cache the deleted game again
+        if (deleted > 0) {
+            gameCache.invalidate(gameId);
+            notifyGamesDeleted(new long[]{gameId});
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete several games, e.g. the ones selected in the history list.
+     * Runs one transaction per chunk of 100 games, each removes its games from all statistics and
+     * its deletions are published to the observers after its commit.
+     * @param gameIds The game IDs to delete, IDs of games that do not exist are skipped
+     * @return Number of games deleted
+     */
+    public int deleteGames(long[] gameIds) {
+        int deleted = 0;
+        for (int from = 0; from < gameIds.length; from += DELETE_CHUNK_SIZE) {
+            deleted += deleteChunk(Arrays.copyOfRange(gameIds, from, Math.min(from + DELETE_CHUNK_SIZE, gameIds.length)));
+        }
+        return deleted;
+    }
+
+    private int deleteChunk(long[] gameIds) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        List<GameHistory> games;
+
+        db.beginTransactionNonExclusive();
+        try {
+            // The letter tries are needed to take the games out of the letter statistics
+            games = gameHistoryDao.getCompleteGameHistoryByIds(gameIds);
+            long[] existingIds = new long[games.size()];
+            LetterStatisticsDelta letterStatistics = new LetterStatisticsDelta();
+            for (int i = 0; i < games.size(); i++) {
+                GameHistory gameHistory = games.get(i);
+                existingIds[i] = gameHistory.getGameId();
+                statisticsDao.removeGame(gameHistory);
+                wordStatisticsDao.removeGame(gameHistory);
+                dailyStatisticsDao.removeGame(gameHistory);
+                breakdownStatisticsDao.removeGame(gameHistory);
+                letterStatistics.removeGame(gameHistory.isWin(), gameHistory.getLetterTries());
+            }
+            gameHistoryDao.deleteGameHistoryByIds(existingIds);
+            // The streak runs are rescanned from the remaining games, so they follow the delete
+            for (GameHistory gameHistory : games) {
+                streakDao.removeGame(gameHistory);
+            }
+            letterStatisticsDao.applyDelta(letterStatistics);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (games.isEmpty()) return 0;
+        long[] deletedIds = new long[games.size()];
+        for (int i = 0; i < games.size(); i++) {
+            deletedIds[i] = games.get(i).getGameId();
+            gameCache.invalidate(deletedIds[i]);
+        }
+        notifyGamesDeleted(deletedIds);
+        return deletedIds.length;
     }
 
+    /**
+     * Delete all games and reset the statistics in one transaction.
+     * The game history is dropped and recreated instead of deleted row by row, the freed pages are
+     * returned to the file system afterwards on the writer thread.
+     * @return Number of rows deleted
+     */
     public int deleteAllGameHistory() {
-        return gameHistoryDao.deleteAllGameHistory();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int deleted;
+
+        db.beginTransactionNonExclusive();
+        try {
+            deleted = gameHistoryDao.deleteAllGameHistory();
+            statisticsDao.resetStatistics();
+            wordStatisticsDao.resetWordStatistics();
+            letterStatisticsDao.resetLetterStatistics();
+            dailyStatisticsDao.resetDailyStatistics();
+            breakdownStatisticsDao.resetBreakdownStatistics();
+            streakDao.resetStreaks();
+            achievementDao.resetProgress();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        gameCache.invalidateAll();
+        notifyHistoryCleared();
+        writeQueue.execute(this::reclaimFreePages);
+        return deleted;
+    }
+
+    // Async API
+
+    /**
+     * Run a query on the reader pool.
+     * Cancelling the future before the query starts skips it.
+     */
+    public <T> CompletableFuture<T> readAsync(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, readExecutor);
+    }
+
+    /**
+     * Run a write on the writer thread, after all games and writes queued before it.
+     * Cancelling the future before the write starts skips it.
+     */
+    public <T> CompletableFuture<T> writeAsync(Supplier<T> write) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        writeQueue.execute(() -> {
+            if (future.isDone()) return;
+            try {
+                future.complete(write.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public CompletableFuture<GameHistory> getCompleteGameHistoryAsync(long gameId) {
+        return readAsync(() -> getCompleteGameHistory(gameId));
+    }
+
+    /**
+     * Prefetch complete games on the reader pool; cancelling the future before it starts skips the query
+     */
+    public CompletableFuture<Integer> prefetchCompleteGamesAsync(long[] gameIds) {
+        return readAsync(() -> prefetchCompleteGames(gameIds));
+    }
+
+    public <T> CompletableFuture<T> queryProjectionAsync(GameHistoryProjection.Query<T> query) {
+        return readAsync(() -> queryProjection(query));
+    }
+
+    public CompletableFuture<GameStatistics> getGameStatisticsAsync() {
+        return readAsync(this::getGameStatistics);
+    }
+
+    public CompletableFuture<DashboardStatistics> getDashboardStatisticsAsync() {
+        return readAsync(this::getDashboardStatistics);
+    }
+
+    public CompletableFuture<StreakStatistics> getStreakStatisticsAsync() {
+        return readAsync(this::getStreakStatistics);
+    }
+
+    public CompletableFuture<List<Achievement>> getAchievementsAsync() {
+        return readAsync(this::getAchievements);
+    }
+
+    public CompletableFuture<List<PeriodStatistics>> getStatisticsOverTimeAsync(LocalDate from, LocalDate to,
+                                                                              PeriodStatistics.Granularity granularity) {
+        return readAsync(() -> getStatisticsOverTime(from, to, granularity));
+    }
+
+    public CompletableFuture<List<GameHistory>> searchGameHistoryPageBeforeAsync(GameHistoryFilter filter, long timestamp,
+                                                                                long gameId, int limit) {
+        return readAsync(() -> searchGameHistoryPageBefore(filter, timestamp, gameId, limit));
+    }
+
+    public CompletableFuture<List<GameHistory>> searchGameHistoryPageAfterAsync(GameHistoryFilter filter, long timestamp,
+                                                                               long gameId, int limit) {
+        return readAsync(() -> searchGameHistoryPageAfter(filter, timestamp, gameId, limit));
+    }
+
+    public CompletableFuture<Integer> deleteGameHistoryAsync(long gameId) {
+        return writeAsync(() -> deleteGameHistory(gameId));
+    }
+
+    public CompletableFuture<Integer> deleteGamesAsync(long[] gameIds) {
+        return writeAsync(() -> deleteGames(gameIds));
+    }
+
+    public CompletableFuture<Integer> deleteAllGameHistoryAsync() {
+        return writeAsync(this::deleteAllGameHistory);
+    }
+
+    // Observers
+
+    /**
+     * Register an observer for inserted and deleted games, e.g. to update a loaded list in place
+     */
+    public void registerObserver(GameHistoryObserver observer) {
+        observers.add(observer);
+    }
+
+    public void unregisterObserver(GameHistoryObserver observer) {
+        observers.remove(observer);
+    }
+
+    private void notifyGamesInserted(List<GameHistory> games) {
+        if (games.isEmpty()) return;
+        List<GameHistory> inserted = Collections.unmodifiableList(games);
+        projection.addGames(inserted);
+        for (GameHistoryObserver observer : observers) {
+            observer.onGamesInserted(inserted);
+        }
+    }
+
+    private void notifyGamesDeleted(long[] gameIds) {
+        projection.removeGames(gameIds);
+        for (GameHistoryObserver observer : observers) {
+            observer.onGamesDeleted(gameIds);
+        }
+    }
+
+    private void notifyHistoryCleared() {
+        projection.clear();
+        for (GameHistoryObserver observer : observers) {
+            observer.onHistoryCleared();
+        }
+    }
+
+    /**
+     * Return the pages freed by clearing the history to the file system.
+     * Runs on the writer thread in steps of 256 pages, so a game saved meanwhile only waits for one step.
+     */
+    private void reclaimFreePages() {
+        requestIncrementalVacuum();
+        long freePages = dbHelper.getFreePageCount();
+        while (freePages > 0) {
+            dbHelper.incrementalVacuum(RETENTION_VACUUM_PAGES);
+            long remaining = dbHelper.getFreePageCount();
+            // Nothing was returned, auto-vacuum is not enabled until the conversion job ran
+            if (remaining >= freePages) break;
+            freePages = remaining;
+        }
+    }
+
+    // Retention methods
+
+    /**
+     * Set how long the letter tries of a game are kept, by default {@link RetentionPolicy#DEFAULT}
+     * @param policy The policy, null to keep all letter tries
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        this.retentionPolicy = policy;
+    }
+
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Prune the letter tries of all games outside the retention policy.
+     * Each batch of games is first rolled up into the archived letter statistics and then pruned in one
+     * short transaction, followed by an incremental vacuum step, so saves are never blocked for long.
+     * All other statistics keep counting the games, only their detailed tries are gone afterwards.
+     * Deleting a pruned game later cannot take its letters out of the letter statistics.
+     * Runs on the writer thread every 100 saved games, call it on a background thread otherwise.
+     * @return Number of games whose letter tries were pruned
+     */
+    public int applyRetentionPolicy() {
+        RetentionPolicy policy = retentionPolicy;
+        if (policy == null) return 0;
+        long cutoffTimestamp = policy.getCutoffTimestamp(gameHistoryDao, System.currentTimeMillis());
+        if (cutoffTimestamp == Long.MIN_VALUE) return 0;
+
+        int pruned = 0;
+        int batchSize;
+        do {
+            batchSize = letterTryDao.pruneLetterTriesBefore(cutoffTimestamp, RETENTION_BATCH_SIZE);
+            pruned += batchSize;
+            // Cached games of the batch still hold their tries
+            if (batchSize > 0) gameCache.invalidateAll();
+            // Does nothing until incremental auto-vacuum is enabled below
+            dbHelper.incrementalVacuum(RETENTION_VACUUM_PAGES);
+        } while (batchSize == RETENTION_BATCH_SIZE);
+
+        if (pruned > 0) requestIncrementalVacuum();
+        return pruned;
+    }
+
+    /**
+     * Databases from before version 9 cannot return free pages yet. Converting them needs a full VACUUM,
+     * which is left to an idle-time job instead of blocking the writer thread; the free pages are reused meanwhile.
+     */
+    private void requestIncrementalVacuum() {
+        if (!dbHelper.isIncrementalVacuumEnabled()) VacuumConversionJobService.schedule(context);
+    }
+
+    // Statistics methods
+
+    /**
+     * Get all aggregated statistics with a single primary key read
+     */
+    public GameStatistics getGameStatistics() {
+        return statisticsDao.getStatistics();
+    }
+
+    /**
+     * Recompute the aggregated, per-word, per-letter, daily and breakdown statistics and the streaks from the game history, e.g. to repair them.
+     * The achievements are then seeded again from the rebuilt statistics, unlocked ones stay unlocked.
+     * All tables are rebuilt in one transaction, so a concurrent save sees either the old or the new state of all of them.
+     */
+    public void rebuildStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            statisticsDao.rebuildStatistics();
+            wordStatisticsDao.rebuildWordStatistics();
+            letterStatisticsDao.rebuildLetterStatistics();
+            dailyStatisticsDao.rebuildDailyStatistics();
+            breakdownStatisticsDao.rebuildBreakdownStatistics();
+            streakDao.rebuildStreaks();
+            achievementDao.rebuildAchievements();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Get the statistics of the dashboard: distribution of wrong attempts, win rate by word length,
+     * custom against random words and average attempts, read from the few hundred breakdown rows
+     */
+    public DashboardStatistics getDashboardStatistics() {
+        return breakdownStatisticsDao.getDashboardStatistics();
+    }
+
+    /**
+     * Get the current streak and the longest win and losing streaks without scanning the game history
+     */
+    public StreakStatistics getStreakStatistics() {
+        return streakDao.getStreakStatistics();
+    }
+
+    /**
+     * Get all achievements with their progress from the small achievements table
+     */
+    public List<Achievement> getAchievements() {
+        return achievementDao.getAchievements();
+    }
+
+    // Time series methods
+
+    /**
+     * Get games and win rate over time, rolled up from the daily statistics
+     * @param from First day of the range
+     * @param to Last day of the range (inclusive)
+     * @param granularity Days, weeks or months
+     * @return One entry per period in the range, oldest first, also for periods without games
+     */
+    public List<PeriodStatistics> getStatisticsOverTime(LocalDate from, LocalDate to, PeriodStatistics.Granularity granularity) {
+        return dailyStatisticsDao.getStatistics(from, to, granularity);
+    }
+
+    // Letter statistics methods
+
+    /**
+     * Get hit rate, average try number and first guess results of all 26 letters with one small read
+     */
+    public List<LetterStatistics> getLetterStatistics() {
+        return letterStatisticsDao.getLetterStatistics();
+    }
+
+    /**
+     * Get the first guesses whose games were won most often
+     */
+    public List<LetterStatistics> getBestFirstGuesses(int limit) {
+        return letterStatisticsDao.getBestFirstGuesses(limit);
+    }
+
+    // Word statistics methods
+
+    /**
+     * Get the statistics of a single word
+     * @return The statistics, or null if the word was never played
+     */
+    public WordStatistics getWordStatistics(String word) {
+        return wordStatisticsDao.getWordStatistics(word);
+    }
+
+    /**
+     * Get the words with the most wrong attempts per play, only reads the returned rows
+     */
+    public List<WordStatistics> getHardestWords(int limit) {
+        return wordStatisticsDao.getHardestWords(limit);
+    }
+
+    /**
+     * Get the most played words, only reads the returned rows
+     */
+    public List<WordStatistics> getMostPlayedWords(int limit) {
+        return wordStatisticsDao.getMostPlayedWords(limit);
     }
 
     // Letter Try methods
@@ -150,22 +945,17 @@ public class HangmanRepository {
      * Get win rate as a percentage
      */
     public double getWinRate() {
-        int total = getTotalGamesPlayed();
-        if (total == 0) return 0.0;
-        int wins = getTotalWins();
-        return (wins * 100.0) / total;
+        return statisticsDao.getStatistics().getWinRate();
     }
 
     /**
      * Get statistics as a formatted string
      */
     public String getStatisticsString() {
-        int total = getTotalGamesPlayed();
-        int wins = getTotalWins();
-        int losses = getTotalLosses();
-        double winRate = getWinRate();
-        
+        GameStatistics statistics = statisticsDao.getStatistics();
+
         return String.format("Total Games: %d\nWins: %d\nLosses: %d\nWin Rate: %.1f%%", 
-                            total, wins, losses, winRate);
+                            statistics.getGamesPlayed(), statistics.getWins(),
+                            statistics.getLosses(), statistics.getWinRate());
     }
 }
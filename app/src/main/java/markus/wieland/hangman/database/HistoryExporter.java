@@ -0,0 +1,108 @@
+package markus.wieland.hangman.database;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+import markus.wieland.hangman.database.dao.GameHistoryDao;
+
+/**
+ * Writes the whole game history with its letter tries to a channel, one game per line.
+ * Games are read page by page in game ID order and encoded into one fixed-size buffer that is
+ * written out whenever it is full, so memory use does not grow with the size of the history.
+ */
+public class HistoryExporter {
+
+    /**
+     * Receives the progress of an export
+     */
+    public interface ProgressListener {
+        /**
+         * Called after every page of games
+         * @param gamesExported Number of games written so far
+         */
+        void onProgress(long gamesExported);
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PAGE_SIZE = 1000;
+    private static final String LINE_SEPARATOR = "\n";
+
+    private final GameHistoryDao gameHistoryDao;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    HistoryExporter(GameHistoryDao gameHistoryDao) {
+        this.gameHistoryDao = gameHistoryDao;
+    }
+
+    /**
+     * Export all games. Games saved while the export runs are included if their ID is
+     * larger than the last exported one, the channel is not closed.
+     * @param channel Destination, e.g. a FileChannel or Channels.newChannel(outputStream)
+     * @param format Line format
+     * @param listener Progress listener, may be null
+     * @return Number of exported games
+     */
+    public long export(WritableByteChannel channel, HistoryFormat format, ProgressListener listener) throws IOException {
+        buffer.clear();
+        if (format.getHeader() != null) {
+            writeLine(channel, format.getHeader());
+        }
+
+        long exported = 0;
+        long[] lastGameId = {0};
+        try {
+            int pageSize;
+            do {
+                pageSize = gameHistoryDao.forEachCompleteGameAfter(lastGameId[0], PAGE_SIZE, row -> {
+                    lastGameId[0] = row.getGameId();
+                    try {
+                        writeLine(channel, format.formatGame(row));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                exported += pageSize;
+                if (listener != null) listener.onProgress(exported);
+            } while (pageSize == PAGE_SIZE);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        drain(channel);
+        return exported;
+    }
+
+    private void writeLine(WritableByteChannel channel, String line) throws IOException {
+        encode(channel, CharBuffer.wrap(line));
+        encode(channel, CharBuffer.wrap(LINE_SEPARATOR));
+    }
+
+    private void encode(WritableByteChannel channel, CharBuffer chars) throws IOException {
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain(channel);
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void drain(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,187 @@
+package markus.wieland.hangman.database;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import markus.wieland.hangman.database.dao.GameRow;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Line formats of a game history export, one game per line.
+ * The letter tries of a game are written as one field of letter and result pairs in try order,
+ * e.g. "E+T-A+" for a correct E, a wrong T and a correct A.
+ */
+public enum HistoryFormat {
+
+    /**
+     * Comma separated values with a header line, fields are quoted where needed
+     */
+    CSV("csv"),
+
+    /**
+     * One JSON object per line
+     */
+    JSON_LINES("jsonl");
+
+    private static final String FIELD_GAME_ID = "game_id";
+    private static final String FIELD_WORD = "word";
+    private static final String FIELD_IS_WIN = "is_win";
+    private static final String FIELD_TOTAL_ATTEMPTS = "total_attempts";
+    private static final String FIELD_WRONG_ATTEMPTS = "wrong_attempts";
+    private static final String FIELD_TIMESTAMP = "timestamp";
+    private static final String FIELD_IS_CUSTOM_WORD = "is_custom_word";
+    private static final String FIELD_LETTER_TRIES = "letter_tries";
+
+    private static final String CSV_HEADER = FIELD_GAME_ID + "," + FIELD_WORD + "," + FIELD_IS_WIN + "," +
+            FIELD_TOTAL_ATTEMPTS + "," + FIELD_WRONG_ATTEMPTS + "," + FIELD_TIMESTAMP + "," +
+            FIELD_IS_CUSTOM_WORD + "," + FIELD_LETTER_TRIES;
+    private static final int CSV_FIELDS = 8;
+
+    private static final char CORRECT = '+';
+    private static final char WRONG = '-';
+
+    private final String fileExtension;
+
+    HistoryFormat(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Get the line written before the first game, or null if the format has none
+     */
+    public String getHeader() {
+        return this == CSV ? CSV_HEADER : null;
+    }
+
+    /**
+     * Format the game a streamed row points to as one line without line break
+     */
+    public String formatGame(GameRow row) {
+        String letterTries = formatLetterTries(row.getLetterTries());
+        if (this == CSV) {
+            return row.getGameId() + "," + quoteCsv(row.getWord()) + "," + (row.isWin() ? 1 : 0) + "," +
+                    row.getTotalAttempts() + "," + row.getWrongAttempts() + "," + row.getTimestamp() + "," +
+                    (row.isCustomWord() ? 1 : 0) + "," + letterTries;
+        }
+
+        try {
+            return new JSONObject()
+                    .put(FIELD_GAME_ID, row.getGameId())
+                    .put(FIELD_WORD, row.getWord())
+                    .put(FIELD_IS_WIN, row.isWin())
+                    .put(FIELD_TOTAL_ATTEMPTS, row.getTotalAttempts())
+                    .put(FIELD_WRONG_ATTEMPTS, row.getWrongAttempts())
+                    .put(FIELD_TIMESTAMP, row.getTimestamp())
+                    .put(FIELD_IS_CUSTOM_WORD, row.isCustomWord())
+                    .put(FIELD_LETTER_TRIES, letterTries)
+                    .toString();
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Cannot format game " + row.getGameId(), e);
+        }
+    }
+
+    /**
+     * Parse one line written by {@link #formatGame(GameRow)}.
+     * The game ID of the line is not kept, imported games get new IDs.
+     * @throws IllegalArgumentException if the line is not a game of this format
+     */
+    public GameHistory parseGame(String line) {
+        GameHistory gameHistory = new GameHistory();
+        try {
+            if (this == CSV) {
+                List<String> fields = splitCsv(line);
+                if (fields.size() != CSV_FIELDS) {
+                    throw new IllegalArgumentException("Expected " + CSV_FIELDS + " fields but got " + fields.size());
+                }
+                gameHistory.setWord(fields.get(1));
+                gameHistory.setWin("1".equals(fields.get(2)));
+                gameHistory.setTotalAttempts(Integer.parseInt(fields.get(3)));
+                gameHistory.setWrongAttempts(Integer.parseInt(fields.get(4)));
+                gameHistory.setTimestamp(Long.parseLong(fields.get(5)));
+                gameHistory.setCustomWord("1".equals(fields.get(6)));
+                gameHistory.setLetterTries(parseLetterTries(fields.get(7)));
+            } else {
+                JSONObject json = new JSONObject(line);
+                gameHistory.setWord(json.getString(FIELD_WORD));
+                gameHistory.setWin(json.getBoolean(FIELD_IS_WIN));
+                gameHistory.setTotalAttempts(json.getInt(FIELD_TOTAL_ATTEMPTS));
+                gameHistory.setWrongAttempts(json.getInt(FIELD_WRONG_ATTEMPTS));
+                gameHistory.setTimestamp(json.getLong(FIELD_TIMESTAMP));
+                gameHistory.setCustomWord(json.getBoolean(FIELD_IS_CUSTOM_WORD));
+                gameHistory.setLetterTries(parseLetterTries(json.optString(FIELD_LETTER_TRIES, "")));
+            }
+        } catch (JSONException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed " + name() + " line: " + line, e);
+        }
+        return gameHistory;
+    }
+
+    private static String formatLetterTries(List<LetterTry> letterTries) {
+        StringBuilder builder = new StringBuilder(letterTries.size() * 2);
+        for (LetterTry letterTry : letterTries) {
+            builder.append(letterTry.getLetter()).append(letterTry.isCorrect() ? CORRECT : WRONG);
+        }
+        return builder.toString();
+    }
+
+    private static List<LetterTry> parseLetterTries(String text) {
+        if (text.length() % 2 != 0) {
+            throw new IllegalArgumentException("Malformed letter tries: " + text);
+        }
+        List<LetterTry> letterTries = new ArrayList<>(text.length() / 2);
+        for (int i = 0; i < text.length(); i += 2) {
+            char letter = text.charAt(i);
+            char result = text.charAt(i + 1);
+            // Checked here, so a bad line fails while parsing and not while packing the tries in the import transaction
+            if (letter < 'A' || letter > 'Z' || (result != CORRECT && result != WRONG)) {
+                throw new IllegalArgumentException("Malformed letter tries: " + text);
+            }
+            // Try order is 0-based like in the packed sequence, 0 marks the first guess
+            letterTries.add(new LetterTry(0, letter, result == CORRECT, i / 2));
+        }
+        return letterTries;
+    }
+
+    private static String quoteCsv(String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(CSV_FIELDS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,144 @@
+package markus.wieland.hangman.database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import markus.wieland.hangman.database.models.GameHistory;
+
+/**
+ * Reads games written by {@link HistoryExporter} from a channel and imports them in batched transactions.
+ * The channel is read through one fixed-size buffer and only the current batch of games is held in memory.
+ * After every committed batch the listener receives the byte offset of the next unread line, passing it
+ * back as start offset resumes an interrupted import without importing a game twice.
+ */
+public class HistoryImporter {
+
+    /**
+     * Receives the progress of an import
+     */
+    public interface ProgressListener {
+        /**
+         * Called after every committed batch
+         * @param gamesImported Number of games imported so far by this call
+         * @param checkpointOffset Byte offset to resume from if the import is interrupted after this batch
+         */
+        void onBatchCommitted(long gamesImported, long checkpointOffset);
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_LINE_SIZE = 256;
+
+    private final HangmanRepository repository;
+    private final int batchSize;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] line = new byte[INITIAL_LINE_SIZE];
+    private int lineLength;
+
+    HistoryImporter(HangmanRepository repository, int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Import all games from the channel, the channel is not closed.
+     * @param channel Source, e.g. a FileChannel or Channels.newChannel(inputStream)
+     * @param format Line format the games were exported with
+     * @param startOffset 0 for a new import, or the last checkpoint offset of an interrupted one
+     * @param listener Progress listener, may be null
+     * @return Number of imported games
+     * @throws IOException if reading fails or a line cannot be parsed, the batches committed before stay imported
+     */
+    public long importHistory(ReadableByteChannel channel, HistoryFormat format, long startOffset,
+                              ProgressListener listener) throws IOException {
+        skipTo(channel, startOffset);
+
+        List<GameHistory> batch = new ArrayList<>(batchSize);
+        long offset = startOffset;
+        long imported = 0;
+        lineLength = 0;
+        buffer.clear();
+
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            byte[] bytes = buffer.array();
+            int end = buffer.limit();
+            for (int i = buffer.position(); i < end; i++) {
+                offset++;
+                // 0x0A never occurs inside a multi-byte UTF-8 sequence, so lines can be split on bytes
+                if (bytes[i] != '\n') {
+                    appendToLine(bytes[i]);
+                    continue;
+                }
+                addLine(format, offset, batch);
+                if (batch.size() == batchSize) {
+                    imported += commit(batch, offset, imported, listener);
+                }
+            }
+            buffer.clear();
+        }
+
+        // Last line without line break
+        addLine(format, offset, batch);
+        imported += commit(batch, offset, imported, listener);
+
+        // A large import grows the write-ahead log, fold it back while nobody is waiting
+        repository.checkpointDatabase();
+        return imported;
+    }
+
+    private void skipTo(ReadableByteChannel channel, long startOffset) throws IOException {
+        if (startOffset == 0) return;
+        if (channel instanceof SeekableByteChannel) {
+            ((SeekableByteChannel) channel).position(startOffset);
+            return;
+        }
+
+        long skipped = 0;
+        while (skipped < startOffset) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), startOffset - skipped));
+            int read = channel.read(buffer);
+            if (read == -1) throw new IOException("Checkpoint offset " + startOffset + " is beyond the end of the input");
+            skipped += read;
+        }
+    }
+
+    private void appendToLine(byte b) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[lineLength++] = b;
+    }
+
+    /**
+     * Parses the collected line into the batch, skipping empty lines and the header
+     */
+    private void addLine(HistoryFormat format, long offset, List<GameHistory> batch) throws IOException {
+        int length = lineLength;
+        lineLength = 0;
+        if (length > 0 && line[length - 1] == '\r') length--;
+        if (length == 0) return;
+
+        String text = new String(line, 0, length, StandardCharsets.UTF_8);
+        if (text.equals(format.getHeader())) return;
+        try {
+            batch.add(format.parseGame(text));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot import the line ending at offset " + offset, e);
+        }
+    }
+
+    private int commit(List<GameHistory> batch, long offset, long imported, ProgressListener listener) {
+        if (batch.isEmpty()) return 0;
+        int committed = repository.importBatch(batch.iterator(), batch.size());
+        batch.clear();
+        if (listener != null) listener.onBatchCommitted(imported + committed, offset);
+        return committed;
+    }
+}
@@ -0,0 +1,107 @@
+package markus.wieland.hangman.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Fixed-size latency histogram of one query.
+ * Bucket i counts executions that took [2^i, 2^(i+1)) microseconds, bucket 0 also holds everything
+ * below one microsecond and the last bucket everything above. Memory use does not grow with the number
+ * of recorded executions, percentiles are accurate to a factor of two.
+ */
+public class LatencyHistogram {
+
+    static final int BUCKETS = 32;
+
+    private final String name;
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long totalRows;
+    private long mainThreadCount;
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long durationNanos, int rows, boolean isMainThread) {
+        long micros = durationNanos / 1000;
+        int bucket = micros <= 1 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket]++;
+        count++;
+        totalNanos += durationNanos;
+        maxNanos = Math.max(maxNanos, durationNanos);
+        totalRows += rows;
+        if (isMainThread) mainThreadCount++;
+    }
+
+    synchronized void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        totalRows = 0;
+        mainThreadCount = 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getAverageMillis() {
+        return count == 0 ? 0.0 : totalNanos / 1_000_000.0 / count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+
+    /**
+     * Get the average number of rows returned or changed per execution
+     */
+    public synchronized double getAverageRows() {
+        return count == 0 ? 0.0 : (double) totalRows / count;
+    }
+
+    /**
+     * Get the number of executions on the main thread
+     */
+    public synchronized long getMainThreadCount() {
+        return mainThreadCount;
+    }
+
+    /**
+     * Get the upper bound of the bucket that holds the given percentile
+     * @param percentile Between 0 and 100
+     * @return The latency in milliseconds, 0 if nothing was recorded
+     */
+    public synchronized double getPercentileMillis(double percentile) {
+        if (count == 0) return 0.0;
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= Math.max(rank, 1)) {
+                // The last bucket has no upper bound
+                if (bucket == BUCKETS - 1) return getMaxMillis();
+                return Math.min((1L << (bucket + 1)) / 1000.0, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "%s: %d calls (%d on main), avg %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms, %.1f rows",
+                name, count, mainThreadCount, getAverageMillis(), getPercentileMillis(50), getPercentileMillis(95),
+                getPercentileMillis(99), getMaxMillis(), getAverageRows());
+    }
+}
@@ -0,0 +1,82 @@
+package markus.wieland.hangman.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.List;
+
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Collects the changes of the per-letter statistics caused by one or more games,
+ * so they are written with at most one update per letter.
+ */
+public class LetterStatisticsDelta {
+
+    private static final int LETTERS = 26;
+
+    private final long[] guesses = new long[LETTERS];
+    private final long[] hits = new long[LETTERS];
+    private final long[] positionSum = new long[LETTERS];
+    private final long[] firstGuesses = new long[LETTERS];
+    private final long[] firstGuessWins = new long[LETTERS];
+
+    /**
+     * Add the letter tries of a saved game
+     */
+    public void addGame(boolean isWin, List<LetterTry> letterTries) {
+        apply(isWin, letterTries, 1);
+    }
+
+    /**
+     * Subtract the letter tries of a deleted game
+     */
+    public void removeGame(boolean isWin, List<LetterTry> letterTries) {
+        apply(isWin, letterTries, -1);
+    }
+
+    /**
+     * Add the collected changes to the letter_stats table.
+     * Letters without changes are not touched.
+     */
+    public void applyTo(SQLiteDatabase db) {
+        applyTo(db, HangmanDatabaseHelper.UPDATE_LETTER_STATISTICS);
+    }
+
+    /**
+     * Add the collected changes to the letter_stats_archive table,
+     * used for games whose letter tries are pruned by the retention policy
+     */
+    public void applyToArchive(SQLiteDatabase db) {
+        applyTo(db, HangmanDatabaseHelper.UPDATE_LETTER_STATISTICS_ARCHIVE);
+    }
+
+    private void applyTo(SQLiteDatabase db, String updateSql) {
+        for (int letter = 0; letter < LETTERS; letter++) {
+            if (guesses[letter] == 0 && firstGuesses[letter] == 0) continue;
+            db.execSQL(updateSql, new Object[]{
+                guesses[letter],
+                hits[letter],
+                positionSum[letter],
+                firstGuesses[letter],
+                firstGuessWins[letter],
+                String.valueOf((char) ('A' + letter))
+            });
+        }
+    }
+
+    private void apply(boolean isWin, List<LetterTry> letterTries, int sign) {
+        if (letterTries == null) return;
+        for (LetterTry letterTry : letterTries) {
+            int letter = Character.toUpperCase(letterTry.getLetter()) - 'A';
+            if (letter < 0 || letter >= LETTERS) continue;
+
+            guesses[letter] += sign;
+            if (letterTry.isCorrect()) hits[letter] += sign;
+            positionSum[letter] += sign * letterTry.getTryOrder();
+            if (letterTry.getTryOrder() == 0) {
+                firstGuesses[letter] += sign;
+                if (isWin) firstGuessWins[letter] += sign;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package markus.wieland.hangman.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Packs the letter tries of a game into the letter_sequence column of game_history.
+ * Every try takes 6 bits: the upper bit marks a correct guess, the lower 5 bits hold the
+ * letter (A = 0 ... Z = 25). The tries are written back to back, the unused bits of the
+ * last byte are set to 1 so they decode to an end marker. A full game of 26 tries fits
+ * into 20 bytes instead of 26 rows.
+ */
+public final class LetterTryCodec {
+
+    private static final int BITS_PER_TRY = 6;
+    private static final int CORRECT_FLAG = 0x20;
+    private static final int LETTER_MASK = 0x1F;
+    private static final int END_MARKER = 0x3F;
+
+    private LetterTryCodec() {
+    }
+
+    /**
+     * Encode letter tries in the order of the list, which has to be the order they were tried in
+     * @param letterTries The letter tries of a single game
+     * @return The packed sequence
+     * @throws IllegalArgumentException if a letter is not in A-Z
+     */
+    public static byte[] encode(List<LetterTry> letterTries) {
+        int bits = letterTries.size() * BITS_PER_TRY;
+        byte[] sequence = new byte[(bits + 7) / 8];
+        Arrays.fill(sequence, (byte) 0xFF);
+
+        int bitPosition = 0;
+        for (LetterTry letterTry : letterTries) {
+            int letter = Character.toUpperCase(letterTry.getLetter()) - 'A';
+            if (letter < 0 || letter >= 26)
+                throw new IllegalArgumentException("Only letters A-Z can be stored. Was: " + letterTry.getLetter());
+
+            int value = letter | (letterTry.isCorrect() ? CORRECT_FLAG : 0);
+            for (int bit = BITS_PER_TRY - 1; bit >= 0; bit--) {
+                if (((value >> bit) & 1) == 0) {
+                    sequence[bitPosition >> 3] &= ~(0x80 >>> (bitPosition & 7));
+                }
+                bitPosition++;
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Decode a packed sequence into letter tries
+     * @param gameId The game the sequence belongs to
+     * @param sequence The packed sequence, may be null
+     * @return The letter tries in try order, empty if the sequence is null
+     */
+    public static List<LetterTry> decode(long gameId, byte[] sequence) {
+        List<LetterTry> letterTries = new ArrayList<>(countTries(sequence));
+        if (sequence == null) return letterTries;
+
+        int tries = sequence.length * 8 / BITS_PER_TRY;
+        for (int tryOrder = 0; tryOrder < tries; tryOrder++) {
+            int value = readValue(sequence, tryOrder * BITS_PER_TRY);
+            if (value == END_MARKER) break;
+            letterTries.add(new LetterTry(gameId, (char) ('A' + (value & LETTER_MASK)),
+                    (value & CORRECT_FLAG) != 0, tryOrder));
+        }
+        return letterTries;
+    }
+
+    /**
+     * Count the tries of a packed sequence without decoding them
+     */
+    public static int countTries(byte[] sequence) {
+        if (sequence == null || sequence.length == 0) return 0;
+        int tries = sequence.length * 8 / BITS_PER_TRY;
+        // Only the last slot can hold the end marker
+        return readValue(sequence, (tries - 1) * BITS_PER_TRY) == END_MARKER ? tries - 1 : tries;
+    }
+
+    private static int readValue(byte[] sequence, int bitPosition) {
+        int value = 0;
+        for (int bit = 0; bit < BITS_PER_TRY; bit++, bitPosition++) {
+            value = (value << 1) | ((sequence[bitPosition >> 3] >> (7 - (bitPosition & 7))) & 1);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,59 @@
+package markus.wieland.hangman.database;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Drains the write queue after the app went to the background.
+ * The writer thread keeps writing without it, but a cached background process can be killed at any
+ * time; while a job runs the process is kept alive, so games queued right before leaving the app
+ * still reach the disk. The flush waits on a worker thread, never on the main thread.
+ */
+public class PendingWritesJobService extends JobService {
+
+    private static final String TAG = "PendingWritesJob";
+    private static final int JOB_ID = 0x7771;
+    // Far below the execution limit of a job, a queue that takes longer is left to the writer thread
+    private static final long FLUSH_TIMEOUT_MILLIS = 60_000;
+
+    private volatile boolean finished;
+
+    /**
+     * Schedule a drain of the write queue to start right away, does nothing if one is already scheduled
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) return;
+
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, PendingWritesJobService.class))
+                .setOverrideDeadline(0)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        finished = false;
+        Thread worker = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            if (!HangmanRepository.getInstance(getApplicationContext()).flushPendingWrites(FLUSH_TIMEOUT_MILLIS)) {
+                Log.w(TAG, "Write queue not drained within " + FLUSH_TIMEOUT_MILLIS + " ms");
+            }
+            finished = true;
+            jobFinished(params, false);
+        }, "hangman-db-flush");
+        worker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The writer thread keeps going, the job is only retried to keep the process alive until it is done
+        return !finished;
+    }
+}
@@ -0,0 +1,233 @@
+package markus.wieland.hangman.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing of the DAO queries of one database.
+ * Every timed query adds its duration, row count and thread to a {@link LatencyHistogram} of its name.
+ * Executions slower than the threshold are also kept in a ring buffer of the last slow queries together
+ * with their SQL and the output of EXPLAIN QUERY PLAN, so a query that degrades with the size of the
+ * history shows which index it uses. Memory use is fixed: one histogram per query name and a fixed
+ * number of slow queries.
+ */
+public class QueryMetrics {
+
+    private static final String TAG = "QueryMetrics";
+    private static final int SLOW_QUERY_LOG_SIZE = 32;
+    // One frame at 60 fps
+    private static final long DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS = 16;
+
+    /**
+     * One execution that took longer than the threshold
+     */
+    public static class SlowQuery {
+        private final String name;
+        private final String sql;
+        private final String[] args;
+        private final double durationMillis;
+        private final int rows;
+        private final String threadName;
+        private final long timestamp;
+        private final String queryPlan;
+
+        SlowQuery(String name, String sql, String[] args, double durationMillis, int rows,
+                  String threadName, long timestamp, String queryPlan) {
+            this.name = name;
+            this.sql = sql;
+            this.args = args;
+            this.durationMillis = durationMillis;
+            this.rows = rows;
+            this.threadName = threadName;
+            this.timestamp = timestamp;
+            this.queryPlan = queryPlan;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public double getDurationMillis() {
+            return durationMillis;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Get the EXPLAIN QUERY PLAN output, one step per line
+         */
+        public String getQueryPlan() {
+            return queryPlan;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s took %.2f ms for %d rows on %s\n  %s\n  args %s\n%s",
+                    name, durationMillis, rows, threadName, sql != null ? sql : "(several statements)",
+                    Arrays.toString(args), queryPlan);
+        }
+    }
+
+    private final HangmanDatabaseHelper dbHelper;
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final SlowQuery[] slowQueries = new SlowQuery[SLOW_QUERY_LOG_SIZE];
+    // Guarded by slowQueries
+    private int nextSlowQuery;
+    private volatile boolean enabled = true;
+    private volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS);
+
+    QueryMetrics(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Start timing a query
+     * @return The start time to pass to {@link #record}, 0 if timing is disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record a finished query, reading its result included
+     * @param name Name of the DAO method
+     * @param startNanos Value returned by {@link #start()}
+     * @param rows Number of rows returned or changed
+     * @param sql The executed statement, used for the query plan of slow queries,
+     *            null if the call ran several different statements
+     * @param args Its arguments
+     */
+    public void record(String name, long startNanos, int rows, String sql, String[] args) {
+        if (startNanos == 0) return;
+        long duration = System.nanoTime() - startNanos;
+        boolean isMainThread = Looper.myLooper() == Looper.getMainLooper();
+
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, LatencyHistogram::new);
+        }
+        histogram.record(duration, rows, isMainThread);
+
+        if (duration >= slowQueryThresholdNanos) {
+            addSlowQuery(new SlowQuery(name, sql, args, duration / 1_000_000.0, rows,
+                    Thread.currentThread().getName(), System.currentTimeMillis(), explain(sql, args)));
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setSlowQueryThresholdMillis(long thresholdMillis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Get the histograms of all queries, slowest average first
+     */
+    public List<LatencyHistogram> getHistograms() {
+        List<LatencyHistogram> list = new ArrayList<>(histograms.values());
+        Collections.sort(list, (a, b) -> Double.compare(b.getAverageMillis(), a.getAverageMillis()));
+        return list;
+    }
+
+    /**
+     * Get the last slow queries, newest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> list = new ArrayList<>(SLOW_QUERY_LOG_SIZE);
+        synchronized (slowQueries) {
+            for (int i = 1; i <= SLOW_QUERY_LOG_SIZE; i++) {
+                SlowQuery slowQuery = slowQueries[(nextSlowQuery - i + SLOW_QUERY_LOG_SIZE) % SLOW_QUERY_LOG_SIZE];
+                if (slowQuery != null) list.add(slowQuery);
+            }
+        }
+        return list;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        synchronized (slowQueries) {
+            Arrays.fill(slowQueries, null);
+            nextSlowQuery = 0;
+        }
+    }
+
+    /**
+     * Write all histograms and slow queries as text, e.g. to a file or for a debug screen
+     */
+    public void dump(Writer writer) throws IOException {
+        writer.write("Query latencies\n");
+        for (LatencyHistogram histogram : getHistograms()) {
+            writer.write(histogram.toString());
+            writer.write('\n');
+        }
+        writer.write("\nSlow queries (over " + TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos) + " ms)\n");
+        for (SlowQuery slowQuery : getSlowQueries()) {
+            writer.write(slowQuery.toString());
+            writer.write('\n');
+        }
+    }
+
+    private void addSlowQuery(SlowQuery slowQuery) {
+        synchronized (slowQueries) {
+            slowQueries[nextSlowQuery] = slowQuery;
+            nextSlowQuery = (nextSlowQuery + 1) % SLOW_QUERY_LOG_SIZE;
+        }
+    }
+
+    /**
+     * Runs EXPLAIN QUERY PLAN on the same connection type, only planning the statement
+     */
+    private String explain(String sql, String[] args) {
+        if (sql == null) return "";
+        StringBuilder plan = new StringBuilder();
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            try {
+                int detailIndex = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    plan.append("  ").append(cursor.getString(detailIndex)).append('\n');
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot explain " + sql, e);
+            plan.append("  (no query plan: ").append(e.getMessage()).append(")\n");
+        }
+        return plan.toString();
+    }
+}
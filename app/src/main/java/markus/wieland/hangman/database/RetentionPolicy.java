@@ -0,0 +1,63 @@
+package markus.wieland.hangman.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import markus.wieland.hangman.database.dao.GameHistoryDao;
+
+/**
+ * Describes how long the letter tries of a game are kept in detail.
+ * Games outside the policy keep their history row and stay in every statistic,
+ * only their packed letter tries are pruned after being archived (see {@link HangmanRepository#applyRetentionPolicy()}).
+ */
+public final class RetentionPolicy {
+
+    /**
+     * Keeps the tries of the last 10000 games, a few hundred kilobytes of packed tries.
+     * Applied by every repository unless {@link HangmanRepository#setRetentionPolicy(RetentionPolicy)} replaces it.
+     */
+    public static final RetentionPolicy DEFAULT = keepLastGames(10000);
+
+    private final int lastGames;
+    private final int lastDays;
+
+    private RetentionPolicy(int lastGames, int lastDays) {
+        this.lastGames = lastGames;
+        this.lastDays = lastDays;
+    }
+
+    /**
+     * Keep the letter tries of the newest games
+     * @param games Number of games to keep, at least 1
+     */
+    public static RetentionPolicy keepLastGames(int games) {
+        if (games < 1) throw new IllegalArgumentException("games must be at least 1 but was " + games);
+        return new RetentionPolicy(games, 0);
+    }
+
+    /**
+     * Keep the letter tries of the games played in the last days
+     * @param days Number of days to keep, at least 1
+     */
+    public static RetentionPolicy keepLastDays(int days) {
+        if (days < 1) throw new IllegalArgumentException("days must be at least 1 but was " + days);
+        return new RetentionPolicy(0, days);
+    }
+
+    /**
+     * Get the timestamp before which games lose their letter tries
+     * @param now Current time in milliseconds
+     * @return The cutoff, Long.MIN_VALUE if no game is outside the policy
+     */
+    long getCutoffTimestamp(GameHistoryDao gameHistoryDao, long now) {
+        if (lastGames > 0) return gameHistoryDao.getTimestampOfNthNewestGame(lastGames);
+        return now - TimeUnit.DAYS.toMillis(lastDays);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return lastGames > 0 ? "RetentionPolicy{lastGames=" + lastGames + '}' : "RetentionPolicy{lastDays=" + lastDays + '}';
+    }
+}
@@ -0,0 +1,122 @@
+package markus.wieland.hangman.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Recomputes the rows of the streak_runs table for a range of the game history.
+ * Games are ordered by (timestamp, game_id), a run is a maximal sequence of games with the same result.
+ */
+public final class StreakRunBuilder {
+
+    /**
+     * Position of a game in the streak order
+     */
+    public static final class Position {
+        private final long timestamp;
+        private final long gameId;
+
+        public Position(long timestamp, long gameId) {
+            this.timestamp = timestamp;
+            this.gameId = gameId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getGameId() {
+            return gameId;
+        }
+
+        public boolean isAfter(Position other) {
+            return timestamp > other.timestamp || (timestamp == other.timestamp && gameId > other.gameId);
+        }
+    }
+
+    public static final Position START = new Position(Long.MIN_VALUE, Long.MIN_VALUE);
+    public static final Position END = new Position(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    // The timestamp range lets idx_timestamp bound the scan, the game_id checks only matter at the ends
+    private static final String SELECT_GAMES_IN_RANGE =
+        "SELECT " + HangmanDatabaseHelper.COLUMN_GAME_ID + ", " +
+        HangmanDatabaseHelper.COLUMN_IS_WIN + ", " +
+        HangmanDatabaseHelper.COLUMN_TIMESTAMP +
+        " FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_TIMESTAMP + " BETWEEN ? AND ?" +
+        " AND (" + HangmanDatabaseHelper.COLUMN_TIMESTAMP + " > ? OR " + HangmanDatabaseHelper.COLUMN_GAME_ID + " >= ?)" +
+        " AND (" + HangmanDatabaseHelper.COLUMN_TIMESTAMP + " < ? OR " + HangmanDatabaseHelper.COLUMN_GAME_ID + " <= ?)" +
+        " ORDER BY " + HangmanDatabaseHelper.COLUMN_TIMESTAMP + ", " + HangmanDatabaseHelper.COLUMN_GAME_ID;
+
+    public static final String INSERT_STREAK_RUN =
+        "INSERT INTO " + HangmanDatabaseHelper.TABLE_STREAK_RUNS + " (" +
+        HangmanDatabaseHelper.COLUMN_RUN_IS_WIN + ", " +
+        HangmanDatabaseHelper.COLUMN_RUN_LENGTH + ", " +
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + ", " +
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID + ", " +
+        HangmanDatabaseHelper.COLUMN_RUN_LAST_TIMESTAMP + ", " +
+        HangmanDatabaseHelper.COLUMN_RUN_LAST_GAME_ID +
+        ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    private StreakRunBuilder() {
+    }
+
+    /**
+     * Scans the games between from and to (both inclusive) in streak order and inserts their runs.
+     * The caller must have deleted the runs of that range before, and the range must start and end
+     * at run boundaries so the new runs do not have to be merged with the ones outside of it.
+     * @return Number of games scanned
+     */
+    public static int rebuildRuns(SQLiteDatabase db, Position from, Position to) {
+        Cursor cursor = db.rawQuery(SELECT_GAMES_IN_RANGE, new String[]{
+            String.valueOf(from.timestamp), String.valueOf(to.timestamp),
+            String.valueOf(from.timestamp), String.valueOf(from.gameId),
+            String.valueOf(to.timestamp), String.valueOf(to.gameId)
+        });
+        SQLiteStatement insert = db.compileStatement(INSERT_STREAK_RUN);
+        int games = 0;
+        try {
+            boolean isWin = false;
+            int length = 0;
+            long firstTimestamp = 0;
+            long firstGameId = 0;
+            long lastTimestamp = 0;
+            long lastGameId = 0;
+            while (cursor.moveToNext()) {
+                games++;
+                boolean gameIsWin = cursor.getInt(1) == 1;
+                if (length > 0 && gameIsWin != isWin) {
+                    insertRun(insert, isWin, length, firstTimestamp, firstGameId, lastTimestamp, lastGameId);
+                    length = 0;
+                }
+                lastGameId = cursor.getLong(0);
+                lastTimestamp = cursor.getLong(2);
+                if (length == 0) {
+                    isWin = gameIsWin;
+                    firstGameId = lastGameId;
+                    firstTimestamp = lastTimestamp;
+                }
+                length++;
+            }
+            if (length > 0) {
+                insertRun(insert, isWin, length, firstTimestamp, firstGameId, lastTimestamp, lastGameId);
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+        return games;
+    }
+
+    private static void insertRun(SQLiteStatement insert, boolean isWin, int length,
+                                  long firstTimestamp, long firstGameId, long lastTimestamp, long lastGameId) {
+        insert.bindLong(1, isWin ? 1 : 0);
+        insert.bindLong(2, length);
+        insert.bindLong(3, firstTimestamp);
+        insert.bindLong(4, firstGameId);
+        insert.bindLong(5, lastTimestamp);
+        insert.bindLong(6, lastGameId);
+        insert.executeInsert();
+    }
+}
@@ -0,0 +1,60 @@
+package markus.wieland.hangman.database;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Switches a database created before version 9 to incremental auto-vacuum.
+ * That needs one full VACUUM, which rewrites the whole file and blocks every write meanwhile,
+ * so it runs as a job while the device is idle and charging instead of on the writer thread.
+ * Until then pruned and deleted pages stay on the free list and are reused by later saves.
+ */
+public class VacuumConversionJobService extends JobService {
+
+    private static final String TAG = "VacuumConversionJob";
+    private static final int JOB_ID = 0x7661;
+
+    private volatile boolean finished;
+
+    /**
+     * Schedule the conversion of the app database, does nothing if it is already scheduled
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) return;
+
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, VacuumConversionJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        finished = false;
+        Thread worker = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                HangmanDatabaseHelper.getInstance(getApplicationContext()).enableIncrementalVacuum();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Enabling incremental auto-vacuum failed", e);
+            }
+            finished = true;
+            jobFinished(params, false);
+        }, "hangman-db-vacuum");
+        worker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // A running VACUUM cannot be interrupted, it is retried later if it did not finish
+        return !finished;
+    }
+}
@@ -0,0 +1,214 @@
+package markus.wieland.hangman.database.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import markus.wieland.hangman.database.AchievementRule;
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.QueryMetrics;
+import markus.wieland.hangman.database.models.Achievement;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Data Access Object for the achievements.
+ * A saved game advances every rule it contributes to with one compiled UPDATE of the rule's row,
+ * which also sets the unlock time once the new progress reaches the target. The rules only look
+ * at the saved game, so the cost per game is constant however long the history gets.
+ * Unlocked achievements are never taken back. Deleting games does not change the progress,
+ * clearing the history resets it.
+ */
+public class AchievementDao {
+
+    private static final String BY_ACHIEVEMENT_ID =
+        " WHERE " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_ID + " = ?4";
+
+    // SET expressions see the old row, so the new progress is spelled out again for the unlock check.
+    // ?1 is the contribution of the game, ?2 the target, ?3 the timestamp of the game
+    private static final String UPDATE_COUNTER =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_ACHIEVEMENTS + " SET " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " = " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " + ?1, " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT + " = COALESCE(" + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT +
+        ", CASE WHEN " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " + ?1 >= ?2 THEN ?3 END)" +
+        BY_ACHIEVEMENT_ID;
+
+    private static final String UPDATE_RUN =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_ACHIEVEMENTS + " SET " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " = CASE WHEN ?1 THEN " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " + 1 ELSE 0 END, " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT + " = COALESCE(" + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT +
+        ", CASE WHEN ?1 AND " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " + 1 >= ?2 THEN ?3 END)" +
+        BY_ACHIEVEMENT_ID;
+
+    private static final String UPDATE_LETTER_SET =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_ACHIEVEMENTS + " SET " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " = " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " | ?1, " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT + " = COALESCE(" + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT +
+        ", CASE WHEN (" + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " | ?1) & ?2 = ?2 THEN ?3 END)" +
+        BY_ACHIEVEMENT_ID;
+
+    private static final String SELECT_ACHIEVEMENTS =
+        "SELECT " + HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_ID + ", " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + ", " +
+        HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_UNLOCKED_AT +
+        " FROM " + HangmanDatabaseHelper.TABLE_ACHIEVEMENTS;
+
+    private final HangmanDatabaseHelper dbHelper;
+    private final QueryMetrics metrics;
+
+    // Compiled once and reused for every saved game, guarded by this
+    private SQLiteStatement counterStatement;
+    private SQLiteStatement runStatement;
+    private SQLiteStatement letterSetStatement;
+
+    public AchievementDao(Context context) {
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public AchievementDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.metrics = dbHelper.getQueryMetrics();
+    }
+
+    /**
+     * Advance the achievements by a saved game, at most one update per rule.
+     * Must run in the same transaction as the insert of the game.
+     * @param gameHistory The saved game
+     * @param letterTries Its letter tries, may be null
+     * @return Number of rules that were updated
+     */
+    public int addGame(GameHistory gameHistory, List<LetterTry> letterTries) {
+        return addGame(gameHistory, letterTries, true);
+    }
+
+    /**
+     * Advance the achievements by an imported game. Imported games can be older than the history,
+     * so runs are skipped and have to be seeded again with {@link #reseedRuns()} after the batch.
+     * Must run in the same transaction as the insert of the game.
+     * @return Number of rules that were updated
+     */
+    public int addImportedGame(GameHistory gameHistory) {
+        return addGame(gameHistory, gameHistory.getLetterTries(), false);
+    }
+
+    private int addGame(GameHistory gameHistory, List<LetterTry> letterTries, boolean includeRuns) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int updated = 0;
+
+        synchronized (this) {
+            if (counterStatement == null) {
+                counterStatement = db.compileStatement(UPDATE_COUNTER);
+                runStatement = db.compileStatement(UPDATE_RUN);
+                letterSetStatement = db.compileStatement(UPDATE_LETTER_SET);
+            }
+
+            for (AchievementRule rule : AchievementRule.values()) {
+                if (!includeRuns && rule.getKind() == AchievementRule.Kind.RUN) continue;
+                long contribution = rule.getContribution(gameHistory, letterTries);
+                SQLiteStatement statement;
+                switch (rule.getKind()) {
+                    case RUN:
+                        // A game that does not continue the run resets it, so it is always written
+                        statement = runStatement;
+                        contribution = contribution != 0 ? 1 : 0;
+                        break;
+                    case LETTER_SET:
+                        statement = letterSetStatement;
+                        break;
+                    default:
+                        statement = counterStatement;
+                        break;
+                }
+                if (contribution == 0 && rule.getKind() != AchievementRule.Kind.RUN) continue;
+
+                statement.bindLong(1, contribution);
+                statement.bindLong(2, rule.getTarget());
+                statement.bindLong(3, gameHistory.getTimestamp());
+                statement.bindString(4, rule.getId());
+                statement.executeUpdateDelete();
+                updated++;
+            }
+        }
+
+        // Several different statements ran, so there is no single query plan to log
+        metrics.record("addGameToAchievements", start, updated, null, null);
+        return updated;
+    }
+
+    /**
+     * Seed the runs again from the streak runs, which order the games by time also after an import.
+     * Must run in the import transaction after the streak runs were updated.
+     */
+    public void reseedRuns() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        for (AchievementRule rule : AchievementRule.values()) {
+            if (rule.getKind() == AchievementRule.Kind.RUN) rule.seedProgress(db, now);
+        }
+    }
+
+    /**
+     * Start the progress of all achievements over after the history was cleared, unlocked ones stay unlocked.
+     * Must run in the same transaction as the delete of the history.
+     */
+    public void resetProgress() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL("UPDATE " + HangmanDatabaseHelper.TABLE_ACHIEVEMENTS + " SET " +
+            HangmanDatabaseHelper.COLUMN_ACHIEVEMENT_PROGRESS + " = 0");
+    }
+
+    /**
+     * Get all achievements in the order of their rules with one read of the small achievements table.
+     * Letter sets report their progress as the number of letters.
+     */
+    public List<Achievement> getAchievements() {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Map<String, long[]> rows = new HashMap<>();
+        Cursor cursor = db.rawQuery(SELECT_ACHIEVEMENTS, null);
+        try {
+            while (cursor.moveToNext()) {
+                rows.put(cursor.getString(0), new long[]{cursor.getLong(1), cursor.isNull(2) ? 0 : cursor.getLong(2)});
+            }
+        } finally {
+            cursor.close();
+        }
+        metrics.record("getAchievements", start, rows.size(), SELECT_ACHIEVEMENTS, null);
+
+        List<Achievement> achievements = new ArrayList<>(AchievementRule.values().length);
+        for (AchievementRule rule : AchievementRule.values()) {
+            long[] row = rows.get(rule.getId());
+            long progress = row != null ? row[0] : 0;
+            long target = rule.getTarget();
+            if (rule.getKind() == AchievementRule.Kind.LETTER_SET) {
+                progress = Long.bitCount(progress & target);
+                target = Long.bitCount(target);
+            }
+            achievements.add(new Achievement(rule.getId(), rule.getTitle(), rule.getDescription(),
+                    progress, target, row != null ? row[1] : 0));
+        }
+        return achievements;
+    }
+
+    /**
+     * Recompute the progress of all achievements from the maintained statistics.
+     * Only needed to repair them, unlocked achievements keep their unlock time.
+     */
+    public void rebuildAchievements() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            AchievementRule.seed(db, System.currentTimeMillis());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package markus.wieland.hangman.database.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.models.DashboardStatistics;
+import markus.wieland.hangman.database.models.GameHistory;
+
+/**
+ * Data Access Object for the breakdown statistics behind the statistics dashboard.
+ * Every combination of word length, word type and number of wrong attempts that was played has
+ * one row that is updated together with every insert or delete of a game. The dashboard folds
+ * all its breakdowns from one read of these few hundred rows instead of scanning the history.
+ */
+public class BreakdownStatisticsDao {
+
+    private static final String KEY_SELECTION =
+        HangmanDatabaseHelper.COLUMN_WORD_LENGTH + " = ? AND " +
+        HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD + " = ? AND " +
+        HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS + " = ?";
+
+    private static final String UPDATE_BREAKDOWN_STATISTICS =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_BREAKDOWN_STATISTICS + " SET " +
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_GAMES + " = " + HangmanDatabaseHelper.COLUMN_BREAKDOWN_GAMES + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_WINS + " = " + HangmanDatabaseHelper.COLUMN_BREAKDOWN_WINS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_ATTEMPTS_SUM + " = " + HangmanDatabaseHelper.COLUMN_BREAKDOWN_ATTEMPTS_SUM + " + ? " +
+        "WHERE " + KEY_SELECTION;
+
+    private static final String INSERT_BREAKDOWN_STATISTICS =
+        "INSERT INTO " + HangmanDatabaseHelper.TABLE_BREAKDOWN_STATISTICS + " (" +
+        HangmanDatabaseHelper.COLUMN_WORD_LENGTH + ", " +
+        HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD + ", " +
+        HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS + ", " +
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_GAMES + ", " +
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_WINS + ", " +
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_ATTEMPTS_SUM +
+        ") VALUES (?, ?, ?, 1, ?, ?)";
+
+    // Read by position in getDashboardStatistics
+    private static final String[] BREAKDOWN_STATISTICS_COLUMNS = {
+        HangmanDatabaseHelper.COLUMN_WORD_LENGTH,
+        HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD,
+        HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS,
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_GAMES,
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_WINS,
+        HangmanDatabaseHelper.COLUMN_BREAKDOWN_ATTEMPTS_SUM
+    };
+
+    private final HangmanDatabaseHelper dbHelper;
+
+    // Compiled once and reused for every saved game, guarded by this
+    private SQLiteStatement updateStatement;
+    private SQLiteStatement insertStatement;
+
+    public BreakdownStatisticsDao(Context context) {
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public BreakdownStatisticsDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Add a saved game to the statistics of its group.
+     * Must run in the same transaction as the insert of the game.
+     */
+    public void addGame(GameHistory gameHistory) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int win = gameHistory.isWin() ? 1 : 0;
+
+        synchronized (this) {
+            if (updateStatement == null) {
+                updateStatement = db.compileStatement(UPDATE_BREAKDOWN_STATISTICS);
+                insertStatement = db.compileStatement(INSERT_BREAKDOWN_STATISTICS);
+            }
+
+            updateStatement.bindLong(1, 1);
+            updateStatement.bindLong(2, win);
+            updateStatement.bindLong(3, gameHistory.getTotalAttempts());
+            bindKey(updateStatement, 4, gameHistory);
+            if (updateStatement.executeUpdateDelete() > 0) return;
+
+            // First game of this group
+            bindKey(insertStatement, 1, gameHistory);
+            insertStatement.bindLong(4, win);
+            insertStatement.bindLong(5, gameHistory.getTotalAttempts());
+            insertStatement.executeInsert();
+        }
+    }
+
+    /**
+     * Remove a deleted game from the statistics of its group.
+     * Must run in the same transaction as the delete of the game.
+     */
+    public void removeGame(GameHistory gameHistory) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String[] key = {
+            String.valueOf(gameHistory.getWord().length()),
+            gameHistory.isCustomWord() ? "1" : "0",
+            String.valueOf(gameHistory.getWrongAttempts())
+        };
+        db.execSQL(UPDATE_BREAKDOWN_STATISTICS, new Object[]{
+            -1,
+            gameHistory.isWin() ? -1 : 0,
+            -gameHistory.getTotalAttempts(),
+            key[0],
+            key[1],
+            key[2]
+        });
+        db.delete(
+            HangmanDatabaseHelper.TABLE_BREAKDOWN_STATISTICS,
+            KEY_SELECTION + " AND " + HangmanDatabaseHelper.COLUMN_BREAKDOWN_GAMES + " <= 0",
+            key
+        );
+    }
+
+    /**
+     * Get the statistics of the dashboard: the distribution of wrong attempts, the win rate by word
+     * length, custom against random words and the average attempts, all from one read of the table
+     * @return The dashboard statistics, empty if no game was played yet
+     */
+    public DashboardStatistics getDashboardStatistics() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.query(
+            HangmanDatabaseHelper.TABLE_BREAKDOWN_STATISTICS,
+            BREAKDOWN_STATISTICS_COLUMNS,
+            null,
+            null,
+            null,
+            null,
+            null
+        );
+
+        DashboardStatistics statistics = new DashboardStatistics();
+        CursorReader.forEach(cursor, row -> row, row ->
+            statistics.addGames(row.getInt(0), row.getInt(1) == 1, row.getInt(2), row.getInt(3), row.getInt(4), row.getLong(5)));
+        return statistics;
+    }
+
+    /**
+     * Remove the statistics of all groups
+     */
+    public void resetBreakdownStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete(HangmanDatabaseHelper.TABLE_BREAKDOWN_STATISTICS, null, null);
+    }
+
+    /**
+     * Recompute the breakdown statistics from the game history.
+     * Only needed to repair them, it scans the whole history once.
+     */
+    public void rebuildBreakdownStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            resetBreakdownStatistics();
+            db.execSQL(HangmanDatabaseHelper.REBUILD_BREAKDOWN_STATISTICS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Bind word length, word type and wrong attempts of a game from the given index on.
+     * The word length matches LENGTH() of the rebuild because words only hold letters.
+     */
+    private static void bindKey(SQLiteStatement statement, int index, GameHistory gameHistory) {
+        statement.bindLong(index, gameHistory.getWord().length());
+        statement.bindLong(index + 1, gameHistory.isCustomWord() ? 1 : 0);
+        statement.bindLong(index + 2, gameHistory.getWrongAttempts());
+    }
+}
@@ -0,0 +1,91 @@
+package markus.wieland.hangman.database.dao;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Shared cursor loops for the DAOs.
+ * Every method closes the cursor, also when it is empty or mapping a row throws,
+ * and creates the row mapper only once per cursor.
+ */
+public final class CursorReader {
+
+    private CursorReader() {
+    }
+
+    /**
+     * Map all rows of the cursor
+     * @param cursor The cursor to read, may be null
+     * @param mapperFactory Creates the mapper for the cursor
+     * @return The mapped rows in cursor order, empty if the cursor is null or empty
+     */
+    public static <T> List<T> readList(Cursor cursor, Function<Cursor, ? extends RowMapper<T>> mapperFactory) {
+        if (cursor == null) return new ArrayList<>();
+        try {
+            List<T> rows = new ArrayList<>(cursor.getCount());
+            if (cursor.moveToFirst()) {
+                RowMapper<T> mapper = mapperFactory.apply(cursor);
+                do {
+                    rows.add(mapper.mapRow());
+                } while (cursor.moveToNext());
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Map the first row of the cursor
+     * @return The mapped row, or null if the cursor is null or empty
+     */
+    public static <T> T readFirst(Cursor cursor, Function<Cursor, ? extends RowMapper<T>> mapperFactory) {
+        if (cursor == null) return null;
+        try {
+            return cursor.moveToFirst() ? mapperFactory.apply(cursor).mapRow() : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the first column of the first row as a long, e.g. for COUNT queries
+     * @return The value, or defaultValue if the cursor is null, empty or the value is NULL
+     */
+    public static long readLong(Cursor cursor, long defaultValue) {
+        if (cursor == null) return defaultValue;
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : defaultValue;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stream the rows of the cursor through a single reader without collecting them
+     * @param cursor The cursor to read, may be null
+     * @param readerFactory Creates the reader for the cursor, it is passed to the callback for every row
+     * @param callback Called once per row while the cursor points to it
+     * @return Number of rows read
+     */
+    public static <R> int forEach(Cursor cursor, Function<Cursor, R> readerFactory, Consumer<? super R> callback) {
+        if (cursor == null) return 0;
+        try {
+            int rows = 0;
+            if (cursor.moveToFirst()) {
+                R reader = readerFactory.apply(cursor);
+                do {
+                    callback.accept(reader);
+                    rows++;
+                } while (cursor.moveToNext());
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package markus.wieland.hangman.database.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.PeriodStatistics;
+
+/**
+ * Data Access Object for the daily statistics.
+ * Every local day with at least one game has one row that is updated together with every insert
+ * or delete of a game. Weeks and months are rolled up from the days on read, so a time series
+ * reads at most one row per day of the requested range, no matter how long the history is.
+ */
+public class DailyStatisticsDao {
+
+    private static final String UPDATE_DAILY_STATISTICS =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_DAILY_STATISTICS + " SET " +
+        HangmanDatabaseHelper.COLUMN_DAY_GAMES + " = " + HangmanDatabaseHelper.COLUMN_DAY_GAMES + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_DAY_WINS + " = " + HangmanDatabaseHelper.COLUMN_DAY_WINS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_DAY_ATTEMPTS_SUM + " = " + HangmanDatabaseHelper.COLUMN_DAY_ATTEMPTS_SUM + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_DAY_WRONG_ATTEMPTS_SUM + " = " + HangmanDatabaseHelper.COLUMN_DAY_WRONG_ATTEMPTS_SUM + " + ? " +
+        "WHERE " + HangmanDatabaseHelper.COLUMN_DAY + " = ?";
+
+    private static final String INSERT_DAILY_STATISTICS =
+        "INSERT INTO " + HangmanDatabaseHelper.TABLE_DAILY_STATISTICS + " (" +
+        HangmanDatabaseHelper.COLUMN_DAY + ", " +
+        HangmanDatabaseHelper.COLUMN_DAY_GAMES + ", " +
+        HangmanDatabaseHelper.COLUMN_DAY_WINS + ", " +
+        HangmanDatabaseHelper.COLUMN_DAY_ATTEMPTS_SUM + ", " +
+        HangmanDatabaseHelper.COLUMN_DAY_WRONG_ATTEMPTS_SUM +
+        ") VALUES (?, 1, ?, ?, ?)";
+
+    // Read by position in getStatistics
+    private static final String[] DAILY_STATISTICS_COLUMNS = {
+        HangmanDatabaseHelper.COLUMN_DAY,
+        HangmanDatabaseHelper.COLUMN_DAY_GAMES,
+        HangmanDatabaseHelper.COLUMN_DAY_WINS,
+        HangmanDatabaseHelper.COLUMN_DAY_ATTEMPTS_SUM,
+        HangmanDatabaseHelper.COLUMN_DAY_WRONG_ATTEMPTS_SUM
+    };
+
+    private final HangmanDatabaseHelper dbHelper;
+
+    // Compiled once and reused for every saved game, guarded by this
+    private SQLiteStatement updateStatement;
+    private SQLiteStatement insertStatement;
+
+    public DailyStatisticsDao(Context context) {
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public DailyStatisticsDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Get the local day a timestamp falls on as epoch day
+     */
+    public static long toEpochDay(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Add a saved game to the statistics of its day.
+     * Must run in the same transaction as the insert of the game.
+     */
+    public void addGame(GameHistory gameHistory) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long day = toEpochDay(gameHistory.getTimestamp());
+        int win = gameHistory.isWin() ? 1 : 0;
+
+        synchronized (this) {
+            if (updateStatement == null) {
+                updateStatement = db.compileStatement(UPDATE_DAILY_STATISTICS);
+                insertStatement = db.compileStatement(INSERT_DAILY_STATISTICS);
+            }
+
+            updateStatement.bindLong(1, 1);
+            updateStatement.bindLong(2, win);
+            updateStatement.bindLong(3, gameHistory.getTotalAttempts());
+            updateStatement.bindLong(4, gameHistory.getWrongAttempts());
+            updateStatement.bindLong(5, day);
+            if (updateStatement.executeUpdateDelete() > 0) return;
+
+            // First game of this day
+            insertStatement.bindLong(1, day);
+            insertStatement.bindLong(2, win);
+            insertStatement.bindLong(3, gameHistory.getTotalAttempts());
+            insertStatement.bindLong(4, gameHistory.getWrongAttempts());
+            insertStatement.executeInsert();
+        }
+    }
+
+    /**
+     * Remove a deleted game from the statistics of its day.
+     * Must run in the same transaction as the delete of the game.
+     */
+    public void removeGame(GameHistory gameHistory) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long day = toEpochDay(gameHistory.getTimestamp());
+        db.execSQL(UPDATE_DAILY_STATISTICS, new Object[]{
+            -1,
+            gameHistory.isWin() ? -1 : 0,
+            -gameHistory.getTotalAttempts(),
+            -gameHistory.getWrongAttempts(),
+            day
+        });
+        db.delete(
+            HangmanDatabaseHelper.TABLE_DAILY_STATISTICS,
+            HangmanDatabaseHelper.COLUMN_DAY + " = ? AND " + HangmanDatabaseHelper.COLUMN_DAY_GAMES + " <= 0",
+            new String[]{String.valueOf(day)}
+        );
+    }
+
+    /**
+     * Get a time series over the given range with one entry per period, including periods without games.
+     * Reads one primary key range of at most one row per day of the periods.
+     * @param from First day of the range
+     * @param to Last day of the range (inclusive)
+     * @param granularity Length of the periods
+     * @return The periods from the one containing from to the one containing to, oldest first,
+     *         each with all of its days even if the range starts or ends inside it
+     */
+    public List<PeriodStatistics> getStatistics(LocalDate from, LocalDate to, PeriodStatistics.Granularity granularity) {
+        List<PeriodStatistics> periods = new ArrayList<>();
+        LocalDate first = granularity.getPeriodStart(from);
+        LocalDate last = granularity.getPeriodStart(to);
+        for (LocalDate start = first; !start.isAfter(last); start = granularity.getNextPeriodStart(start)) {
+            periods.add(new PeriodStatistics(start, granularity));
+        }
+        if (periods.isEmpty()) return periods;
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.query(
+            HangmanDatabaseHelper.TABLE_DAILY_STATISTICS,
+            DAILY_STATISTICS_COLUMNS,
+            HangmanDatabaseHelper.COLUMN_DAY + " BETWEEN ? AND ?",
+            new String[]{String.valueOf(first.toEpochDay()), String.valueOf(granularity.getNextPeriodStart(last).toEpochDay() - 1)},
+            null,
+            null,
+            HangmanDatabaseHelper.COLUMN_DAY + " ASC"
+        );
+
+        // The days arrive in order, so the matching period only ever moves forward
+        int[] periodIndex = {0};
+        CursorReader.forEach(cursor, row -> row, row -> {
+            LocalDate periodStart = granularity.getPeriodStart(LocalDate.ofEpochDay(row.getLong(0)));
+            while (periods.get(periodIndex[0]).getPeriodStart().isBefore(periodStart)) {
+                periodIndex[0]++;
+            }
+            periods.get(periodIndex[0]).add(row.getInt(1), row.getInt(2), row.getLong(3), row.getLong(4));
+        });
+        return periods;
+    }
+
+    /**
+     * Remove the statistics of all days
+     */
+    public void resetDailyStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete(HangmanDatabaseHelper.TABLE_DAILY_STATISTICS, null, null);
+    }
+
+    /**
+     * Recompute the daily statistics from the game history.
+     * Only needed to repair them, e.g. after a time zone change, it scans the whole history once.
+     */
+    public void rebuildDailyStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            resetDailyStatistics();
+            db.execSQL(HangmanDatabaseHelper.REBUILD_DAILY_STATISTICS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -1,47 +1,178 @@
 package markus.wieland.hangman.database.dao;
 
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import markus.wieland.hangman.database.GameSearchIndex;
 import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.LetterTryCodec;
+import markus.wieland.hangman.database.QueryMetrics;
 import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.GameHistoryFilter;
 import markus.wieland.hangman.database.models.LetterTry;
 
 /**
- * Data Access Object for Game History operations
+ * Data Access Object for Game History operations.
+ * Every method is timed into the {@link QueryMetrics} of the database under its own name,
+ * the statements are kept as constants so a slow one can be explained without rebuilding it.
  */
 public class GameHistoryDao {
 
+    private static final String TAG = "GameHistoryDao";
+
+    private static final String INSERT_GAME_HISTORY =
+        "INSERT INTO " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + " (" +
+        HangmanDatabaseHelper.COLUMN_WORD + ", " +
+        HangmanDatabaseHelper.COLUMN_IS_WIN + ", " +
+        HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS + ", " +
+        HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS + ", " +
+        HangmanDatabaseHelper.COLUMN_TIMESTAMP + ", " +
+        HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD + ", " +
+        HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE +
+        ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Columns of a game history list entry, the letter sequence is only selected when needed
+    private static final String[] GAME_HISTORY_COLUMNS = {
+        HangmanDatabaseHelper.COLUMN_GAME_ID,
+        HangmanDatabaseHelper.COLUMN_WORD,
+        HangmanDatabaseHelper.COLUMN_IS_WIN,
+        HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS,
+        HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS,
+        HangmanDatabaseHelper.COLUMN_TIMESTAMP,
+        HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD
+    };
+
+    private static final String[] COMPLETE_GAME_HISTORY_COLUMNS = {
+        HangmanDatabaseHelper.COLUMN_GAME_ID,
+        HangmanDatabaseHelper.COLUMN_WORD,
+        HangmanDatabaseHelper.COLUMN_IS_WIN,
+        HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS,
+        HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS,
+        HangmanDatabaseHelper.COLUMN_TIMESTAMP,
+        HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD,
+        HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE
+    };
+
+    private static final String SELECT_GAME_HISTORY =
+        "SELECT " + String.join(", ", GAME_HISTORY_COLUMNS) + " FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY;
+
+    private static final String SELECT_COMPLETE_GAME_HISTORY =
+        "SELECT " + String.join(", ", COMPLETE_GAME_HISTORY_COLUMNS) + " FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY;
+
+    private static final String BY_GAME_ID = " WHERE " + HangmanDatabaseHelper.COLUMN_GAME_ID + " = ?";
+    private static final String NEWEST_FIRST = " ORDER BY " + HangmanDatabaseHelper.COLUMN_TIMESTAMP + " DESC";
+
+    private static final String QUERY_ALL_GAMES = SELECT_GAME_HISTORY + NEWEST_FIRST;
+    private static final String QUERY_RECENT_GAMES = SELECT_GAME_HISTORY + NEWEST_FIRST + " LIMIT ?";
+    private static final String QUERY_GAME_BY_ID = SELECT_GAME_HISTORY + BY_GAME_ID;
+    private static final String QUERY_COMPLETE_GAME_BY_ID = SELECT_COMPLETE_GAME_HISTORY + BY_GAME_ID;
+    private static final String QUERY_GAMES_BY_WORD =
+        SELECT_GAME_HISTORY + " WHERE " + HangmanDatabaseHelper.COLUMN_WORD + " = ?" + NEWEST_FIRST;
+    private static final String QUERY_GAMES_AFTER =
+        SELECT_GAME_HISTORY + " WHERE " + HangmanDatabaseHelper.COLUMN_GAME_ID + " > ?" +
+        " ORDER BY " + HangmanDatabaseHelper.COLUMN_GAME_ID + " ASC LIMIT ?";
+    private static final String QUERY_COMPLETE_GAMES_AFTER =
+        SELECT_COMPLETE_GAME_HISTORY + " WHERE " + HangmanDatabaseHelper.COLUMN_GAME_ID + " > ?" +
+        " ORDER BY " + HangmanDatabaseHelper.COLUMN_GAME_ID + " ASC LIMIT ?";
+    private static final String QUERY_GAME_COUNT = "SELECT COUNT(*) FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY;
+    private static final String QUERY_RESULT_COUNT = QUERY_GAME_COUNT + " WHERE " + HangmanDatabaseHelper.COLUMN_IS_WIN + " = ?";
+    private static final String QUERY_NTH_NEWEST_TIMESTAMP =
+        "SELECT " + HangmanDatabaseHelper.COLUMN_TIMESTAMP + " FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY +
+        NEWEST_FIRST + " LIMIT 1 OFFSET ?";
+    private static final String DELETE_GAME = "DELETE FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + BY_GAME_ID;
+
     private final HangmanDatabaseHelper dbHelper;
+    private final QueryMetrics metrics;
+
+    // Compiled once and reused for every insert, guarded by this
+    private SQLiteStatement insertStatement;
+    private SQLiteStatement searchInsertStatement;
 
     public GameHistoryDao(Context context) {
-        this.dbHelper = HangmanDatabaseHelper.getInstance(context);
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public GameHistoryDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.metrics = dbHelper.getQueryMetrics();
     }
 
     /**
-     * Insert a new game history record
+     * Insert a new game history record together with the letter tries it carries
      * @param gameHistory The game history to insert
      * @return The ID of the inserted game, or -1 if failed
      */
     public long insertGameHistory(GameHistory gameHistory) {
+        return insertGameHistory(gameHistory, gameHistory.getLetterTries());
+    }
+
+    /**
+     * Insert a new game history record, the letter tries are packed into the same row
+     * @param gameHistory The game history to insert
+     * @param letterTries The letter tries of the game in try order, may be null
+     * @return The ID of the inserted game, or -1 if failed
+     */
+    public long insertGameHistory(GameHistory gameHistory, List<LetterTry> letterTries) {
+        long start = metrics.start();
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        
-        ContentValues values = new ContentValues();
-        values.put(HangmanDatabaseHelper.COLUMN_WORD, gameHistory.getWord());
-        values.put(HangmanDatabaseHelper.COLUMN_IS_WIN, gameHistory.isWin() ? 1 : 0);
-        values.put(HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS, gameHistory.getTotalAttempts());
-        values.put(HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS, gameHistory.getWrongAttempts());
-        values.put(HangmanDatabaseHelper.COLUMN_TIMESTAMP, gameHistory.getTimestamp());
-        values.put(HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD, gameHistory.isCustomWord() ? 1 : 0);
-
-        long gameId = db.insert(HangmanDatabaseHelper.TABLE_GAME_HISTORY, null, values);
+        long gameId;
+
+        // The connection is taken before the statement lock, so concurrent writers can't deadlock
+        db.beginTransactionNonExclusive();
+        try {
+            synchronized (this) {
+                if (insertStatement == null) {
+                    insertStatement = db.compileStatement(INSERT_GAME_HISTORY);
+                }
+
+                insertStatement.bindString(1, gameHistory.getWord());
+                insertStatement.bindLong(2, gameHistory.isWin() ? 1 : 0);
+                insertStatement.bindLong(3, gameHistory.getTotalAttempts());
+                insertStatement.bindLong(4, gameHistory.getWrongAttempts());
+                insertStatement.bindLong(5, gameHistory.getTimestamp());
+                insertStatement.bindLong(6, gameHistory.isCustomWord() ? 1 : 0);
+                if (letterTries == null || letterTries.isEmpty()) {
+                    insertStatement.bindNull(7);
+                } else {
+                    insertStatement.bindBlob(7, LetterTryCodec.encode(letterTries));
+                }
+
+                try {
+                    gameId = insertStatement.executeInsert();
+                } catch (SQLException e) {
+                    Log.e(TAG, "Failed to insert " + gameHistory, e);
+                    gameId = -1;
+                }
+
+                // Keep the word searchable, in the same transaction as the game
+                if (gameId != -1) {
+                    if (searchInsertStatement == null) {
+                        searchInsertStatement = db.compileStatement(GameSearchIndex.INSERT_GAME_SEARCH);
+                    }
+                    searchInsertStatement.bindLong(1, gameId);
+                    searchInsertStatement.bindString(2, GameSearchIndex.toSuffixes(gameHistory.getWord()));
+                    searchInsertStatement.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         gameHistory.setGameId(gameId);
-        
+        if (gameId != -1 && letterTries != null) {
+            for (LetterTry letterTry : letterTries) {
+                letterTry.setGameId(gameId);
+            }
+        }
+
+        metrics.record("insertGameHistory", start, gameId == -1 ? 0 : 1, INSERT_GAME_HISTORY, null);
         return gameId;
     }
 
@@ -50,38 +181,55 @@ public class GameHistoryDao {
      * @return List of all game history records
      */
     public List<GameHistory> getAllGameHistory() {
-        List<GameHistory> gameHistoryList = new ArrayList<>();
+        return queryList("getAllGameHistory", QUERY_ALL_GAMES, null);
+    }
+
+    /**
+     * Stream all game history records in storage order without collecting them.
+     * Meant for aggregations over the whole history, no GameHistory object is created per row.
+     * @param callback Called once per game
+     * @return Number of games read
+     */
+    public int forEachGame(GameRow.Callback callback) {
+        long start = metrics.start();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
+        int rows = CursorReader.forEach(db.rawQuery(SELECT_GAME_HISTORY, null), GameRowReader::new, callback::onGameRow);
+        metrics.record("forEachGame", start, rows, SELECT_GAME_HISTORY, null);
+        return rows;
+    }
 
-        String[] columns = {
-            HangmanDatabaseHelper.COLUMN_GAME_ID,
-            HangmanDatabaseHelper.COLUMN_WORD,
-            HangmanDatabaseHelper.COLUMN_IS_WIN,
-            HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_TIMESTAMP,
-            HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD
-        };
-
-        Cursor cursor = db.query(
-            HangmanDatabaseHelper.TABLE_GAME_HISTORY,
-            columns,
-            null,
-            null,
-            null,
-            null,
-            HangmanDatabaseHelper.COLUMN_TIMESTAMP + " DESC"
-        );
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                GameHistory gameHistory = cursorToGameHistory(cursor);
-                gameHistoryList.add(gameHistory);
-            } while (cursor.moveToNext());
-            cursor.close();
-        }
+    /**
+     * Stream one page of games without their letter tries in game ID order, see {@link #forEachCompleteGameAfter}
+     * @param afterGameId Only games with a larger ID are read, 0 to start at the beginning
+     * @param limit Maximum number of games in the page
+     * @param callback Called once per game
+     * @return Number of games read, less than limit on the last page
+     */
+    public int forEachGameAfter(long afterGameId, int limit, GameRow.Callback callback) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String[] args = {String.valueOf(afterGameId), String.valueOf(limit)};
+        int rows = CursorReader.forEach(db.rawQuery(QUERY_GAMES_AFTER, args), GameRowReader::new, callback::onGameRow);
+        metrics.record("forEachGameAfter", start, rows, QUERY_GAMES_AFTER, args);
+        return rows;
+    }
 
-        return gameHistoryList;
+    /**
+     * Stream one page of complete games in game ID order, e.g. for an export.
+     * Each page is a primary key range, so walking the history page by page never re-reads
+     * skipped rows and only one page is held in the cursor window at a time.
+     * @param afterGameId Only games with a larger ID are read, 0 to start at the beginning
+     * @param limit Maximum number of games in the page
+     * @param callback Called once per game, its row includes the letter tries
+     * @return Number of games read, less than limit on the last page
+     */
+    public int forEachCompleteGameAfter(long afterGameId, int limit, GameRow.Callback callback) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String[] args = {String.valueOf(afterGameId), String.valueOf(limit)};
+        int rows = CursorReader.forEach(db.rawQuery(QUERY_COMPLETE_GAMES_AFTER, args), GameRowReader::new, callback::onGameRow);
+        metrics.record("forEachCompleteGameAfter", start, rows, QUERY_COMPLETE_GAMES_AFTER, args);
+        return rows;
     }
 
     /**
@@ -90,35 +238,32 @@ public class GameHistoryDao {
      * @return GameHistory object or null if not found
      */
     public GameHistory getGameHistoryById(long gameId) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        return queryGameById("getGameHistoryById", QUERY_GAME_BY_ID, gameId);
+    }
 
-        String[] columns = {
-            HangmanDatabaseHelper.COLUMN_GAME_ID,
-            HangmanDatabaseHelper.COLUMN_WORD,
-            HangmanDatabaseHelper.COLUMN_IS_WIN,
-            HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_TIMESTAMP,
-            HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD
-        };
-
-        Cursor cursor = db.query(
-            HangmanDatabaseHelper.TABLE_GAME_HISTORY,
-            columns,
-            HangmanDatabaseHelper.COLUMN_GAME_ID + " = ?",
-            new String[]{String.valueOf(gameId)},
-            null,
-            null,
-            null
-        );
-
-        GameHistory gameHistory = null;
-        if (cursor != null && cursor.moveToFirst()) {
-            gameHistory = cursorToGameHistory(cursor);
-            cursor.close();
-        }
+    /**
+     * Get game history by ID together with its letter tries, both come from the same row
+     * @param gameId The game ID
+     * @return GameHistory object with letter tries or null if not found
+     */
+    public GameHistory getCompleteGameHistoryById(long gameId) {
+        return queryGameById("getCompleteGameHistoryById", QUERY_COMPLETE_GAME_BY_ID, gameId);
+    }
 
-        return gameHistory;
+    /**
+     * Get several games together with their letter tries in one primary key IN (...) query
+     * @param gameIds The game IDs, at most 999 (the bound parameter limit of SQLite)
+     * @return The games that exist, in no particular order
+     */
+    public List<GameHistory> getCompleteGameHistoryByIds(long[] gameIds) {
+        if (gameIds.length == 0) return new ArrayList<>();
+        String[] args = new String[gameIds.length];
+        for (int i = 0; i < gameIds.length; i++) {
+            args[i] = String.valueOf(gameIds[i]);
+        }
+        String placeholders = String.join(", ", Collections.nCopies(gameIds.length, "?"));
+        String sql = SELECT_COMPLETE_GAME_HISTORY + " WHERE " + HangmanDatabaseHelper.COLUMN_GAME_ID + " IN (" + placeholders + ")";
+        return queryList("getCompleteGameHistoryByIds", sql, args);
     }
 
     /**
@@ -127,38 +272,57 @@ public class GameHistoryDao {
      * @return List of recent game history records
      */
     public List<GameHistory> getRecentGameHistory(int limit) {
-        List<GameHistory> gameHistoryList = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        return queryList("getRecentGameHistory", QUERY_RECENT_GAMES, new String[]{String.valueOf(limit)});
+    }
 
-        String[] columns = {
-            HangmanDatabaseHelper.COLUMN_GAME_ID,
-            HangmanDatabaseHelper.COLUMN_WORD,
-            HangmanDatabaseHelper.COLUMN_IS_WIN,
-            HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_TIMESTAMP,
-            HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD
-        };
-
-        Cursor cursor = db.query(
-            HangmanDatabaseHelper.TABLE_GAME_HISTORY,
-            columns,
-            null,
-            null,
-            null,
-            null,
-            HangmanDatabaseHelper.COLUMN_TIMESTAMP + " DESC",
-            String.valueOf(limit)
-        );
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                GameHistory gameHistory = cursorToGameHistory(cursor);
-                gameHistoryList.add(gameHistory);
-            } while (cursor.moveToNext());
-            cursor.close();
-        }
+    /**
+     * Get the page of game history records that directly follows the given position, newest first.
+     * Pages are keyed on (timestamp, game_id) instead of an OFFSET, so every page is a range scan
+     * on idx_timestamp (which implicitly carries the game_id as rowid) no matter how deep it is.
+     * @param timestamp Timestamp of the oldest record already loaded, or Long.MAX_VALUE for the first page
+     * @param gameId Game ID of the oldest record already loaded, or Long.MAX_VALUE for the first page
+     * @param limit Maximum number of records to return
+     * @return List of game history records older than the given position
+     */
+    public List<GameHistory> getGameHistoryPageBefore(long timestamp, long gameId, int limit) {
+        return searchGameHistoryPageBefore(null, timestamp, gameId, limit);
+    }
+
+    /**
+     * Get the page of game history records that directly precedes the given position.
+     * The records are returned newest first, like every other history list.
+     * @param timestamp Timestamp of the newest record already loaded
+     * @param gameId Game ID of the newest record already loaded
+     * @param limit Maximum number of records to return
+     * @return List of game history records newer than the given position
+     */
+    public List<GameHistory> getGameHistoryPageAfter(long timestamp, long gameId, int limit) {
+        return searchGameHistoryPageAfter(null, timestamp, gameId, limit);
+    }
+
+    /**
+     * Get the page of games matching a filter that directly follows the given position, newest first.
+     * Without search text every filter combination is a range scan of idx_timestamp or one of the
+     * composite result/word type indexes; with search text the matching games come from game_search.
+     * @param filter Games to include, null for all games
+     * @param timestamp Timestamp of the oldest record already loaded, Long.MAX_VALUE for the first page
+     * @param gameId Game ID of the oldest record already loaded, Long.MAX_VALUE for the first page
+     * @param limit Maximum number of records to return
+     */
+    public List<GameHistory> searchGameHistoryPageBefore(GameHistoryFilter filter, long timestamp, long gameId, int limit) {
+        return queryPage(filter, timestamp, gameId, limit, true);
+    }
 
+    /**
+     * Get the page of games matching a filter that directly precedes the given position, newest first
+     * @param filter Games to include, null for all games
+     * @param timestamp Timestamp of the newest record already loaded
+     * @param gameId Game ID of the newest record already loaded
+     * @param limit Maximum number of records to return
+     */
+    public List<GameHistory> searchGameHistoryPageAfter(GameHistoryFilter filter, long timestamp, long gameId, int limit) {
+        List<GameHistory> gameHistoryList = queryPage(filter, timestamp, gameId, limit, false);
+        Collections.reverse(gameHistoryList);
         return gameHistoryList;
     }
 
@@ -166,50 +330,31 @@ public class GameHistoryDao {
      * Get total number of games played
      */
     public int getTotalGamesPlayed() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY, null);
-        int count = 0;
-        if (cursor != null && cursor.moveToFirst()) {
-            count = cursor.getInt(0);
-            cursor.close();
-        }
-        return count;
+        return (int) queryLong("getTotalGamesPlayed", QUERY_GAME_COUNT, null, 0);
     }
 
     /**
      * Get total number of wins
      */
     public int getTotalWins() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery(
-            "SELECT COUNT(*) FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + 
-            " WHERE " + HangmanDatabaseHelper.COLUMN_IS_WIN + " = 1", 
-            null
-        );
-        int count = 0;
-        if (cursor != null && cursor.moveToFirst()) {
-            count = cursor.getInt(0);
-            cursor.close();
-        }
-        return count;
+        return (int) queryLong("getTotalWins", QUERY_RESULT_COUNT, new String[]{"1"}, 0);
     }
 
     /**
      * Get total number of losses
      */
     public int getTotalLosses() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery(
-            "SELECT COUNT(*) FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + 
-            " WHERE " + HangmanDatabaseHelper.COLUMN_IS_WIN + " = 0", 
-            null
-        );
-        int count = 0;
-        if (cursor != null && cursor.moveToFirst()) {
-            count = cursor.getInt(0);
-            cursor.close();
-        }
-        return count;
+        return (int) queryLong("getTotalLosses", QUERY_RESULT_COUNT, new String[]{"0"}, 0);
+    }
+
+    /**
+     * Get the timestamp of the n-th newest game with a descending walk of the timestamp index
+     * @param n 1 for the newest game
+     * @return The timestamp, or Long.MIN_VALUE if there are fewer than n games
+     */
+    public long getTimestampOfNthNewestGame(int n) {
+        return queryLong("getTimestampOfNthNewestGame", QUERY_NTH_NEWEST_TIMESTAMP,
+            new String[]{String.valueOf(n - 1)}, Long.MIN_VALUE);
     }
 
     /**
@@ -218,38 +363,7 @@ public class GameHistoryDao {
      * @return List of game history records with the specified word
      */
     public List<GameHistory> getGamesByWord(String word) {
-        List<GameHistory> gameHistoryList = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        String[] columns = {
-            HangmanDatabaseHelper.COLUMN_GAME_ID,
-            HangmanDatabaseHelper.COLUMN_WORD,
-            HangmanDatabaseHelper.COLUMN_IS_WIN,
-            HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS,
-            HangmanDatabaseHelper.COLUMN_TIMESTAMP,
-            HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD
-        };
-
-        Cursor cursor = db.query(
-            HangmanDatabaseHelper.TABLE_GAME_HISTORY,
-            columns,
-            HangmanDatabaseHelper.COLUMN_WORD + " = ?",
-            new String[]{word},
-            null,
-            null,
-            HangmanDatabaseHelper.COLUMN_TIMESTAMP + " DESC"
-        );
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                GameHistory gameHistory = cursorToGameHistory(cursor);
-                gameHistoryList.add(gameHistory);
-            } while (cursor.moveToNext());
-            cursor.close();
-        }
-
-        return gameHistoryList;
+        return queryList("getGamesByWord", QUERY_GAMES_BY_WORD, new String[]{word});
     }
 
     /**
@@ -258,35 +372,163 @@ public class GameHistoryDao {
      * @return Number of rows deleted
      */
     public int deleteGameHistory(long gameId) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String[] whereArgs = {String.valueOf(gameId)};
+        int deleted;
+        db.beginTransactionNonExclusive();
+        try {
+            db.delete(HangmanDatabaseHelper.TABLE_GAME_SEARCH, "docid = ?", whereArgs);
+            deleted = db.delete(
+                HangmanDatabaseHelper.TABLE_GAME_HISTORY,
+                HangmanDatabaseHelper.COLUMN_GAME_ID + " = ?",
+                whereArgs
+            );
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        metrics.record("deleteGameHistory", start, deleted, DELETE_GAME, whereArgs);
+        return deleted;
+    }
+
+    /**
+     * Delete several game history records with one IN (...) statement per table
+     * @param gameIds The game IDs to delete, at most 999 (the bound parameter limit of SQLite)
+     * @return Number of rows deleted
+     */
+    public int deleteGameHistoryByIds(long[] gameIds) {
+        if (gameIds.length == 0) return 0;
+        long start = metrics.start();
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        return db.delete(
-            HangmanDatabaseHelper.TABLE_GAME_HISTORY,
-            HangmanDatabaseHelper.COLUMN_GAME_ID + " = ?",
-            new String[]{String.valueOf(gameId)}
-        );
+        String[] whereArgs = new String[gameIds.length];
+        for (int i = 0; i < gameIds.length; i++) {
+            whereArgs[i] = String.valueOf(gameIds[i]);
+        }
+        String placeholders = String.join(", ", Collections.nCopies(gameIds.length, "?"));
+        int deleted;
+        db.beginTransactionNonExclusive();
+        try {
+            db.delete(HangmanDatabaseHelper.TABLE_GAME_SEARCH, "docid IN (" + placeholders + ")", whereArgs);
+            deleted = db.delete(
+                HangmanDatabaseHelper.TABLE_GAME_HISTORY,
+                HangmanDatabaseHelper.COLUMN_GAME_ID + " IN (" + placeholders + ")",
+                whereArgs
+            );
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        metrics.record("deleteGameHistoryByIds", start, deleted,
+            "DELETE FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + " WHERE " +
+            HangmanDatabaseHelper.COLUMN_GAME_ID + " IN (" + placeholders + ")", whereArgs);
+        return deleted;
     }
 
     /**
-     * Delete all game history records
+     * Empty the game history by dropping and recreating its tables, see {@link HangmanDatabaseHelper#truncateGameHistory()}
      * @return Number of rows deleted
      */
     public int deleteAllGameHistory() {
+        long start = metrics.start();
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        return db.delete(HangmanDatabaseHelper.TABLE_GAME_HISTORY, null, null);
+        int deleted;
+        db.beginTransactionNonExclusive();
+        try {
+            deleted = (int) CursorReader.readLong(db.rawQuery(QUERY_GAME_COUNT, null), 0);
+            dbHelper.truncateGameHistory();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        metrics.record("deleteAllGameHistory", start, deleted, QUERY_GAME_COUNT, null);
+        return deleted;
     }
 
     /**
-     * Helper method to convert cursor to GameHistory object
+     * Reads one keyset page in the direction away from the position, older pages newest first and newer pages oldest first
      */
-    private GameHistory cursorToGameHistory(Cursor cursor) {
-        GameHistory gameHistory = new GameHistory();
-        gameHistory.setGameId(cursor.getLong(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_GAME_ID)));
-        gameHistory.setWord(cursor.getString(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD)));
-        gameHistory.setWin(cursor.getInt(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_IS_WIN)) == 1);
-        gameHistory.setTotalAttempts(cursor.getInt(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS)));
-        gameHistory.setWrongAttempts(cursor.getInt(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS)));
-        gameHistory.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_TIMESTAMP)));
-        gameHistory.setCustomWord(cursor.getInt(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD)) == 1);
+    private List<GameHistory> queryPage(GameHistoryFilter filter, long timestamp, long gameId, int limit, boolean older) {
+        long start = metrics.start();
+        StringBuilder selection = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>();
+
+        boolean isTextSearch = false;
+        if (filter != null) {
+            String matchQuery = filter.getText() != null
+                    ? GameSearchIndex.toMatchQuery(filter.getText(), filter.isPrefixOnly())
+                    : null;
+            if (matchQuery != null) {
+                isTextSearch = true;
+                selection.append(HangmanDatabaseHelper.COLUMN_GAME_ID).append(" IN (SELECT docid FROM ")
+                        .append(HangmanDatabaseHelper.TABLE_GAME_SEARCH).append(" WHERE ")
+                        .append(HangmanDatabaseHelper.TABLE_GAME_SEARCH).append(" MATCH ?) AND ");
+                selectionArgs.add(matchQuery);
+            }
+            if (filter.getWin() != null) {
+                selection.append(HangmanDatabaseHelper.COLUMN_IS_WIN).append(" = ? AND ");
+                selectionArgs.add(filter.getWin() ? "1" : "0");
+            }
+            if (filter.getCustomWord() != null) {
+                selection.append(HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD).append(" = ? AND ");
+                selectionArgs.add(filter.getCustomWord() ? "1" : "0");
+            }
+            if (filter.getFromTimestamp() != null) {
+                selection.append(HangmanDatabaseHelper.COLUMN_TIMESTAMP).append(" >= ? AND ");
+                selectionArgs.add(String.valueOf(filter.getFromTimestamp()));
+            }
+            if (filter.getToTimestamp() != null) {
+                selection.append(HangmanDatabaseHelper.COLUMN_TIMESTAMP).append(" <= ? AND ");
+                selectionArgs.add(String.valueOf(filter.getToTimestamp()));
+            }
+        }
+
+        // The first timestamp bound makes the position part of the index range, the game ID only breaks ties
+        String position = String.valueOf(timestamp);
+        selection.append(HangmanDatabaseHelper.COLUMN_TIMESTAMP).append(older ? " <= ? AND (" : " >= ? AND (")
+                .append(HangmanDatabaseHelper.COLUMN_TIMESTAMP).append(older ? " < ? OR " : " > ? OR ")
+                .append(HangmanDatabaseHelper.COLUMN_GAME_ID).append(older ? " < ?)" : " > ?)");
+        selectionArgs.add(position);
+        selectionArgs.add(position);
+        selectionArgs.add(String.valueOf(gameId));
+
+        String direction = older ? " DESC" : " ASC";
+        selectionArgs.add(String.valueOf(limit));
+        String sql = SELECT_GAME_HISTORY + " WHERE " + selection +
+            " ORDER BY " + HangmanDatabaseHelper.COLUMN_TIMESTAMP + direction + ", " +
+            HangmanDatabaseHelper.COLUMN_GAME_ID + direction + " LIMIT ?";
+        String[] args = selectionArgs.toArray(new String[0]);
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<GameHistory> page = CursorReader.readList(db.rawQuery(sql, args), GameRowReader::new);
+        // Text searches read game_search first and degrade differently, so they get their own histogram
+        String name = (older ? "searchGameHistoryPageBefore" : "searchGameHistoryPageAfter") + (isTextSearch ? "(text)" : "");
+        metrics.record(name, start, page.size(), sql, args);
+        return page;
+    }
+
+    private GameHistory queryGameById(String name, String sql, long gameId) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String[] args = {String.valueOf(gameId)};
+        GameHistory gameHistory = CursorReader.readFirst(db.rawQuery(sql, args), GameRowReader::new);
+        metrics.record(name, start, gameHistory == null ? 0 : 1, sql, args);
         return gameHistory;
     }
+
+    private List<GameHistory> queryList(String name, String sql, String[] args) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<GameHistory> games = CursorReader.readList(db.rawQuery(sql, args), GameRowReader::new);
+        metrics.record(name, start, games.size(), sql, args);
+        return games;
+    }
+
+    private long queryLong(String name, String sql, String[] args, long defaultValue) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        long value = CursorReader.readLong(db.rawQuery(sql, args), defaultValue);
+        metrics.record(name, start, 1, sql, args);
+        return value;
+    }
 }
@@ -0,0 +1,40 @@
+package markus.wieland.hangman.database.dao;
+
+import java.util.List;
+
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Read-only view of the game history row a cursor currently points to.
+ * The view is reused for every row, so streaming through the history does not allocate a
+ * {@link markus.wieland.hangman.database.models.GameHistory} per row. It is only valid
+ * inside the callback it was passed to.
+ */
+public interface GameRow {
+
+    /**
+     * Receives the rows of a streamed query one by one
+     */
+    interface Callback {
+        void onGameRow(GameRow row);
+    }
+
+    long getGameId();
+
+    String getWord();
+
+    boolean isWin();
+
+    int getTotalAttempts();
+
+    int getWrongAttempts();
+
+    long getTimestamp();
+
+    boolean isCustomWord();
+
+    /**
+     * Decode the letter tries of the row, empty if the query did not select them
+     */
+    List<LetterTry> getLetterTries();
+}
@@ -0,0 +1,97 @@
+package markus.wieland.hangman.database.dao;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.LetterTryCodec;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Reads game history rows from a cursor with column indices resolved once per cursor.
+ * The letter sequence is only decoded if the query selected it.
+ */
+class GameRowReader implements GameRow, RowMapper<GameHistory> {
+
+    private final Cursor cursor;
+    private final int gameIdIndex;
+    private final int wordIndex;
+    private final int isWinIndex;
+    private final int totalAttemptsIndex;
+    private final int wrongAttemptsIndex;
+    private final int timestampIndex;
+    private final int isCustomWordIndex;
+    private final int letterSequenceIndex;
+
+    GameRowReader(Cursor cursor) {
+        this.cursor = cursor;
+        this.gameIdIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_GAME_ID);
+        this.wordIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD);
+        this.isWinIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_IS_WIN);
+        this.totalAttemptsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_TOTAL_ATTEMPTS);
+        this.wrongAttemptsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS);
+        this.timestampIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_TIMESTAMP);
+        this.isCustomWordIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_IS_CUSTOM_WORD);
+        this.letterSequenceIndex = cursor.getColumnIndex(HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE);
+    }
+
+    @Override
+    public GameHistory mapRow() {
+        GameHistory gameHistory = new GameHistory();
+        gameHistory.setGameId(getGameId());
+        gameHistory.setWord(getWord());
+        gameHistory.setWin(isWin());
+        gameHistory.setTotalAttempts(getTotalAttempts());
+        gameHistory.setWrongAttempts(getWrongAttempts());
+        gameHistory.setTimestamp(getTimestamp());
+        gameHistory.setCustomWord(isCustomWord());
+        if (letterSequenceIndex != -1) {
+            gameHistory.setLetterTries(getLetterTries());
+        }
+        return gameHistory;
+    }
+
+    @Override
+    public long getGameId() {
+        return cursor.getLong(gameIdIndex);
+    }
+
+    @Override
+    public String getWord() {
+        return cursor.getString(wordIndex);
+    }
+
+    @Override
+    public boolean isWin() {
+        return cursor.getInt(isWinIndex) == 1;
+    }
+
+    @Override
+    public int getTotalAttempts() {
+        return cursor.getInt(totalAttemptsIndex);
+    }
+
+    @Override
+    public int getWrongAttempts() {
+        return cursor.getInt(wrongAttemptsIndex);
+    }
+
+    @Override
+    public long getTimestamp() {
+        return cursor.getLong(timestampIndex);
+    }
+
+    @Override
+    public boolean isCustomWord() {
+        return cursor.getInt(isCustomWordIndex) == 1;
+    }
+
+    @Override
+    public List<LetterTry> getLetterTries() {
+        if (letterSequenceIndex == -1) return new ArrayList<>();
+        return LetterTryCodec.decode(getGameId(), cursor.getBlob(letterSequenceIndex));
+    }
+}
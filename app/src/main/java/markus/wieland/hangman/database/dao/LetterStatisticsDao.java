@@ -0,0 +1,147 @@
+package markus.wieland.hangman.database.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.List;
+
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.LetterStatisticsDelta;
+import markus.wieland.hangman.database.models.LetterStatistics;
+
+/**
+ * Data Access Object for the per-letter statistics.
+ * The table has one row per letter A-Z that is updated together with every insert or delete
+ * of a game, so reading the statistics of all letters is a read of 26 rows.
+ */
+public class LetterStatisticsDao {
+
+    private static final String[] LETTER_STATISTICS_COLUMNS = {
+        HangmanDatabaseHelper.COLUMN_LETTER,
+        HangmanDatabaseHelper.COLUMN_LETTER_GUESSES,
+        HangmanDatabaseHelper.COLUMN_LETTER_HITS,
+        HangmanDatabaseHelper.COLUMN_LETTER_POSITION_SUM,
+        HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESSES,
+        HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESS_WINS
+    };
+
+    private final HangmanDatabaseHelper dbHelper;
+
+    public LetterStatisticsDao(Context context) {
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public LetterStatisticsDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Write the collected changes of one or more games.
+     * Must run in the same transaction as the inserts or deletes of the games.
+     */
+    public void applyDelta(LetterStatisticsDelta delta) {
+        delta.applyTo(dbHelper.getWritableDatabase());
+    }
+
+    /**
+     * Get the statistics of all 26 letters in alphabetical order
+     */
+    public List<LetterStatistics> getLetterStatistics() {
+        return queryLetterStatistics(null, HangmanDatabaseHelper.COLUMN_LETTER + " ASC", null);
+    }
+
+    /**
+     * Get the first guesses whose games were won most often
+     * @param limit Number of letters to return
+     */
+    public List<LetterStatistics> getBestFirstGuesses(int limit) {
+        return queryLetterStatistics(
+            HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESSES + " > 0",
+            "CAST(" + HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESS_WINS + " AS REAL) / " +
+            HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESSES + " DESC, " +
+            HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESSES + " DESC",
+            String.valueOf(limit));
+    }
+
+    /**
+     * Set all letters back to zero, including the archived contributions of pruned games
+     */
+    public void resetLetterStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        for (String table : new String[]{HangmanDatabaseHelper.TABLE_LETTER_STATISTICS,
+                HangmanDatabaseHelper.TABLE_LETTER_STATISTICS_ARCHIVE}) {
+            db.execSQL(
+                "UPDATE " + table + " SET " +
+                HangmanDatabaseHelper.COLUMN_LETTER_GUESSES + " = 0, " +
+                HangmanDatabaseHelper.COLUMN_LETTER_HITS + " = 0, " +
+                HangmanDatabaseHelper.COLUMN_LETTER_POSITION_SUM + " = 0, " +
+                HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESSES + " = 0, " +
+                HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESS_WINS + " = 0"
+            );
+        }
+    }
+
+    /**
+     * Recompute the letter statistics from the stored letter tries.
+     * Only needed to repair them, it decodes the tries of every game once.
+     */
+    public void rebuildLetterStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            HangmanDatabaseHelper.rebuildLetterStatistics(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private List<LetterStatistics> queryLetterStatistics(String selection, String orderBy, String limit) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.query(
+            HangmanDatabaseHelper.TABLE_LETTER_STATISTICS,
+            LETTER_STATISTICS_COLUMNS,
+            selection,
+            null,
+            null,
+            null,
+            orderBy,
+            limit
+        );
+        return CursorReader.readList(cursor, LetterStatisticsReader::new);
+    }
+
+    private static class LetterStatisticsReader implements RowMapper<LetterStatistics> {
+
+        private final Cursor cursor;
+        private final int letterIndex;
+        private final int guessesIndex;
+        private final int hitsIndex;
+        private final int positionSumIndex;
+        private final int firstGuessesIndex;
+        private final int firstGuessWinsIndex;
+
+        LetterStatisticsReader(Cursor cursor) {
+            this.cursor = cursor;
+            this.letterIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_LETTER);
+            this.guessesIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_LETTER_GUESSES);
+            this.hitsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_LETTER_HITS);
+            this.positionSumIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_LETTER_POSITION_SUM);
+            this.firstGuessesIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESSES);
+            this.firstGuessWinsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_LETTER_FIRST_GUESS_WINS);
+        }
+
+        @Override
+        public LetterStatistics mapRow() {
+            LetterStatistics statistics = new LetterStatistics();
+            statistics.setLetter(cursor.getString(letterIndex).charAt(0));
+            statistics.setGuesses(cursor.getInt(guessesIndex));
+            statistics.setHits(cursor.getInt(hitsIndex));
+            statistics.setPositionSum(cursor.getLong(positionSumIndex));
+            statistics.setFirstGuesses(cursor.getInt(firstGuessesIndex));
+            statistics.setFirstGuessWins(cursor.getInt(firstGuessWinsIndex));
+            return statistics;
+        }
+    }
+}
@@ -4,74 +4,79 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.LetterStatisticsDelta;
+import markus.wieland.hangman.database.LetterTryCodec;
+import markus.wieland.hangman.database.QueryMetrics;
 import markus.wieland.hangman.database.models.LetterTry;
 
 /**
- * Data Access Object for Letter Tries operations
+ * Data Access Object for Letter Tries operations.
+ * The letter tries of a game are stored packed in the letter_sequence column of its
+ * game history row (see {@link LetterTryCodec}) and are decoded on demand.
+ * Every method is timed into the {@link QueryMetrics} of the database.
  */
 public class LetterTryDao {
 
+    private static final String BY_GAME_ID = " WHERE " + HangmanDatabaseHelper.COLUMN_GAME_ID + " = ?";
+
+    private static final String QUERY_LETTER_SEQUENCE =
+        "SELECT " + HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE + " FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + BY_GAME_ID;
+    private static final String UPDATE_LETTER_SEQUENCE =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + " SET " + HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE + " = ?" + BY_GAME_ID;
+    private static final String CLEAR_LETTER_SEQUENCE =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_GAME_HISTORY + " SET " + HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE + " = NULL";
+    private static final String HAS_LETTER_SEQUENCE = HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE + " IS NOT NULL";
+    // Served by the partial index idx_letter_sequence_timestamp, which only holds games that still have tries
+    private static final String QUERY_PRUNABLE_GAMES =
+        "SELECT " + HangmanDatabaseHelper.COLUMN_GAME_ID + ", " + HangmanDatabaseHelper.COLUMN_IS_WIN + ", " +
+        HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE + " FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY +
+        " WHERE " + HAS_LETTER_SEQUENCE + " AND " + HangmanDatabaseHelper.COLUMN_TIMESTAMP + " < ?" +
+        " ORDER BY " + HangmanDatabaseHelper.COLUMN_TIMESTAMP + " LIMIT ?";
+
     private final HangmanDatabaseHelper dbHelper;
+    private final QueryMetrics metrics;
 
     public LetterTryDao(Context context) {
-        this.dbHelper = HangmanDatabaseHelper.getInstance(context);
+        this(HangmanDatabaseHelper.getInstance(context));
     }
 
-    /**
-     * Insert a new letter try record
-     * @param letterTry The letter try to insert
-     * @return The ID of the inserted try, or -1 if failed
-     */
-    public long insertLetterTry(LetterTry letterTry) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        
-        ContentValues values = new ContentValues();
-        values.put(HangmanDatabaseHelper.COLUMN_FK_GAME_ID, letterTry.getGameId());
-        values.put(HangmanDatabaseHelper.COLUMN_LETTER, String.valueOf(letterTry.getLetter()));
-        values.put(HangmanDatabaseHelper.COLUMN_IS_CORRECT, letterTry.isCorrect() ? 1 : 0);
-        values.put(HangmanDatabaseHelper.COLUMN_TRY_ORDER, letterTry.getTryOrder());
-
-        long tryId = db.insert(HangmanDatabaseHelper.TABLE_LETTER_TRIES, null, values);
-        letterTry.setTryId(tryId);
-        
-        return tryId;
+    public LetterTryDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.metrics = dbHelper.getQueryMetrics();
     }
 
     /**
-     * Insert multiple letter tries in a batch
-     * @param letterTries List of letter tries to insert
-     * @return Number of successfully inserted tries
+     * Replace the letter tries of a game.
+     * New games get their tries with {@link GameHistoryDao#insertGameHistory(markus.wieland.hangman.database.models.GameHistory, List)}.
+     * @param gameId The game ID
+     * @param letterTries The letter tries of the game in try order
+     * @return Number of updated games, 0 if the game does not exist
      */
-    public int insertLetterTries(List<LetterTry> letterTries) {
+    public int updateLetterTries(long gameId, List<LetterTry> letterTries) {
+        long start = metrics.start();
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        int inserted = 0;
-        
-        db.beginTransaction();
-        try {
-            for (LetterTry letterTry : letterTries) {
-                ContentValues values = new ContentValues();
-                values.put(HangmanDatabaseHelper.COLUMN_FK_GAME_ID, letterTry.getGameId());
-                values.put(HangmanDatabaseHelper.COLUMN_LETTER, String.valueOf(letterTry.getLetter()));
-                values.put(HangmanDatabaseHelper.COLUMN_IS_CORRECT, letterTry.isCorrect() ? 1 : 0);
-                values.put(HangmanDatabaseHelper.COLUMN_TRY_ORDER, letterTry.getTryOrder());
-
-                long tryId = db.insert(HangmanDatabaseHelper.TABLE_LETTER_TRIES, null, values);
-                if (tryId != -1) {
-                    letterTry.setTryId(tryId);
-                    inserted++;
-                }
-            }
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
+        ContentValues values = new ContentValues();
+        if (letterTries.isEmpty()) {
+            values.putNull(HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE);
+        } else {
+            values.put(HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE, LetterTryCodec.encode(letterTries));
         }
-        
-        return inserted;
+        String[] whereArgs = {String.valueOf(gameId)};
+        int updated = db.update(
+            HangmanDatabaseHelper.TABLE_GAME_HISTORY,
+            values,
+            HangmanDatabaseHelper.COLUMN_GAME_ID + " = ?",
+            whereArgs
+        );
+        // Only the plan of a slow update is explained, so a placeholder stands in for the blob
+        metrics.record("updateLetterTries", start, updated, UPDATE_LETTER_SEQUENCE, new String[]{"", whereArgs[0]});
+        return updated;
     }
 
     /**
@@ -80,36 +85,7 @@ public class LetterTryDao {
      * @return List of letter tries for the game
      */
     public List<LetterTry> getLetterTriesByGameId(long gameId) {
-        List<LetterTry> letterTries = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        String[] columns = {
-            HangmanDatabaseHelper.COLUMN_TRY_ID,
-            HangmanDatabaseHelper.COLUMN_FK_GAME_ID,
-            HangmanDatabaseHelper.COLUMN_LETTER,
-            HangmanDatabaseHelper.COLUMN_IS_CORRECT,
-            HangmanDatabaseHelper.COLUMN_TRY_ORDER
-        };
-
-        Cursor cursor = db.query(
-            HangmanDatabaseHelper.TABLE_LETTER_TRIES,
-            columns,
-            HangmanDatabaseHelper.COLUMN_FK_GAME_ID + " = ?",
-            new String[]{String.valueOf(gameId)},
-            null,
-            null,
-            HangmanDatabaseHelper.COLUMN_TRY_ORDER + " ASC"
-        );
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                LetterTry letterTry = cursorToLetterTry(cursor);
-                letterTries.add(letterTry);
-            } while (cursor.moveToNext());
-            cursor.close();
-        }
-
-        return letterTries;
+        return LetterTryCodec.decode(gameId, getLetterSequence("getLetterTriesByGameId", gameId));
     }
 
     /**
@@ -118,18 +94,7 @@ public class LetterTryDao {
      * @return Number of tries for the game
      */
     public int getTriesCountByGameId(long gameId) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery(
-            "SELECT COUNT(*) FROM " + HangmanDatabaseHelper.TABLE_LETTER_TRIES + 
-            " WHERE " + HangmanDatabaseHelper.COLUMN_FK_GAME_ID + " = ?",
-            new String[]{String.valueOf(gameId)}
-        );
-        int count = 0;
-        if (cursor != null && cursor.moveToFirst()) {
-            count = cursor.getInt(0);
-            cursor.close();
-        }
-        return count;
+        return LetterTryCodec.countTries(getLetterSequence("getTriesCountByGameId", gameId));
     }
 
     /**
@@ -138,37 +103,7 @@ public class LetterTryDao {
      * @return List of correct letter tries
      */
     public List<LetterTry> getCorrectLetterTriesByGameId(long gameId) {
-        List<LetterTry> letterTries = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        String[] columns = {
-            HangmanDatabaseHelper.COLUMN_TRY_ID,
-            HangmanDatabaseHelper.COLUMN_FK_GAME_ID,
-            HangmanDatabaseHelper.COLUMN_LETTER,
-            HangmanDatabaseHelper.COLUMN_IS_CORRECT,
-            HangmanDatabaseHelper.COLUMN_TRY_ORDER
-        };
-
-        Cursor cursor = db.query(
-            HangmanDatabaseHelper.TABLE_LETTER_TRIES,
-            columns,
-            HangmanDatabaseHelper.COLUMN_FK_GAME_ID + " = ? AND " + 
-            HangmanDatabaseHelper.COLUMN_IS_CORRECT + " = 1",
-            new String[]{String.valueOf(gameId)},
-            null,
-            null,
-            HangmanDatabaseHelper.COLUMN_TRY_ORDER + " ASC"
-        );
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                LetterTry letterTry = cursorToLetterTry(cursor);
-                letterTries.add(letterTry);
-            } while (cursor.moveToNext());
-            cursor.close();
-        }
-
-        return letterTries;
+        return filterLetterTries(getLetterTriesByGameId(gameId), true);
     }
 
     /**
@@ -177,73 +112,104 @@ public class LetterTryDao {
      * @return List of wrong letter tries
      */
     public List<LetterTry> getWrongLetterTriesByGameId(long gameId) {
-        List<LetterTry> letterTries = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        String[] columns = {
-            HangmanDatabaseHelper.COLUMN_TRY_ID,
-            HangmanDatabaseHelper.COLUMN_FK_GAME_ID,
-            HangmanDatabaseHelper.COLUMN_LETTER,
-            HangmanDatabaseHelper.COLUMN_IS_CORRECT,
-            HangmanDatabaseHelper.COLUMN_TRY_ORDER
-        };
-
-        Cursor cursor = db.query(
-            HangmanDatabaseHelper.TABLE_LETTER_TRIES,
-            columns,
-            HangmanDatabaseHelper.COLUMN_FK_GAME_ID + " = ? AND " + 
-            HangmanDatabaseHelper.COLUMN_IS_CORRECT + " = 0",
-            new String[]{String.valueOf(gameId)},
-            null,
-            null,
-            HangmanDatabaseHelper.COLUMN_TRY_ORDER + " ASC"
-        );
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                LetterTry letterTry = cursorToLetterTry(cursor);
-                letterTries.add(letterTry);
-            } while (cursor.moveToNext());
-            cursor.close();
-        }
-
-        return letterTries;
+        return filterLetterTries(getLetterTriesByGameId(gameId), false);
     }
 
     /**
-     * Delete all letter tries for a specific game
+     * Delete all letter tries for a specific game, the game itself is kept
      * @param gameId The game ID
-     * @return Number of rows deleted
+     * @return Number of games whose tries were deleted
      */
     public int deleteLetterTriesByGameId(long gameId) {
+        long start = metrics.start();
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        return db.delete(
-            HangmanDatabaseHelper.TABLE_LETTER_TRIES,
-            HangmanDatabaseHelper.COLUMN_FK_GAME_ID + " = ?",
-            new String[]{String.valueOf(gameId)}
+        ContentValues values = new ContentValues();
+        values.putNull(HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE);
+        String[] whereArgs = {String.valueOf(gameId)};
+        int deleted = db.update(
+            HangmanDatabaseHelper.TABLE_GAME_HISTORY,
+            values,
+            HangmanDatabaseHelper.COLUMN_GAME_ID + " = ? AND " + HAS_LETTER_SEQUENCE,
+            whereArgs
         );
+        metrics.record("deleteLetterTriesByGameId", start, deleted,
+            CLEAR_LETTER_SEQUENCE + BY_GAME_ID + " AND " + HAS_LETTER_SEQUENCE, whereArgs);
+        return deleted;
     }
 
     /**
-     * Delete all letter tries
-     * @return Number of rows deleted
+     * Delete all letter tries, the games themselves are kept
+     * @return Number of games whose tries were deleted
      */
     public int deleteAllLetterTries() {
+        long start = metrics.start();
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        return db.delete(HangmanDatabaseHelper.TABLE_LETTER_TRIES, null, null);
+        ContentValues values = new ContentValues();
+        values.putNull(HangmanDatabaseHelper.COLUMN_LETTER_SEQUENCE);
+        int deleted = db.update(HangmanDatabaseHelper.TABLE_GAME_HISTORY, values, HAS_LETTER_SEQUENCE, null);
+        metrics.record("deleteAllLetterTries", start, deleted, CLEAR_LETTER_SEQUENCE + " WHERE " + HAS_LETTER_SEQUENCE, null);
+        return deleted;
     }
 
     /**
-     * Helper method to convert cursor to LetterTry object
+     * Prune the letter tries of the oldest games before a timestamp, keeping the games themselves.
+     * Their letter contributions are moved to the letter_stats_archive table first, so the letter
+     * statistics stay complete and can still be rebuilt. Runs in one short transaction.
+     * @param cutoffTimestamp Games played before this timestamp lose their tries
+     * @param batchSize Maximum number of games pruned by this call
+     * @return Number of pruned games, less than batchSize once nothing is left to prune
      */
-    private LetterTry cursorToLetterTry(Cursor cursor) {
-        LetterTry letterTry = new LetterTry();
-        letterTry.setTryId(cursor.getLong(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_TRY_ID)));
-        letterTry.setGameId(cursor.getLong(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_FK_GAME_ID)));
-        String letterStr = cursor.getString(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_LETTER));
-        letterTry.setLetter(letterStr.charAt(0));
-        letterTry.setCorrect(cursor.getInt(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_IS_CORRECT)) == 1);
-        letterTry.setTryOrder(cursor.getInt(cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_TRY_ORDER)));
-        return letterTry;
+    public int pruneLetterTriesBefore(long cutoffTimestamp, int batchSize) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        LetterStatisticsDelta archived = new LetterStatisticsDelta();
+        String[] args = {String.valueOf(cutoffTimestamp), String.valueOf(batchSize)};
+        int pruned = 0;
+
+        db.beginTransactionNonExclusive();
+        try {
+            Cursor cursor = db.rawQuery(QUERY_PRUNABLE_GAMES, args);
+            SQLiteStatement clear = db.compileStatement(CLEAR_LETTER_SEQUENCE + BY_GAME_ID);
+            try {
+                while (cursor.moveToNext()) {
+                    long gameId = cursor.getLong(0);
+                    archived.addGame(cursor.getInt(1) == 1, LetterTryCodec.decode(gameId, cursor.getBlob(2)));
+                    clear.bindLong(1, gameId);
+                    clear.executeUpdateDelete();
+                    pruned++;
+                }
+            } finally {
+                clear.close();
+                cursor.close();
+            }
+            archived.applyToArchive(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        metrics.record("pruneLetterTriesBefore", start, pruned, QUERY_PRUNABLE_GAMES, args);
+        return pruned;
+    }
+
+    /**
+     * Read the packed letter tries of a game with a primary key lookup
+     * @param name Name of the calling method for the query metrics
+     * @return The packed sequence, null if the game has no tries or does not exist
+     */
+    private byte[] getLetterSequence(String name, long gameId) {
+        long start = metrics.start();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String[] args = {String.valueOf(gameId)};
+        byte[] sequence = CursorReader.readFirst(db.rawQuery(QUERY_LETTER_SEQUENCE, args), row -> () -> row.getBlob(0));
+        metrics.record(name, start, sequence == null ? 0 : 1, QUERY_LETTER_SEQUENCE, args);
+        return sequence;
+    }
+
+    private List<LetterTry> filterLetterTries(List<LetterTry> letterTries, boolean isCorrect) {
+        List<LetterTry> filtered = new ArrayList<>();
+        for (LetterTry letterTry : letterTries) {
+            if (letterTry.isCorrect() == isCorrect) filtered.add(letterTry);
+        }
+        return filtered;
     }
 }
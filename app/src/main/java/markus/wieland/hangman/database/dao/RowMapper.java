@@ -0,0 +1,14 @@
+package markus.wieland.hangman.database.dao;
+
+/**
+ * Maps the current row of the cursor it was created for.
+ * Implementations resolve their column indices once when they are created,
+ * so mapping a row never looks up a column by name.
+ */
+public interface RowMapper<T> {
+
+    /**
+     * Map the row the cursor currently points to
+     */
+    T mapRow();
+}
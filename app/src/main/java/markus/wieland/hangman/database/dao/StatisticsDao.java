@@ -0,0 +1,173 @@
+package markus.wieland.hangman.database.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.GameStatistics;
+
+/**
+ * Data Access Object for the aggregated game statistics.
+ * The statistics are kept in a single row that is updated together with every
+ * insert or delete of a game, so reading them never scans the game history.
+ */
+public class StatisticsDao {
+
+    private static final String UPDATE_STATISTICS =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_GAME_STATISTICS + " SET " +
+        HangmanDatabaseHelper.COLUMN_GAMES_PLAYED + " = " + HangmanDatabaseHelper.COLUMN_GAMES_PLAYED + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_WINS + " = " + HangmanDatabaseHelper.COLUMN_WINS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_LOSSES + " = " + HangmanDatabaseHelper.COLUMN_LOSSES + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_ATTEMPTS_SUM + " = " + HangmanDatabaseHelper.COLUMN_ATTEMPTS_SUM + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS_SUM + " = " + HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS_SUM + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_CUSTOM_GAMES + " = " + HangmanDatabaseHelper.COLUMN_CUSTOM_GAMES + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_CUSTOM_WINS + " = " + HangmanDatabaseHelper.COLUMN_CUSTOM_WINS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_RANDOM_GAMES + " = " + HangmanDatabaseHelper.COLUMN_RANDOM_GAMES + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_RANDOM_WINS + " = " + HangmanDatabaseHelper.COLUMN_RANDOM_WINS + " + ? " +
+        "WHERE " + HangmanDatabaseHelper.COLUMN_STATISTICS_ID + " = " + HangmanDatabaseHelper.STATISTICS_ROW_ID;
+
+    private final HangmanDatabaseHelper dbHelper;
+
+    public StatisticsDao(Context context) {
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public StatisticsDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Get the aggregated statistics with a single primary key lookup
+     * @return The statistics, all zero if no game was played yet
+     */
+    public GameStatistics getStatistics() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        String[] columns = {
+            HangmanDatabaseHelper.COLUMN_GAMES_PLAYED,
+            HangmanDatabaseHelper.COLUMN_WINS,
+            HangmanDatabaseHelper.COLUMN_LOSSES,
+            HangmanDatabaseHelper.COLUMN_ATTEMPTS_SUM,
+            HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS_SUM,
+            HangmanDatabaseHelper.COLUMN_CUSTOM_GAMES,
+            HangmanDatabaseHelper.COLUMN_CUSTOM_WINS,
+            HangmanDatabaseHelper.COLUMN_RANDOM_GAMES,
+            HangmanDatabaseHelper.COLUMN_RANDOM_WINS
+        };
+
+        Cursor cursor = db.query(
+            HangmanDatabaseHelper.TABLE_GAME_STATISTICS,
+            columns,
+            HangmanDatabaseHelper.COLUMN_STATISTICS_ID + " = ?",
+            new String[]{String.valueOf(HangmanDatabaseHelper.STATISTICS_ROW_ID)},
+            null,
+            null,
+            null
+        );
+
+        GameStatistics statistics = CursorReader.readFirst(cursor, StatisticsDao::statisticsMapper);
+        return statistics != null ? statistics : new GameStatistics();
+    }
+
+    /**
+     * Add a saved game to the statistics.
+     * Must run in the same transaction as the insert of the game.
+     */
+    public void addGame(GameHistory gameHistory) {
+        applyGame(gameHistory, 1);
+    }
+
+    /**
+     * Remove a deleted game from the statistics.
+     * Must run in the same transaction as the delete of the game.
+     */
+    public void removeGame(GameHistory gameHistory) {
+        applyGame(gameHistory, -1);
+    }
+
+    /**
+     * Add the statistics of a whole batch of saved games with a single update.
+     * Must run in the same transaction as the inserts of the games.
+     */
+    public void addStatistics(GameStatistics statistics) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL(UPDATE_STATISTICS, new Object[]{
+            statistics.getGamesPlayed(),
+            statistics.getWins(),
+            statistics.getLosses(),
+            statistics.getAttemptsSum(),
+            statistics.getWrongAttemptsSum(),
+            statistics.getCustomGames(),
+            statistics.getCustomWins(),
+            statistics.getRandomGames(),
+            statistics.getRandomWins()
+        });
+    }
+
+    /**
+     * Reset all statistics to zero
+     */
+    public void resetStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL(
+            "UPDATE " + HangmanDatabaseHelper.TABLE_GAME_STATISTICS + " SET " +
+            HangmanDatabaseHelper.COLUMN_GAMES_PLAYED + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_WINS + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_LOSSES + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_ATTEMPTS_SUM + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_WRONG_ATTEMPTS_SUM + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_CUSTOM_GAMES + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_CUSTOM_WINS + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_RANDOM_GAMES + " = 0, " +
+            HangmanDatabaseHelper.COLUMN_RANDOM_WINS + " = 0"
+        );
+    }
+
+    /**
+     * Recompute the statistics from the game history.
+     * Only needed to repair the statistics row, it scans the whole history once.
+     */
+    public void rebuildStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL(HangmanDatabaseHelper.REBUILD_GAME_STATISTICS);
+    }
+
+    /**
+     * The columns are selected in a fixed order, so they are read by position
+     */
+    private static RowMapper<GameStatistics> statisticsMapper(Cursor cursor) {
+        return () -> {
+            GameStatistics statistics = new GameStatistics();
+            statistics.setGamesPlayed(cursor.getInt(0));
+            statistics.setWins(cursor.getInt(1));
+            statistics.setLosses(cursor.getInt(2));
+            statistics.setAttemptsSum(cursor.getLong(3));
+            statistics.setWrongAttemptsSum(cursor.getLong(4));
+            statistics.setCustomGames(cursor.getInt(5));
+            statistics.setCustomWins(cursor.getInt(6));
+            statistics.setRandomGames(cursor.getInt(7));
+            statistics.setRandomWins(cursor.getInt(8));
+            return statistics;
+        };
+    }
+
+    private void applyGame(GameHistory gameHistory, int sign) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int win = gameHistory.isWin() ? sign : 0;
+        int custom = gameHistory.isCustomWord() ? sign : 0;
+        int random = gameHistory.isCustomWord() ? 0 : sign;
+        db.execSQL(UPDATE_STATISTICS, new Object[]{
+            sign,
+            win,
+            sign - win,
+            sign * gameHistory.getTotalAttempts(),
+            sign * gameHistory.getWrongAttempts(),
+            custom,
+            gameHistory.isCustomWord() ? win : 0,
+            random,
+            gameHistory.isCustomWord() ? 0 : win
+        });
+    }
+}
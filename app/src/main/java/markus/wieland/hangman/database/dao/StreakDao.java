@@ -0,0 +1,244 @@
+package markus.wieland.hangman.database.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.StreakRunBuilder;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.StreakStatistics;
+
+/**
+ * Data Access Object for the win and losing streaks.
+ * The game history in (timestamp, game_id) order is stored as its runs of equal results, so the current
+ * streak is the last run and the longest streaks are the top entries of idx_streak_runs_length.
+ * Saving a game extends or appends the last run, deleting a game (or saving one older than the latest)
+ * only rescans the games of the runs around it.
+ */
+public class StreakDao {
+
+    private static final String[] RUN_COLUMNS = {
+        HangmanDatabaseHelper.COLUMN_RUN_ID,
+        HangmanDatabaseHelper.COLUMN_RUN_IS_WIN,
+        HangmanDatabaseHelper.COLUMN_RUN_LENGTH,
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP,
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID,
+        HangmanDatabaseHelper.COLUMN_RUN_LAST_TIMESTAMP,
+        HangmanDatabaseHelper.COLUMN_RUN_LAST_GAME_ID
+    };
+
+    private static final String ORDER_BY_POSITION_DESC =
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " DESC, " + HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID + " DESC";
+
+    private static final String ORDER_BY_POSITION_ASC =
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " ASC, " + HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID + " ASC";
+
+    // Runs starting at or before a position, the first_timestamp bound keeps it a range of idx_streak_runs_position
+    private static final String SELECTION_STARTS_AT_OR_BEFORE =
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " <= ? AND (" +
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " < ? OR " + HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID + " <= ?)";
+
+    private static final String SELECTION_STARTS_BEFORE =
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " <= ? AND (" +
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " < ? OR " + HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID + " < ?)";
+
+    private static final String SELECTION_STARTS_AFTER =
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " >= ? AND (" +
+        HangmanDatabaseHelper.COLUMN_RUN_FIRST_TIMESTAMP + " > ? OR " + HangmanDatabaseHelper.COLUMN_RUN_FIRST_GAME_ID + " > ?)";
+
+    private static final String EXTEND_RUN =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_STREAK_RUNS + " SET " +
+        HangmanDatabaseHelper.COLUMN_RUN_LENGTH + " = " + HangmanDatabaseHelper.COLUMN_RUN_LENGTH + " + 1, " +
+        HangmanDatabaseHelper.COLUMN_RUN_LAST_TIMESTAMP + " = ?, " +
+        HangmanDatabaseHelper.COLUMN_RUN_LAST_GAME_ID + " = ? " +
+        "WHERE " + HangmanDatabaseHelper.COLUMN_RUN_ID + " = ?";
+
+    // Last run plus the longest run of each result, every subquery is a single index lookup
+    private static final String SELECT_STREAK_STATISTICS =
+        "SELECT " +
+        "(SELECT " + HangmanDatabaseHelper.COLUMN_RUN_LENGTH + " FROM " + HangmanDatabaseHelper.TABLE_STREAK_RUNS +
+        " ORDER BY " + ORDER_BY_POSITION_DESC + " LIMIT 1), " +
+        "(SELECT " + HangmanDatabaseHelper.COLUMN_RUN_IS_WIN + " FROM " + HangmanDatabaseHelper.TABLE_STREAK_RUNS +
+        " ORDER BY " + ORDER_BY_POSITION_DESC + " LIMIT 1), " +
+        "(SELECT MAX(" + HangmanDatabaseHelper.COLUMN_RUN_LENGTH + ") FROM " + HangmanDatabaseHelper.TABLE_STREAK_RUNS +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_RUN_IS_WIN + " = 1), " +
+        "(SELECT MAX(" + HangmanDatabaseHelper.COLUMN_RUN_LENGTH + ") FROM " + HangmanDatabaseHelper.TABLE_STREAK_RUNS +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_RUN_IS_WIN + " = 0)";
+
+    private final HangmanDatabaseHelper dbHelper;
+
+    // Compiled once and reused for every saved game, guarded by this
+    private SQLiteStatement extendStatement;
+    private SQLiteStatement insertStatement;
+
+    public StreakDao(Context context) {
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public StreakDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Add a saved game to the streaks.
+     * Must run in the same transaction as the insert of the game, after the game ID is set.
+     */
+    public void addGame(GameHistory gameHistory) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        StreakRunBuilder.Position position = new StreakRunBuilder.Position(gameHistory.getTimestamp(), gameHistory.getGameId());
+        StreakRun lastRun = findRun(db, null, null, ORDER_BY_POSITION_DESC);
+
+        // An older game, e.g. from an import, can split or join runs in the middle of the history
+        if (lastRun != null && !position.isAfter(lastRun.last)) {
+            rebuildAround(db, position);
+            return;
+        }
+
+        synchronized (this) {
+            if (extendStatement == null) {
+                extendStatement = db.compileStatement(EXTEND_RUN);
+                insertStatement = db.compileStatement(StreakRunBuilder.INSERT_STREAK_RUN);
+            }
+
+            if (lastRun != null && lastRun.isWin == gameHistory.isWin()) {
+                extendStatement.bindLong(1, position.getTimestamp());
+                extendStatement.bindLong(2, position.getGameId());
+                extendStatement.bindLong(3, lastRun.runId);
+                extendStatement.executeUpdateDelete();
+                return;
+            }
+
+            insertStatement.bindLong(1, gameHistory.isWin() ? 1 : 0);
+            insertStatement.bindLong(2, 1);
+            insertStatement.bindLong(3, position.getTimestamp());
+            insertStatement.bindLong(4, position.getGameId());
+            insertStatement.bindLong(5, position.getTimestamp());
+            insertStatement.bindLong(6, position.getGameId());
+            insertStatement.executeInsert();
+        }
+    }
+
+    /**
+     * Remove a deleted game from the streaks.
+     * Must run in the same transaction as the delete of the game, after the game is gone.
+     */
+    public void removeGame(GameHistory gameHistory) {
+        rebuildAround(dbHelper.getWritableDatabase(),
+                new StreakRunBuilder.Position(gameHistory.getTimestamp(), gameHistory.getGameId()));
+    }
+
+    /**
+     * Get the current streak and the longest win and losing streaks with a few index lookups
+     */
+    public StreakStatistics getStreakStatistics() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SELECT_STREAK_STATISTICS, null);
+        StreakStatistics statistics = CursorReader.readFirst(cursor, StreakDao::streakStatisticsMapper);
+        return statistics != null ? statistics : new StreakStatistics();
+    }
+
+    /**
+     * Remove all runs
+     */
+    public void resetStreaks() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete(HangmanDatabaseHelper.TABLE_STREAK_RUNS, null, null);
+    }
+
+    /**
+     * Recompute all runs from the game history.
+     * Only needed to repair them, it scans the whole history once.
+     */
+    public void rebuildStreaks() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            resetStreaks();
+            StreakRunBuilder.rebuildRuns(db, StreakRunBuilder.START, StreakRunBuilder.END);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Recomputes the runs after a game was inserted or deleted at the given position.
+     * Only the run starting at or before the position and its two neighbours can change: a deleted game
+     * can shorten its run or, if it was the only game, merge the runs before and after it; an inserted game
+     * can extend, split or join them. Everything outside those three runs keeps its boundaries.
+     */
+    private void rebuildAround(SQLiteDatabase db, StreakRunBuilder.Position position) {
+        StreakRun run = findRun(db, SELECTION_STARTS_AT_OR_BEFORE, position, ORDER_BY_POSITION_DESC);
+        StreakRun previous = run != null ? findRun(db, SELECTION_STARTS_BEFORE, run.first, ORDER_BY_POSITION_DESC) : null;
+        StreakRun next = run != null
+                ? findRun(db, SELECTION_STARTS_AFTER, run.first, ORDER_BY_POSITION_ASC)
+                : findRun(db, null, null, ORDER_BY_POSITION_ASC);
+
+        StreakRunBuilder.Position from = previous != null ? previous.first : StreakRunBuilder.START;
+        StreakRunBuilder.Position to = next != null ? next.last : StreakRunBuilder.END;
+
+        for (StreakRun affected : new StreakRun[]{previous, run, next}) {
+            if (affected == null) continue;
+            db.delete(HangmanDatabaseHelper.TABLE_STREAK_RUNS,
+                    HangmanDatabaseHelper.COLUMN_RUN_ID + " = ?",
+                    new String[]{String.valueOf(affected.runId)});
+        }
+        StreakRunBuilder.rebuildRuns(db, from, to);
+    }
+
+    private StreakRun findRun(SQLiteDatabase db, String selection, StreakRunBuilder.Position position, String orderBy) {
+        String[] selectionArgs = position == null ? null : new String[]{
+            String.valueOf(position.getTimestamp()),
+            String.valueOf(position.getTimestamp()),
+            String.valueOf(position.getGameId())
+        };
+        Cursor cursor = db.query(
+            HangmanDatabaseHelper.TABLE_STREAK_RUNS,
+            RUN_COLUMNS,
+            selection,
+            selectionArgs,
+            null,
+            null,
+            orderBy,
+            "1"
+        );
+        return CursorReader.readFirst(cursor, StreakDao::runMapper);
+    }
+
+    private static RowMapper<StreakRun> runMapper(Cursor cursor) {
+        return () -> new StreakRun(
+            cursor.getLong(0),
+            cursor.getInt(1) == 1,
+            new StreakRunBuilder.Position(cursor.getLong(3), cursor.getLong(4)),
+            new StreakRunBuilder.Position(cursor.getLong(5), cursor.getLong(6))
+        );
+    }
+
+    private static RowMapper<StreakStatistics> streakStatisticsMapper(Cursor cursor) {
+        return () -> {
+            // Without any games all four values are NULL and read as 0
+            StreakStatistics statistics = new StreakStatistics();
+            statistics.setCurrentStreak(cursor.getInt(0));
+            statistics.setCurrentStreakWin(cursor.getInt(1) == 1);
+            statistics.setLongestWinStreak(cursor.getInt(2));
+            statistics.setLongestLosingStreak(cursor.getInt(3));
+            return statistics;
+        };
+    }
+
+    private static class StreakRun {
+        final long runId;
+        final boolean isWin;
+        final StreakRunBuilder.Position first;
+        final StreakRunBuilder.Position last;
+
+        StreakRun(long runId, boolean isWin, StreakRunBuilder.Position first, StreakRunBuilder.Position last) {
+            this.runId = runId;
+            this.isWin = isWin;
+            this.first = first;
+            this.last = last;
+        }
+    }
+}
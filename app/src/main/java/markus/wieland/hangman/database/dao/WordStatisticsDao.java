@@ -0,0 +1,231 @@
+package markus.wieland.hangman.database.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.List;
+
+import markus.wieland.hangman.database.HangmanDatabaseHelper;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.WordStatistics;
+
+/**
+ * Data Access Object for the per-word statistics.
+ * Every word has one row that is updated together with every insert or delete of one of its
+ * games, so word rankings only read the top rows of an index instead of the game history.
+ */
+public class WordStatisticsDao {
+
+    private static final String UPDATE_WORD_STATISTICS =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_WORD_STATISTICS + " SET " +
+        HangmanDatabaseHelper.COLUMN_WORD_PLAYS + " = " + HangmanDatabaseHelper.COLUMN_WORD_PLAYS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_WORD_WINS + " = " + HangmanDatabaseHelper.COLUMN_WORD_WINS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_WORD_TOTAL_ATTEMPTS + " = " + HangmanDatabaseHelper.COLUMN_WORD_TOTAL_ATTEMPTS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_WORD_WRONG_ATTEMPTS + " = " + HangmanDatabaseHelper.COLUMN_WORD_WRONG_ATTEMPTS + " + ?, " +
+        HangmanDatabaseHelper.COLUMN_WORD_LAST_PLAYED + " = MAX(" + HangmanDatabaseHelper.COLUMN_WORD_LAST_PLAYED + ", ?) " +
+        "WHERE " + HangmanDatabaseHelper.COLUMN_WORD + " = ?";
+
+    private static final String INSERT_WORD_STATISTICS =
+        "INSERT INTO " + HangmanDatabaseHelper.TABLE_WORD_STATISTICS + " (" +
+        HangmanDatabaseHelper.COLUMN_WORD + ", " +
+        HangmanDatabaseHelper.COLUMN_WORD_PLAYS + ", " +
+        HangmanDatabaseHelper.COLUMN_WORD_WINS + ", " +
+        HangmanDatabaseHelper.COLUMN_WORD_TOTAL_ATTEMPTS + ", " +
+        HangmanDatabaseHelper.COLUMN_WORD_WRONG_ATTEMPTS + ", " +
+        HangmanDatabaseHelper.COLUMN_WORD_LAST_PLAYED +
+        ") VALUES (?, 1, ?, ?, ?, ?)";
+
+    // Recomputes the last played time from idx_word after a game of the word was deleted
+    private static final String REFRESH_LAST_PLAYED =
+        "UPDATE " + HangmanDatabaseHelper.TABLE_WORD_STATISTICS + " SET " +
+        HangmanDatabaseHelper.COLUMN_WORD_LAST_PLAYED + " = (" +
+        "SELECT MAX(" + HangmanDatabaseHelper.COLUMN_TIMESTAMP + ") FROM " + HangmanDatabaseHelper.TABLE_GAME_HISTORY +
+        " WHERE " + HangmanDatabaseHelper.COLUMN_WORD + " = ?) " +
+        "WHERE " + HangmanDatabaseHelper.COLUMN_WORD + " = ?";
+
+    private static final String[] WORD_STATISTICS_COLUMNS = {
+        HangmanDatabaseHelper.COLUMN_WORD,
+        HangmanDatabaseHelper.COLUMN_WORD_PLAYS,
+        HangmanDatabaseHelper.COLUMN_WORD_WINS,
+        HangmanDatabaseHelper.COLUMN_WORD_TOTAL_ATTEMPTS,
+        HangmanDatabaseHelper.COLUMN_WORD_WRONG_ATTEMPTS,
+        HangmanDatabaseHelper.COLUMN_WORD_LAST_PLAYED
+    };
+
+    private final HangmanDatabaseHelper dbHelper;
+
+    // Compiled once and reused for every saved game, guarded by this
+    private SQLiteStatement updateStatement;
+    private SQLiteStatement insertStatement;
+
+    public WordStatisticsDao(Context context) {
+        this(HangmanDatabaseHelper.getInstance(context));
+    }
+
+    public WordStatisticsDao(HangmanDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Add a saved game to the statistics of its word.
+     * Must run in the same transaction as the insert of the game.
+     */
+    public void addGame(GameHistory gameHistory) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        synchronized (this) {
+            if (updateStatement == null) {
+                updateStatement = db.compileStatement(UPDATE_WORD_STATISTICS);
+                insertStatement = db.compileStatement(INSERT_WORD_STATISTICS);
+            }
+
+            int win = gameHistory.isWin() ? 1 : 0;
+            updateStatement.bindLong(1, 1);
+            updateStatement.bindLong(2, win);
+            updateStatement.bindLong(3, gameHistory.getTotalAttempts());
+            updateStatement.bindLong(4, gameHistory.getWrongAttempts());
+            updateStatement.bindLong(5, gameHistory.getTimestamp());
+            updateStatement.bindString(6, gameHistory.getWord());
+            if (updateStatement.executeUpdateDelete() > 0) return;
+
+            // First game of this word
+            insertStatement.bindString(1, gameHistory.getWord());
+            insertStatement.bindLong(2, win);
+            insertStatement.bindLong(3, gameHistory.getTotalAttempts());
+            insertStatement.bindLong(4, gameHistory.getWrongAttempts());
+            insertStatement.bindLong(5, gameHistory.getTimestamp());
+            insertStatement.executeInsert();
+        }
+    }
+
+    /**
+     * Remove a deleted game from the statistics of its word.
+     * Must run in the same transaction as, and after, the delete of the game.
+     */
+    public void removeGame(GameHistory gameHistory) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String word = gameHistory.getWord();
+        db.execSQL(UPDATE_WORD_STATISTICS, new Object[]{
+            -1,
+            gameHistory.isWin() ? -1 : 0,
+            -gameHistory.getTotalAttempts(),
+            -gameHistory.getWrongAttempts(),
+            0,
+            word
+        });
+        db.delete(
+            HangmanDatabaseHelper.TABLE_WORD_STATISTICS,
+            HangmanDatabaseHelper.COLUMN_WORD + " = ? AND " + HangmanDatabaseHelper.COLUMN_WORD_PLAYS + " <= 0",
+            new String[]{word}
+        );
+        db.execSQL(REFRESH_LAST_PLAYED, new Object[]{word, word});
+    }
+
+    /**
+     * Get the statistics of a single word
+     * @return The statistics, or null if the word was never played
+     */
+    public WordStatistics getWordStatistics(String word) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.query(
+            HangmanDatabaseHelper.TABLE_WORD_STATISTICS,
+            WORD_STATISTICS_COLUMNS,
+            HangmanDatabaseHelper.COLUMN_WORD + " = ?",
+            new String[]{word},
+            null,
+            null,
+            null
+        );
+        return CursorReader.readFirst(cursor, WordStatisticsReader::new);
+    }
+
+    /**
+     * Get the words with the most wrong attempts per play, reads only the top entries of
+     * idx_word_stats_difficulty
+     * @param limit Number of words to return
+     */
+    public List<WordStatistics> getHardestWords(int limit) {
+        return getTopWords(HangmanDatabaseHelper.WORD_DIFFICULTY + " DESC", limit);
+    }
+
+    /**
+     * Get the most played words, reads only the top entries of idx_word_stats_plays
+     * @param limit Number of words to return
+     */
+    public List<WordStatistics> getMostPlayedWords(int limit) {
+        return getTopWords(HangmanDatabaseHelper.COLUMN_WORD_PLAYS + " DESC", limit);
+    }
+
+    /**
+     * Remove the statistics of all words
+     */
+    public void resetWordStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete(HangmanDatabaseHelper.TABLE_WORD_STATISTICS, null, null);
+    }
+
+    /**
+     * Recompute the word statistics from the game history.
+     * Only needed to repair them, it scans the whole history once.
+     */
+    public void rebuildWordStatistics() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            resetWordStatistics();
+            db.execSQL(HangmanDatabaseHelper.REBUILD_WORD_STATISTICS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private List<WordStatistics> getTopWords(String orderBy, int limit) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.query(
+            HangmanDatabaseHelper.TABLE_WORD_STATISTICS,
+            WORD_STATISTICS_COLUMNS,
+            null,
+            null,
+            null,
+            null,
+            orderBy,
+            String.valueOf(limit)
+        );
+        return CursorReader.readList(cursor, WordStatisticsReader::new);
+    }
+
+    private static class WordStatisticsReader implements RowMapper<WordStatistics> {
+
+        private final Cursor cursor;
+        private final int wordIndex;
+        private final int playsIndex;
+        private final int winsIndex;
+        private final int totalAttemptsIndex;
+        private final int wrongAttemptsIndex;
+        private final int lastPlayedIndex;
+
+        WordStatisticsReader(Cursor cursor) {
+            this.cursor = cursor;
+            this.wordIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD);
+            this.playsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD_PLAYS);
+            this.winsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD_WINS);
+            this.totalAttemptsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD_TOTAL_ATTEMPTS);
+            this.wrongAttemptsIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD_WRONG_ATTEMPTS);
+            this.lastPlayedIndex = cursor.getColumnIndexOrThrow(HangmanDatabaseHelper.COLUMN_WORD_LAST_PLAYED);
+        }
+
+        @Override
+        public WordStatistics mapRow() {
+            WordStatistics statistics = new WordStatistics();
+            statistics.setWord(cursor.getString(wordIndex));
+            statistics.setPlays(cursor.getInt(playsIndex));
+            statistics.setWins(cursor.getInt(winsIndex));
+            statistics.setTotalAttempts(cursor.getLong(totalAttemptsIndex));
+            statistics.setWrongAttempts(cursor.getLong(wrongAttemptsIndex));
+            statistics.setLastPlayed(cursor.getLong(lastPlayedIndex));
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package markus.wieland.hangman.database.models;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Model class representing one achievement with the player's progress towards it
+ */
+public class Achievement {
+
+    private final String id;
+    private final String title;
+    private final String description;
+    private final long progress;
+    private final long target;
+    private final long unlockedAt;
+
+    /**
+     * @param progress Progress in the unit of the target, e.g. games or letters
+     * @param unlockedAt Timestamp of the unlock in milliseconds, 0 while locked
+     */
+    public Achievement(String id, String title, String description, long progress, long target, long unlockedAt) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.progress = progress;
+        this.target = target;
+        this.unlockedAt = unlockedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the current progress, at most the target; for streaks the length of the current streak
+     */
+    public long getProgress() {
+        return Math.min(progress, target);
+    }
+
+    public long getTarget() {
+        return target;
+    }
+
+    public boolean isUnlocked() {
+        return unlockedAt != 0;
+    }
+
+    public long getUnlockedAt() {
+        return unlockedAt;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return title + " (" + (isUnlocked() ? "unlocked" : getProgress() + "/" + target) + "): " + description;
+    }
+}
@@ -0,0 +1,116 @@
+package markus.wieland.hangman.database.models;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Model class for the statistics dashboard.
+ * All breakdowns are folded from the same rows of the breakdown statistics, one per word length,
+ * word type and number of wrong attempts, so the games of every breakdown add up to {@link #getTotal()}.
+ */
+public class DashboardStatistics {
+
+    /**
+     * Aggregates of one group of games, e.g. all games with a word of five letters
+     */
+    public static class Group {
+        private int games;
+        private int wins;
+        private long attemptsSum;
+        private long wrongAttemptsSum;
+
+        void add(int games, int wins, long attemptsSum, long wrongAttemptsSum) {
+            this.games += games;
+            this.wins += wins;
+            this.attemptsSum += attemptsSum;
+            this.wrongAttemptsSum += wrongAttemptsSum;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getLosses() {
+            return games - wins;
+        }
+
+        /**
+         * Get win rate as a percentage
+         */
+        public double getWinRate() {
+            return games == 0 ? 0.0 : (wins * 100.0) / games;
+        }
+
+        public double getAverageAttempts() {
+            return games == 0 ? 0.0 : (double) attemptsSum / games;
+        }
+
+        public double getAverageWrongAttempts() {
+            return games == 0 ? 0.0 : (double) wrongAttemptsSum / games;
+        }
+    }
+
+    private final Group total = new Group();
+    private final Group customWords = new Group();
+    private final Group randomWords = new Group();
+    private final SortedMap<Integer, Group> byWordLength = new TreeMap<>();
+    private final SortedMap<Integer, Group> byWrongAttempts = new TreeMap<>();
+
+    /**
+     * Add one row of the breakdown statistics, all games in it share word length, word type and wrong attempts
+     * @param games Number of games in the row
+     * @param wins Number of won games in the row
+     * @param attemptsSum Sum of the total attempts of the games in the row
+     */
+    public void addGames(int wordLength, boolean isCustomWord, int wrongAttempts, int games, int wins, long attemptsSum) {
+        long wrongAttemptsSum = (long) wrongAttempts * games;
+        total.add(games, wins, attemptsSum, wrongAttemptsSum);
+        (isCustomWord ? customWords : randomWords).add(games, wins, attemptsSum, wrongAttemptsSum);
+        group(byWordLength, wordLength).add(games, wins, attemptsSum, wrongAttemptsSum);
+        group(byWrongAttempts, wrongAttempts).add(games, wins, attemptsSum, wrongAttemptsSum);
+    }
+
+    /**
+     * Get the aggregates over all games
+     */
+    public Group getTotal() {
+        return total;
+    }
+
+    public Group getCustomWords() {
+        return customWords;
+    }
+
+    public Group getRandomWords() {
+        return randomWords;
+    }
+
+    /**
+     * Get the games grouped by the length of their word, shortest first
+     */
+    public SortedMap<Integer, Group> getByWordLength() {
+        return Collections.unmodifiableSortedMap(byWordLength);
+    }
+
+    /**
+     * Get the distribution of wrong attempts: the games grouped by their number of wrong attempts, fewest first.
+     * Numbers of wrong attempts no game had are missing.
+     */
+    public SortedMap<Integer, Group> getByWrongAttempts() {
+        return Collections.unmodifiableSortedMap(byWrongAttempts);
+    }
+
+    private static Group group(SortedMap<Integer, Group> groups, int key) {
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group();
+            groups.put(key, group);
+        }
+        return group;
+    }
+}
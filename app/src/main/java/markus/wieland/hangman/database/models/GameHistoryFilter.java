@@ -0,0 +1,123 @@
+package markus.wieland.hangman.database.models;
+
+import androidx.annotation.NonNull;
+
+import markus.wieland.hangman.database.GameSearchIndex;
+
+/**
+ * Model class describing which games a history search returns.
+ * Every criterion is optional, a new filter matches all games.
+ */
+public class GameHistoryFilter {
+
+    private String text;
+    private boolean prefixOnly;
+    private Boolean win;
+    private Boolean customWord;
+    private Long fromTimestamp;
+    private Long toTimestamp;
+
+    public GameHistoryFilter() {
+    }
+
+    // Getters
+
+    /**
+     * Get the text the word has to contain, or null for any word
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Whether the word has to start with the text instead of only containing it
+     */
+    public boolean isPrefixOnly() {
+        return prefixOnly;
+    }
+
+    /**
+     * Get the required result, true for wins, false for losses, null for both
+     */
+    public Boolean getWin() {
+        return win;
+    }
+
+    /**
+     * Get the required word type, true for custom words, false for random words, null for both
+     */
+    public Boolean getCustomWord() {
+        return customWord;
+    }
+
+    /**
+     * Get the earliest timestamp (inclusive), or null for no lower bound
+     */
+    public Long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    /**
+     * Get the latest timestamp (inclusive), or null for no upper bound
+     */
+    public Long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    /**
+     * Whether the filter matches every game
+     */
+    public boolean isEmpty() {
+        return (text == null || text.trim().isEmpty()) && win == null && customWord == null
+                && fromTimestamp == null && toTimestamp == null;
+    }
+
+    /**
+     * Whether a game matches the filter, the same games a history search returns
+     */
+    public boolean matches(GameHistory game) {
+        if (win != null && game.isWin() != win) return false;
+        if (customWord != null && game.isCustomWord() != customWord) return false;
+        if (fromTimestamp != null && game.getTimestamp() < fromTimestamp) return false;
+        if (toTimestamp != null && game.getTimestamp() > toTimestamp) return false;
+        return text == null || GameSearchIndex.matches(game.getWord(), text, prefixOnly);
+    }
+
+    // Setters
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public void setPrefixOnly(boolean prefixOnly) {
+        this.prefixOnly = prefixOnly;
+    }
+
+    public void setWin(Boolean win) {
+        this.win = win;
+    }
+
+    public void setCustomWord(Boolean customWord) {
+        this.customWord = customWord;
+    }
+
+    public void setFromTimestamp(Long fromTimestamp) {
+        this.fromTimestamp = fromTimestamp;
+    }
+
+    public void setToTimestamp(Long toTimestamp) {
+        this.toTimestamp = toTimestamp;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "GameHistoryFilter{" +
+                "text='" + text + '\'' +
+                ", prefixOnly=" + prefixOnly +
+                ", win=" + win +
+                ", customWord=" + customWord +
+                ", fromTimestamp=" + fromTimestamp +
+                ", toTimestamp=" + toTimestamp +
+                '}';
+    }
+}
@@ -0,0 +1,159 @@
+package markus.wieland.hangman.database.models;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Model class representing the aggregated statistics over all games
+ */
+public class GameStatistics {
+
+    private int gamesPlayed;
+    private int wins;
+    private int losses;
+    private long attemptsSum;
+    private long wrongAttemptsSum;
+    private int customGames;
+    private int customWins;
+    private int randomGames;
+    private int randomWins;
+
+    public GameStatistics() {
+    }
+
+    // Getters
+    public int getGamesPlayed() {
+        return gamesPlayed;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public long getAttemptsSum() {
+        return attemptsSum;
+    }
+
+    public long getWrongAttemptsSum() {
+        return wrongAttemptsSum;
+    }
+
+    public int getCustomGames() {
+        return customGames;
+    }
+
+    public int getCustomWins() {
+        return customWins;
+    }
+
+    public int getRandomGames() {
+        return randomGames;
+    }
+
+    public int getRandomWins() {
+        return randomWins;
+    }
+
+    /**
+     * Get win rate as a percentage
+     */
+    public double getWinRate() {
+        return gamesPlayed == 0 ? 0.0 : (wins * 100.0) / gamesPlayed;
+    }
+
+    /**
+     * Get win rate of games with custom words as a percentage
+     */
+    public double getCustomWinRate() {
+        return customGames == 0 ? 0.0 : (customWins * 100.0) / customGames;
+    }
+
+    /**
+     * Get win rate of games with random words as a percentage
+     */
+    public double getRandomWinRate() {
+        return randomGames == 0 ? 0.0 : (randomWins * 100.0) / randomGames;
+    }
+
+    public double getAverageAttempts() {
+        return gamesPlayed == 0 ? 0.0 : (double) attemptsSum / gamesPlayed;
+    }
+
+    public double getAverageWrongAttempts() {
+        return gamesPlayed == 0 ? 0.0 : (double) wrongAttemptsSum / gamesPlayed;
+    }
+
+    /**
+     * Add a single game to these statistics, e.g. to collect the statistics of a batch
+     */
+    public void addGame(GameHistory gameHistory) {
+        gamesPlayed++;
+        attemptsSum += gameHistory.getTotalAttempts();
+        wrongAttemptsSum += gameHistory.getWrongAttempts();
+        if (gameHistory.isWin()) wins++;
+        else losses++;
+        if (gameHistory.isCustomWord()) {
+            customGames++;
+            if (gameHistory.isWin()) customWins++;
+        } else {
+            randomGames++;
+            if (gameHistory.isWin()) randomWins++;
+        }
+    }
+
+    // Setters
+    public void setGamesPlayed(int gamesPlayed) {
+        this.gamesPlayed = gamesPlayed;
+    }
+
+    public void setWins(int wins) {
+        this.wins = wins;
+    }
+
+    public void setLosses(int losses) {
+        this.losses = losses;
+    }
+
+    public void setAttemptsSum(long attemptsSum) {
+        this.attemptsSum = attemptsSum;
+    }
+
+    public void setWrongAttemptsSum(long wrongAttemptsSum) {
+        this.wrongAttemptsSum = wrongAttemptsSum;
+    }
+
+    public void setCustomGames(int customGames) {
+        this.customGames = customGames;
+    }
+
+    public void setCustomWins(int customWins) {
+        this.customWins = customWins;
+    }
+
+    public void setRandomGames(int randomGames) {
+        this.randomGames = randomGames;
+    }
+
+    public void setRandomWins(int randomWins) {
+        this.randomWins = randomWins;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "GameStatistics{" +
+                "gamesPlayed=" + gamesPlayed +
+                ", wins=" + wins +
+                ", losses=" + losses +
+                ", attemptsSum=" + attemptsSum +
+                ", wrongAttemptsSum=" + wrongAttemptsSum +
+                ", customGames=" + customGames +
+                ", customWins=" + customWins +
+                ", randomGames=" + randomGames +
+                ", randomWins=" + randomWins +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package markus.wieland.hangman.database.models;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Model class representing the aggregated statistics of a single guessed letter
+ */
+public class LetterStatistics {
+
+    private char letter;
+    private int guesses;
+    private int hits;
+    private long positionSum;
+    private int firstGuesses;
+    private int firstGuessWins;
+
+    public LetterStatistics() {
+    }
+
+    // Getters
+    public char getLetter() {
+        return letter;
+    }
+
+    public int getGuesses() {
+        return guesses;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public long getPositionSum() {
+        return positionSum;
+    }
+
+    public int getFirstGuesses() {
+        return firstGuesses;
+    }
+
+    public int getFirstGuessWins() {
+        return firstGuessWins;
+    }
+
+    /**
+     * Get how often a guess of this letter was correct as a percentage
+     */
+    public double getHitRate() {
+        return guesses == 0 ? 0.0 : (hits * 100.0) / guesses;
+    }
+
+    /**
+     * Get the average try number this letter was guessed at, 1 being the first guess of a game
+     */
+    public double getAverageTryNumber() {
+        return guesses == 0 ? 0.0 : (double) positionSum / guesses + 1;
+    }
+
+    /**
+     * Get the win rate of games that started with this letter as a percentage
+     */
+    public double getFirstGuessWinRate() {
+        return firstGuesses == 0 ? 0.0 : (firstGuessWins * 100.0) / firstGuesses;
+    }
+
+    // Setters
+    public void setLetter(char letter) {
+        this.letter = letter;
+    }
+
+    public void setGuesses(int guesses) {
+        this.guesses = guesses;
+    }
+
+    public void setHits(int hits) {
+        this.hits = hits;
+    }
+
+    public void setPositionSum(long positionSum) {
+        this.positionSum = positionSum;
+    }
+
+    public void setFirstGuesses(int firstGuesses) {
+        this.firstGuesses = firstGuesses;
+    }
+
+    public void setFirstGuessWins(int firstGuessWins) {
+        this.firstGuessWins = firstGuessWins;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LetterStatistics{" +
+                "letter=" + letter +
+                ", guesses=" + guesses +
+                ", hits=" + hits +
+                ", positionSum=" + positionSum +
+                ", firstGuesses=" + firstGuesses +
+                ", firstGuessWins=" + firstGuessWins +
+                '}';
+    }
+}
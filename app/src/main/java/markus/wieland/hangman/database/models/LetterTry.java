@@ -7,6 +7,7 @@ import androidx.annotation.NonNull;
  */
 public class LetterTry {
     
+    // Letter tries are packed into their game row and have no ID of their own, this stays 0
     private long tryId;
     private long gameId;
     private char letter;
@@ -0,0 +1,124 @@
+package markus.wieland.hangman.database.models;
+
+import androidx.annotation.NonNull;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Model class representing the aggregated statistics of a day, week or month
+ */
+public class PeriodStatistics {
+
+    /**
+     * Length of the periods a time series is rolled up into
+     */
+    public enum Granularity {
+        DAY,
+        WEEK,
+        MONTH;
+
+        /**
+         * Get the first day of the period that contains the date, weeks start on Monday
+         */
+        public LocalDate getPeriodStart(LocalDate date) {
+            switch (this) {
+                case WEEK:
+                    return date.with(DayOfWeek.MONDAY);
+                case MONTH:
+                    return date.withDayOfMonth(1);
+                default:
+                    return date;
+            }
+        }
+
+        /**
+         * Get the first day of the period following the one that starts at the given date
+         */
+        public LocalDate getNextPeriodStart(LocalDate periodStart) {
+            switch (this) {
+                case WEEK:
+                    return periodStart.plusWeeks(1);
+                case MONTH:
+                    return periodStart.plusMonths(1);
+                default:
+                    return periodStart.plusDays(1);
+            }
+        }
+    }
+
+    private final LocalDate periodStart;
+    private final Granularity granularity;
+    private int games;
+    private int wins;
+    private long attemptsSum;
+    private long wrongAttemptsSum;
+
+    public PeriodStatistics(LocalDate periodStart, Granularity granularity) {
+        this.periodStart = periodStart;
+        this.granularity = granularity;
+    }
+
+    // Getters
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getLosses() {
+        return games - wins;
+    }
+
+    public long getAttemptsSum() {
+        return attemptsSum;
+    }
+
+    public long getWrongAttemptsSum() {
+        return wrongAttemptsSum;
+    }
+
+    /**
+     * Get win rate of the period as a percentage
+     */
+    public double getWinRate() {
+        return games == 0 ? 0.0 : (wins * 100.0) / games;
+    }
+
+    public double getAverageWrongAttempts() {
+        return games == 0 ? 0.0 : (double) wrongAttemptsSum / games;
+    }
+
+    /**
+     * Add the statistics of a shorter period, e.g. a day to its week
+     */
+    public void add(int games, int wins, long attemptsSum, long wrongAttemptsSum) {
+        this.games += games;
+        this.wins += wins;
+        this.attemptsSum += attemptsSum;
+        this.wrongAttemptsSum += wrongAttemptsSum;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PeriodStatistics{" +
+                "periodStart=" + periodStart +
+                ", granularity=" + granularity +
+                ", games=" + games +
+                ", wins=" + wins +
+                ", attemptsSum=" + attemptsSum +
+                ", wrongAttemptsSum=" + wrongAttemptsSum +
+                '}';
+    }
+}
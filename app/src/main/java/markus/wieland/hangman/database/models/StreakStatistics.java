@@ -0,0 +1,76 @@
+package markus.wieland.hangman.database.models;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Model class representing the current streak and the longest win and losing streaks
+ */
+public class StreakStatistics {
+
+    private int currentStreak;
+    private boolean currentStreakWin;
+    private int longestWinStreak;
+    private int longestLosingStreak;
+
+    public StreakStatistics() {
+    }
+
+    // Getters
+
+    /**
+     * Get the number of games with the same result up to and including the latest game
+     */
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    /**
+     * Whether the current streak is a win streak, false for a losing streak or no games
+     */
+    public boolean isCurrentStreakWin() {
+        return currentStreakWin;
+    }
+
+    /**
+     * Get the number of wins in a row up to the latest game, 0 if the latest game was lost
+     */
+    public int getCurrentWinStreak() {
+        return currentStreakWin ? currentStreak : 0;
+    }
+
+    public int getLongestWinStreak() {
+        return longestWinStreak;
+    }
+
+    public int getLongestLosingStreak() {
+        return longestLosingStreak;
+    }
+
+    // Setters
+    public void setCurrentStreak(int currentStreak) {
+        this.currentStreak = currentStreak;
+    }
+
+    public void setCurrentStreakWin(boolean currentStreakWin) {
+        this.currentStreakWin = currentStreakWin;
+    }
+
+    public void setLongestWinStreak(int longestWinStreak) {
+        this.longestWinStreak = longestWinStreak;
+    }
+
+    public void setLongestLosingStreak(int longestLosingStreak) {
+        this.longestLosingStreak = longestLosingStreak;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "StreakStatistics{" +
+                "currentStreak=" + currentStreak +
+                ", currentStreakWin=" + currentStreakWin +
+                ", longestWinStreak=" + longestWinStreak +
+                ", longestLosingStreak=" + longestLosingStreak +
+                '}';
+    }
+}
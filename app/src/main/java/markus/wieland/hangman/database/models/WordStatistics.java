@@ -0,0 +1,107 @@
+package markus.wieland.hangman.database.models;
+
+import androidx.annotation.NonNull;
+
+import java.util.Date;
+
+/**
+ * Model class representing the aggregated statistics of a single word
+ */
+public class WordStatistics {
+
+    private String word;
+    private int plays;
+    private int wins;
+    private long totalAttempts;
+    private long wrongAttempts;
+    private long lastPlayed;
+
+    public WordStatistics() {
+    }
+
+    // Getters
+    public String getWord() {
+        return word;
+    }
+
+    public int getPlays() {
+        return plays;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getLosses() {
+        return plays - wins;
+    }
+
+    public long getTotalAttempts() {
+        return totalAttempts;
+    }
+
+    public long getWrongAttempts() {
+        return wrongAttempts;
+    }
+
+    public long getLastPlayed() {
+        return lastPlayed;
+    }
+
+    public Date getLastPlayedDate() {
+        return new Date(lastPlayed);
+    }
+
+    /**
+     * Get win rate of this word as a percentage
+     */
+    public double getWinRate() {
+        return plays == 0 ? 0.0 : (wins * 100.0) / plays;
+    }
+
+    public double getAverageAttempts() {
+        return plays == 0 ? 0.0 : (double) totalAttempts / plays;
+    }
+
+    public double getAverageWrongAttempts() {
+        return plays == 0 ? 0.0 : (double) wrongAttempts / plays;
+    }
+
+    // Setters
+    public void setWord(String word) {
+        this.word = word;
+    }
+
+    public void setPlays(int plays) {
+        this.plays = plays;
+    }
+
+    public void setWins(int wins) {
+        this.wins = wins;
+    }
+
+    public void setTotalAttempts(long totalAttempts) {
+        this.totalAttempts = totalAttempts;
+    }
+
+    public void setWrongAttempts(long wrongAttempts) {
+        this.wrongAttempts = wrongAttempts;
+    }
+
+    public void setLastPlayed(long lastPlayed) {
+        this.lastPlayed = lastPlayed;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "WordStatistics{" +
+                "word='" + word + '\'' +
+                ", plays=" + plays +
+                ", wins=" + wins +
+                ", totalAttempts=" + totalAttempts +
+                ", wrongAttempts=" + wrongAttempts +
+                ", lastPlayed=" + lastPlayed +
+                '}';
+    }
+}
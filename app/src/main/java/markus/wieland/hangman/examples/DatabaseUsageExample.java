@@ -4,10 +4,16 @@ import android.content.Context;
 import android.util.Log;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import markus.wieland.hangman.database.HangmanRepository;
+import markus.wieland.hangman.database.models.DashboardStatistics;
 import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.GameStatistics;
 import markus.wieland.hangman.database.models.LetterTry;
+import markus.wieland.hangman.database.models.WordStatistics;
 import markus.wieland.hangman.utils.GameStatisticsUtil;
 
 /**
@@ -32,15 +38,13 @@ public class DatabaseUsageExample {
     public void exampleViewStatistics() {
         Log.d(TAG, "=== EXAMPLE 1: View Statistics ===");
         
-        int totalGames = repository.getTotalGamesPlayed();
-        int wins = repository.getTotalWins();
-        int losses = repository.getTotalLosses();
-        double winRate = repository.getWinRate();
+        // All statistics come from the single aggregated statistics row
+        GameStatistics statistics = repository.getGameStatistics();
         
-        Log.d(TAG, "Total Games: " + totalGames);
-        Log.d(TAG, "Wins: " + wins);
-        Log.d(TAG, "Losses: " + losses);
-        Log.d(TAG, "Win Rate: " + String.format("%.1f%%", winRate));
+        Log.d(TAG, "Total Games: " + statistics.getGamesPlayed());
+        Log.d(TAG, "Wins: " + statistics.getWins());
+        Log.d(TAG, "Losses: " + statistics.getLosses());
+        Log.d(TAG, "Win Rate: " + String.format("%.1f%%", statistics.getWinRate()));
         
         // Or use the utility method
         statsUtil.printStatistics();
@@ -161,28 +165,15 @@ public class DatabaseUsageExample {
     public void exampleCompareCustomVsRandom() {
         Log.d(TAG, "=== EXAMPLE 7: Custom vs Random Words ===");
         
-        List<GameHistory> allGames = repository.getAllGameHistory();
+        // Read from the maintained breakdown statistics, no game is loaded
+        DashboardStatistics dashboard = repository.getDashboardStatistics();
+        DashboardStatistics.Group custom = dashboard.getCustomWords();
+        DashboardStatistics.Group random = dashboard.getRandomWords();
         
-        int customGames = 0, customWins = 0;
-        int randomGames = 0, randomWins = 0;
-        
-        for (GameHistory game : allGames) {
-            if (game.isCustomWord()) {
-                customGames++;
-                if (game.isWin()) customWins++;
-            } else {
-                randomGames++;
-                if (game.isWin()) randomWins++;
-            }
-        }
-        
-        double customWinRate = customGames > 0 ? (customWins * 100.0 / customGames) : 0;
-        double randomWinRate = randomGames > 0 ? (randomWins * 100.0 / randomGames) : 0;
-        
-        Log.d(TAG, "Custom words: " + customGames + " games, " + 
-              String.format("%.1f%% win rate", customWinRate));
-        Log.d(TAG, "Random words: " + randomGames + " games, " + 
-              String.format("%.1f%% win rate", randomWinRate));
+        Log.d(TAG, "Custom words: " + custom.getGames() + " games, " + 
+              String.format("%.1f%% win rate", custom.getWinRate()));
+        Log.d(TAG, "Random words: " + random.getGames() + " games, " + 
+              String.format("%.1f%% win rate", random.getWinRate()));
     }
 
     /**
@@ -191,20 +182,18 @@ public class DatabaseUsageExample {
     public void exampleFindMostDifficultWords() {
         Log.d(TAG, "=== EXAMPLE 8: Most Difficult Words ===");
         
-        List<GameHistory> allGames = repository.getAllGameHistory();
-        
-        // Sort by total attempts (descending)
-        allGames.sort((g1, g2) -> Integer.compare(g2.getTotalAttempts(), g1.getTotalAttempts()));
+        // Reads only the top 5 rows of the per-word statistics
+        List<WordStatistics> hardestWords = repository.getHardestWords(5);
         
         Log.d(TAG, "Top 5 most difficult words:");
-        for (int i = 0; i < Math.min(5, allGames.size()); i++) {
-            GameHistory game = allGames.get(i);
-            Log.d(TAG, String.format("%d. %s - %d attempts, %d wrong (%s)",
+        for (int i = 0; i < hardestWords.size(); i++) {
+            WordStatistics word = hardestWords.get(i);
+            Log.d(TAG, String.format("%d. %s - %.1f wrong attempts per game, %d games, %.1f%% won",
                     i + 1,
-                    game.getWord(),
-                    game.getTotalAttempts(),
-                    game.getWrongAttempts(),
-                    game.isWin() ? "Won" : "Lost"));
+                    word.getWord(),
+                    word.getAverageWrongAttempts(),
+                    word.getPlays(),
+                    word.getWinRate()));
         }
     }
 
@@ -214,26 +203,24 @@ public class DatabaseUsageExample {
     public void exampleCalculateAverages() {
         Log.d(TAG, "=== EXAMPLE 9: Average Statistics ===");
         
-        List<GameHistory> allGames = repository.getAllGameHistory();
+        // Averages, the wrong attempt distribution and the win rate by word length come from one read
+        DashboardStatistics dashboard = repository.getDashboardStatistics();
+        DashboardStatistics.Group total = dashboard.getTotal();
         
-        if (allGames.isEmpty()) {
+        if (total.getGames() == 0) {
             Log.d(TAG, "No games played yet");
             return;
         }
         
-        int totalAttempts = 0;
-        int totalWrongAttempts = 0;
+        Log.d(TAG, String.format("Average attempts per game: %.1f", total.getAverageAttempts()));
+        Log.d(TAG, String.format("Average wrong attempts per game: %.1f", total.getAverageWrongAttempts()));
         
-        for (GameHistory game : allGames) {
-            totalAttempts += game.getTotalAttempts();
-            totalWrongAttempts += game.getWrongAttempts();
+        for (Map.Entry<Integer, DashboardStatistics.Group> entry : dashboard.getByWrongAttempts().entrySet()) {
+            Log.d(TAG, String.format("%d wrong attempts: %d games", entry.getKey(), entry.getValue().getGames()));
+        }
+        for (Map.Entry<Integer, DashboardStatistics.Group> entry : dashboard.getByWordLength().entrySet()) {
+            Log.d(TAG, String.format("%d letters: %.1f%% win rate", entry.getKey(), entry.getValue().getWinRate()));
         }
-        
-        double avgAttempts = (double) totalAttempts / allGames.size();
-        double avgWrongAttempts = (double) totalWrongAttempts / allGames.size();
-        
-        Log.d(TAG, String.format("Average attempts per game: %.1f", avgAttempts));
-        Log.d(TAG, String.format("Average wrong attempts per game: %.1f", avgWrongAttempts));
     }
 
     /**
@@ -250,6 +237,29 @@ public class DatabaseUsageExample {
         }
     }
 
+    /**
+     * Example 11: Analyze the whole history in memory
+     */
+    public void exampleAnalyzeInMemory() {
+        Log.d(TAG, "=== EXAMPLE 11: In-Memory Analytics ===");
+
+        long weekAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7);
+        repository.queryProjection(projection -> {
+            // Every statistic is a loop over primitive columns, large ones can use parallel streams
+            double recentWinRate = projection.getWinRate(weekAgo, Long.MAX_VALUE);
+            long flawlessCustomWins = IntStream.range(0, projection.size())
+                    .parallel()
+                    .filter(i -> projection.isCustomWord(i) && projection.isWin(i) && projection.getWrongAttempts(i) == 0)
+                    .count();
+
+            Log.d(TAG, String.format("%d games, %d distinct words, %d KB of columns",
+                    projection.size(), projection.getWordCount(), projection.getColumnBytes() / 1024));
+            Log.d(TAG, String.format("Win rate of the last 7 days: %.1f%%", recentWinRate));
+            Log.d(TAG, "Custom words won without a wrong guess: " + flawlessCustomWins);
+            return null;
+        });
+    }
+
     /**
      * Run all examples (for testing)
      */
@@ -271,6 +281,7 @@ public class DatabaseUsageExample {
             exampleCompareCustomVsRandom();
             exampleFindMostDifficultWords();
             exampleCalculateAverages();
+            exampleAnalyzeInMemory();
         }
     }
 }
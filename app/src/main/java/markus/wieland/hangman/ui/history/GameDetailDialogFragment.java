@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.Locale;
 
 import markus.wieland.hangman.R;
+import markus.wieland.hangman.database.DatabaseCallScope;
 import markus.wieland.hangman.database.HangmanRepository;
 import markus.wieland.hangman.database.models.GameHistory;
 import markus.wieland.hangman.database.models.LetterTry;
@@ -74,10 +75,10 @@ public class GameDetailDialogFragment extends DialogFragment {
         LetterTryAdapter adapter = new LetterTryAdapter();
         recyclerView.setAdapter(adapter);
 
-        // Load game data
-        GameHistory game = repository.getCompleteGameHistory(gameId);
-        
-        if (game != null) {
+        // Load game data in the background, the result is dropped if the view is gone by then
+        DatabaseCallScope calls = new DatabaseCallScope(getViewLifecycleOwner());
+        calls.deliver(repository.getCompleteGameHistoryAsync(gameId), game -> {
+            if (game == null) return;
             SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM dd, yyyy 'at' HH:mm", Locale.getDefault());
             
             tvWord.setText(game.getWord());
@@ -95,7 +96,7 @@ public class GameDetailDialogFragment extends DialogFragment {
 
             // Load letter tries
             adapter.setLetterTries(game.getLetterTries());
-        }
+        });
 
         // Close button
         btnClose.setOnClickListener(v -> dismiss());
@@ -1,34 +1,130 @@
 package markus.wieland.hangman.ui.history;
 
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import markus.wieland.hangman.R;
+import markus.wieland.hangman.database.DatabaseCallScope;
+import markus.wieland.hangman.database.GameHistoryObserver;
 import markus.wieland.hangman.database.HangmanRepository;
 import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.GameHistoryFilter;
+import markus.wieland.hangman.database.models.PeriodStatistics;
+import markus.wieland.hangman.utils.GameStatisticsUtil;
 
 /**
  * Activity to display game history
  */
 public class GameHistoryActivity extends AppCompatActivity implements GameHistoryAdapter.OnGameClickListener {
 
+    // Search waits for a pause in typing, the filter buttons cycle through their options when tapped
+    private static final long SEARCH_DELAY_MS = 250;
+    private static final String[] RESULT_FILTERS = {"All results", "Wins", "Losses"};
+    private static final String[] WORD_TYPE_FILTERS = {"All words", "Custom words", "Random words"};
+    private static final String[] PERIOD_FILTERS = {"Any time", "Last 7 days", "Last 30 days"};
+    private static final int[] PERIOD_DAYS = {0, 7, 30};
+    private static final int MENU_DELETE_SELECTED = 1;
+    private static final int MENU_CLEAR_HISTORY = 2;
+
     private RecyclerView recyclerView;
     private GameHistoryAdapter adapter;
+    private GameHistoryPager pager;
     private HangmanRepository repository;
+    private DatabaseCallScope calls;
     private TextView tvTotalGames;
     private TextView tvWins;
     private TextView tvLosses;
     private TextView tvWinRate;
+    private TextView tvStreaks;
     private TextView tvEmptyState;
+    private TextView tvChartTitle;
+    private StatisticsChartView chartView;
+    private PeriodStatistics.Granularity chartGranularity = PeriodStatistics.Granularity.DAY;
+    private Handler mainHandler;
+
+    // Search and filters
+    private EditText etSearch;
+    private TextView tvFilterResult;
+    private TextView tvFilterWordType;
+    private TextView tvFilterPeriod;
+    private int resultFilter;
+    private int wordTypeFilter;
+    private int periodFilter;
+    private boolean isFiltered;
+    private final Runnable applyFilterRunnable = this::applyFilter;
+
+    // Long-pressing a game starts the selection, taps then select further games until the mode ends
+    private ActionMode selectionMode;
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            menu.add(Menu.NONE, MENU_DELETE_SELECTED, Menu.NONE, "Delete")
+                    .setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == MENU_DELETE_SELECTED) {
+                confirmDeleteSelected();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            adapter.clearSelection();
+        }
+    };
+
+    // The list applies change events itself, the statistics and the chart are refreshed once per burst of changes
+    private final Runnable refreshStatisticsRunnable = () -> {
+        if (isDestroyed()) return;
+        updateStatistics();
+        loadChart();
+    };
+    private final GameHistoryObserver statisticsObserver = new GameHistoryObserver() {
+        @Override
+        public void onGamesInserted(List<GameHistory> games) {
+            scheduleStatisticsRefresh();
+        }
+
+        @Override
+        public void onGamesDeleted(long[] gameIds) {
+            scheduleStatisticsRefresh();
+        }
+
+        @Override
+        public void onHistoryCleared() {
+            scheduleStatisticsRefresh();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,63 +143,279 @@ public class GameHistoryActivity extends AppCompatActivity implements GameHistor
 
         // Initialize repository
         repository = HangmanRepository.getInstance(this);
+        // Queries run in the background, their results are dropped once the activity is destroyed
+        calls = new DatabaseCallScope(this);
 
         // Initialize views
         tvTotalGames = findViewById(R.id.tv_total_games);
         tvWins = findViewById(R.id.tv_wins);
         tvLosses = findViewById(R.id.tv_losses);
         tvWinRate = findViewById(R.id.tv_win_rate);
+        tvStreaks = findViewById(R.id.tv_streaks);
         tvEmptyState = findViewById(R.id.tv_empty_state);
         recyclerView = findViewById(R.id.recycler_view_history);
+        tvChartTitle = findViewById(R.id.tv_chart_title);
+        chartView = findViewById(R.id.chart_statistics);
+        etSearch = findViewById(R.id.et_search);
+        tvFilterResult = findViewById(R.id.tv_filter_result);
+        tvFilterWordType = findViewById(R.id.tv_filter_word_type);
+        tvFilterPeriod = findViewById(R.id.tv_filter_period);
+
+        // Tapping the chart switches between days, weeks and months
+        mainHandler = new Handler(Looper.getMainLooper());
+        chartView.setOnClickListener(v -> {
+            PeriodStatistics.Granularity[] granularities = PeriodStatistics.Granularity.values();
+            chartGranularity = granularities[(chartGranularity.ordinal() + 1) % granularities.length];
+            loadChart();
+        });
 
         // Setup RecyclerView
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         adapter = new GameHistoryAdapter(this);
         recyclerView.setAdapter(adapter);
 
+        // Load the history page by page in the background
+        pager = new GameHistoryPager(repository, adapter, new GameHistoryItem.Factory(this), layoutManager,
+                this::onFirstPageLoaded);
+        recyclerView.addOnScrollListener(pager);
+
+        setupSearch();
+        repository.registerObserver(statisticsObserver);
+
+        // Tapping the statistics opens the dashboard, debug builds show the query latencies on a long press
+        View statsCard = findViewById(R.id.statsCard);
+        statsCard.setOnClickListener(v -> StatisticsDashboardDialogFragment.newInstance()
+                .show(getSupportFragmentManager(), "StatisticsDashboard"));
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            statsCard.setOnLongClickListener(v -> {
+                showQueryMetrics();
+                return true;
+            });
+        }
+
         // Load data
         loadGameHistory();
         updateStatistics();
+        loadChart();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mainHandler.removeCallbacks(applyFilterRunnable);
+        repository.unregisterObserver(statisticsObserver);
+        mainHandler.removeCallbacks(refreshStatisticsRunnable);
+        pager.release();
+        super.onDestroy();
     }
 
     private void loadGameHistory() {
-        List<GameHistory> games = repository.getAllGameHistory();
-        
-        if (games.isEmpty()) {
+        pager.loadFirstPage();
+    }
+
+    private void setupSearch() {
+        // Typing restarts the delay, so the history is only queried once the user pauses
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mainHandler.removeCallbacks(applyFilterRunnable);
+                mainHandler.postDelayed(applyFilterRunnable, SEARCH_DELAY_MS);
+            }
+        });
+        tvFilterResult.setOnClickListener(v -> {
+            resultFilter = (resultFilter + 1) % RESULT_FILTERS.length;
+            applyFilter();
+        });
+        tvFilterWordType.setOnClickListener(v -> {
+            wordTypeFilter = (wordTypeFilter + 1) % WORD_TYPE_FILTERS.length;
+            applyFilter();
+        });
+        tvFilterPeriod.setOnClickListener(v -> {
+            periodFilter = (periodFilter + 1) % PERIOD_FILTERS.length;
+            applyFilter();
+        });
+    }
+
+    /**
+     * Reload the list with the current search text and filters
+     */
+    private void applyFilter() {
+        mainHandler.removeCallbacks(applyFilterRunnable);
+        if (selectionMode != null) selectionMode.finish();
+        tvFilterResult.setText(RESULT_FILTERS[resultFilter]);
+        tvFilterWordType.setText(WORD_TYPE_FILTERS[wordTypeFilter]);
+        tvFilterPeriod.setText(PERIOD_FILTERS[periodFilter]);
+
+        GameHistoryFilter filter = new GameHistoryFilter();
+        filter.setText(etSearch.getText().toString());
+        filter.setWin(resultFilter == 0 ? null : resultFilter == 1);
+        filter.setCustomWord(wordTypeFilter == 0 ? null : wordTypeFilter == 1);
+        if (PERIOD_DAYS[periodFilter] > 0) {
+            filter.setFromTimestamp(System.currentTimeMillis() - PERIOD_DAYS[periodFilter] * 24L * 60 * 60 * 1000);
+        }
+        isFiltered = !filter.isEmpty();
+        pager.setFilter(filter);
+    }
+
+    private void onFirstPageLoaded(boolean isEmpty) {
+        tvEmptyState.setText(isFiltered
+                ? "No games match your search."
+                : "No games played yet.\nPlay some games to see your history!");
+        if (isEmpty) {
             tvEmptyState.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
             tvEmptyState.setVisibility(View.GONE);
             recyclerView.setVisibility(View.VISIBLE);
-            adapter.setGames(games);
         }
     }
 
+    /**
+     * Show the query latencies and the slow-query log, they are kept in memory so no query runs
+     */
+    private void showQueryMetrics() {
+        new AlertDialog.Builder(this)
+                .setTitle("Query metrics")
+                .setMessage(new GameStatisticsUtil(this).getQueryMetricsString())
+                .setPositiveButton("Close", null)
+                .setNeutralButton("Reset", (dialog, which) -> repository.getQueryMetrics().reset())
+                .show();
+    }
+
+    private void scheduleStatisticsRefresh() {
+        mainHandler.removeCallbacks(refreshStatisticsRunnable);
+        mainHandler.post(refreshStatisticsRunnable);
+    }
+
     private void updateStatistics() {
-        int total = repository.getTotalGamesPlayed();
-        int wins = repository.getTotalWins();
-        int losses = repository.getTotalLosses();
-        double winRate = repository.getWinRate();
+        calls.deliver(repository.getGameStatisticsAsync(), statistics -> {
+            tvTotalGames.setText(String.valueOf(statistics.getGamesPlayed()));
+            tvWins.setText(String.valueOf(statistics.getWins()));
+            tvLosses.setText(String.valueOf(statistics.getLosses()));
+            tvWinRate.setText(String.format("%.1f%%", statistics.getWinRate()));
+        });
+
+        calls.deliver(repository.getStreakStatisticsAsync(), streaks ->
+                tvStreaks.setText(String.format("Current streak: %d %s  ·  Longest: %d wins, %d losses",
+                        streaks.getCurrentStreak(), streaks.isCurrentStreakWin() ? "wins" : "losses",
+                        streaks.getLongestWinStreak(), streaks.getLongestLosingStreak())));
+    }
+
+    /**
+     * Load the time series of the chart in the background, it reads at most a year of daily rows
+     */
+    private void loadChart() {
+        PeriodStatistics.Granularity granularity = chartGranularity;
+        LocalDate today = LocalDate.now();
+        LocalDate from;
+        String title;
+        switch (granularity) {
+            case WEEK:
+                from = today.minusWeeks(11);
+                title = "Last 12 weeks";
+                break;
+            case MONTH:
+                from = today.minusMonths(11);
+                title = "Last 12 months";
+                break;
+            default:
+                from = today.minusDays(29);
+                title = "Last 30 days";
+                break;
+        }
+        tvChartTitle.setText(title);
 
-        tvTotalGames.setText(String.valueOf(total));
-        tvWins.setText(String.valueOf(wins));
-        tvLosses.setText(String.valueOf(losses));
-        tvWinRate.setText(String.format("%.1f%%", winRate));
+        calls.deliver(repository.getStatisticsOverTimeAsync(from, today, granularity), periods -> {
+            // Ignore results of a granularity the user already switched away from
+            if (granularity != chartGranularity) return;
+            chartView.setPeriods(periods);
+        });
     }
 
     @Override
-    public void onGameClick(GameHistory game) {
+    public void onGameClick(GameHistoryItem game) {
+        if (selectionMode != null) {
+            toggleSelection(game);
+            return;
+        }
         // Open detail dialog
         GameDetailDialogFragment dialog = GameDetailDialogFragment.newInstance(game.getGameId());
         dialog.show(getSupportFragmentManager(), "GameDetail");
     }
 
+    @Override
+    public boolean onGameLongClick(GameHistoryItem game) {
+        if (selectionMode == null) {
+            selectionMode = startSupportActionMode(selectionCallback);
+        }
+        toggleSelection(game);
+        return true;
+    }
+
+    private void toggleSelection(GameHistoryItem game) {
+        adapter.toggleSelection(game);
+        int count = adapter.getSelectedCount();
+        if (count == 0) {
+            selectionMode.finish();
+        } else {
+            selectionMode.setTitle(count + " selected");
+        }
+    }
+
+    /**
+     * Delete the selected games in the background, the list and the statistics follow the change events.
+     * The delete is not bound to the activity, leaving it right away must not skip the delete.
+     */
+    private void confirmDeleteSelected() {
+        long[] gameIds = adapter.getSelectedGameIds();
+        new AlertDialog.Builder(this)
+                .setTitle("Delete games")
+                .setMessage("Delete " + gameIds.length + (gameIds.length == 1 ? " game" : " games") + " from the history?")
+                .setPositiveButton("Delete", (dialog, which) -> {
+                    repository.deleteGamesAsync(gameIds);
+                    if (selectionMode != null) selectionMode.finish();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void confirmClearHistory() {
+        new AlertDialog.Builder(this)
+                .setTitle("Clear history")
+                .setMessage("Delete all games and reset all statistics? Unlocked achievements are kept.")
+                .setPositiveButton("Clear", (dialog, which) -> {
+                    repository.deleteAllGameHistoryAsync();
+                    if (selectionMode != null) selectionMode.finish();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_CLEAR_HISTORY, Menu.NONE, "Clear history")
+                .setShowAsAction(MenuItem.SHOW_AS_ACTION_NEVER);
+        return true;
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             finish();
             return true;
         }
+        if (item.getItemId() == MENU_CLEAR_HISTORY) {
+            confirmClearHistory();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 }
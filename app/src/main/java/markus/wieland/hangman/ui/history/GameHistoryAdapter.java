@@ -6,38 +6,206 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
+import com.google.android.material.card.MaterialCardView;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
 
 import markus.wieland.hangman.R;
-import markus.wieland.hangman.database.models.GameHistory;
 
 /**
- * RecyclerView adapter for displaying game history
+ * RecyclerView adapter for displaying game history.
+ * Every change submits the new list to an {@link AsyncListDiffer}, which computes the row
+ * changes on a background thread and dispatches them as fine-grained notifications.
+ * The methods below read and change the latest submitted list, so a caller sees its own
+ * changes at once even while the displayed list still catches up.
+ * Games can be selected for bulk actions, the selection is kept by game ID so it survives paging.
  */
 public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.GameHistoryViewHolder> {
 
-    private List<GameHistory> games;
+    private final AsyncListDiffer<GameHistoryItem> differ;
     private final OnGameClickListener listener;
-    private final SimpleDateFormat dateFormat;
+    // Latest submitted list, the differ keeps its own copy of the displayed one
+    private final List<GameHistoryItem> games;
+    private final Set<Long> selectedGameIds = new LinkedHashSet<>();
 
     public interface OnGameClickListener {
-        void onGameClick(GameHistory game);
+        void onGameClick(GameHistoryItem game);
+
+        /**
+         * Called when a game is long-pressed
+         * @return True if the long click was consumed
+         */
+        boolean onGameLongClick(GameHistoryItem game);
     }
 
     public GameHistoryAdapter(OnGameClickListener listener) {
+        this.differ = new AsyncListDiffer<>(this, GameHistoryItem.DIFF_CALLBACK);
         this.games = new ArrayList<>();
         this.listener = listener;
-        this.dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
     }
 
-    public void setGames(List<GameHistory> games) {
-        this.games = games;
-        notifyDataSetChanged();
+    public void setGames(List<GameHistoryItem> games) {
+        this.games.clear();
+        this.games.addAll(games);
+        submit();
+    }
+
+    /**
+     * Add a page of older games at the end of the list
+     */
+    public void appendGames(List<GameHistoryItem> page) {
+        games.addAll(page);
+        submit();
+    }
+
+    /**
+     * Add a page of newer games at the start of the list
+     */
+    public void prependGames(List<GameHistoryItem> page) {
+        games.addAll(0, page);
+        submit();
+    }
+
+    /**
+     * Remove the given amount of games from the start of the list
+     */
+    public void removeFromStart(int count) {
+        games.subList(0, count).clear();
+        submit();
+    }
+
+    /**
+     * Remove the given amount of games from the end of the list
+     */
+    public void removeFromEnd(int count) {
+        games.subList(games.size() - count, games.size()).clear();
+        submit();
+    }
+
+    /**
+     * Insert games, e.g. the ones that were just saved, with a single list update
+     * @param positions Position of every game, counting the games of this call inserted before it
+     * @param items The games in the same order
+     */
+    public void insertGames(int[] positions, List<GameHistoryItem> items) {
+        if (positions.length == 0) return;
+        for (int i = 0; i < positions.length; i++) {
+            games.add(positions[i], items.get(i));
+        }
+        submit();
+    }
+
+    /**
+     * Remove the loaded games among the given ones, e.g. the ones that were just deleted, with a single list update
+     * @return Position of every removed game in list order, counting the games removed before it
+     */
+    public int[] removeGames(long[] gameIds) {
+        Set<Long> removedIds = new HashSet<>(gameIds.length * 2);
+        for (long gameId : gameIds) {
+            removedIds.add(gameId);
+        }
+
+        int[] positions = new int[Math.min(removedIds.size(), games.size())];
+        int removed = 0;
+        int target = 0;
+        for (int source = 0; source < games.size(); source++) {
+            GameHistoryItem game = games.get(source);
+            if (removedIds.contains(game.getGameId())) {
+                selectedGameIds.remove(game.getGameId());
+                positions[removed++] = target;
+            } else {
+                games.set(target++, game);
+            }
+        }
+        if (removed == 0) return new int[0];
+
+        games.subList(target, games.size()).clear();
+        submit();
+        return Arrays.copyOf(positions, removed);
+    }
+
+    /**
+     * Select a game or remove it from the selection
+     * @return True if the game is selected afterwards
+     */
+    public boolean toggleSelection(GameHistoryItem game) {
+        boolean selected = selectedGameIds.add(game.getGameId());
+        if (!selected) selectedGameIds.remove(game.getGameId());
+        notifyGameChanged(game.getGameId());
+        return selected;
+    }
+
+    public void clearSelection() {
+        if (selectedGameIds.isEmpty()) return;
+        selectedGameIds.clear();
+        notifyItemRangeChanged(0, getItemCount());
+    }
+
+    /**
+     * Get the IDs of the selected games in the order they were selected
+     */
+    public long[] getSelectedGameIds() {
+        long[] ids = new long[selectedGameIds.size()];
+        int i = 0;
+        for (long id : selectedGameIds) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    public int getSelectedCount() {
+        return selectedGameIds.size();
+    }
+
+    private void notifyGameChanged(long gameId) {
+        List<GameHistoryItem> displayed = differ.getCurrentList();
+        for (int i = 0; i < displayed.size(); i++) {
+            if (displayed.get(i).getGameId() == gameId) {
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the position of a game in the list, or -1 if it is not loaded
+     */
+    public int indexOfGame(long gameId) {
+        for (int i = 0; i < games.size(); i++) {
+            if (games.get(i).getGameId() == gameId) return i;
+        }
+        return -1;
+    }
+
+    public GameHistoryItem getGame(int position) {
+        return games.get(position);
+    }
+
+    /**
+     * Get the number of games in the latest submitted list
+     */
+    public int getGameCount() {
+        return games.size();
+    }
+
+    public GameHistoryItem getFirstGame() {
+        return games.isEmpty() ? null : games.get(0);
+    }
+
+    public GameHistoryItem getLastGame() {
+        return games.isEmpty() ? null : games.get(games.size() - 1);
+    }
+
+    private void submit() {
+        differ.submitList(new ArrayList<>(games));
     }
 
     @NonNull
@@ -45,21 +213,38 @@ public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.
     public GameHistoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_game_history, parent, false);
-        return new GameHistoryViewHolder(view);
+        GameHistoryViewHolder holder = new GameHistoryViewHolder(view);
+
+        // One listener per view holder, it looks up the game of the row when tapped
+        view.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                listener.onGameClick(differ.getCurrentList().get(position));
+            }
+        });
+        view.setOnLongClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            return position != RecyclerView.NO_POSITION
+                    && listener.onGameLongClick(differ.getCurrentList().get(position));
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull GameHistoryViewHolder holder, int position) {
-        GameHistory game = games.get(position);
-        holder.bind(game, dateFormat, listener);
+        GameHistoryItem game = differ.getCurrentList().get(position);
+        holder.bind(game, selectedGameIds.contains(game.getGameId()));
     }
 
     @Override
     public int getItemCount() {
-        return games.size();
+        return differ.getCurrentList().size();
     }
 
     static class GameHistoryViewHolder extends RecyclerView.ViewHolder {
+        private final MaterialCardView card;
+        private final int backgroundColor;
+        private final int selectedBackgroundColor;
         private final TextView tvWord;
         private final TextView tvResult;
         private final TextView tvAttempts;
@@ -68,6 +253,9 @@ public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.
 
         public GameHistoryViewHolder(@NonNull View itemView) {
             super(itemView);
+            card = (MaterialCardView) itemView;
+            backgroundColor = itemView.getContext().getColor(R.color.hangman_field_background_night);
+            selectedBackgroundColor = itemView.getContext().getColor(R.color.teal_700);
             tvWord = itemView.findViewById(R.id.tv_game_word);
             tvResult = itemView.findViewById(R.id.tv_game_result);
             tvAttempts = itemView.findViewById(R.id.tv_game_attempts);
@@ -75,25 +263,14 @@ public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.
             resultIndicator = itemView.findViewById(R.id.view_result_indicator);
         }
 
-        public void bind(GameHistory game, SimpleDateFormat dateFormat, OnGameClickListener listener) {
+        public void bind(GameHistoryItem game, boolean selected) {
+            card.setCardBackgroundColor(selected ? selectedBackgroundColor : backgroundColor);
             tvWord.setText(game.getWord());
-            tvResult.setText(game.isWin() ? "WIN" : "LOSS");
-            tvAttempts.setText(String.format(Locale.getDefault(), 
-                "%d attempts (%d wrong)", 
-                game.getTotalAttempts(), 
-                game.getWrongAttempts()));
-            tvDate.setText(dateFormat.format(game.getDate()));
-
-            // Set result color
-            int color = game.isWin() 
-                ? itemView.getContext().getColor(R.color.hangman_used_correct)
-                : itemView.getContext().getColor(R.color.hangman_used_wrong);
-            
-            resultIndicator.setBackgroundColor(color);
-            tvResult.setTextColor(color);
-
-            // Set click listener
-            itemView.setOnClickListener(v -> listener.onGameClick(game));
+            tvResult.setText(game.getResultText());
+            tvAttempts.setText(game.getAttemptsText());
+            tvDate.setText(game.getDateText());
+            resultIndicator.setBackgroundColor(game.getResultColor());
+            tvResult.setTextColor(game.getResultColor());
         }
     }
 }
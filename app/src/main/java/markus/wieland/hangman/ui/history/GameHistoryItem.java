@@ -0,0 +1,123 @@
+package markus.wieland.hangman.ui.history;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import markus.wieland.hangman.R;
+import markus.wieland.hangman.database.models.GameHistory;
+
+/**
+ * Immutable display model of one row of the history list.
+ * All texts and the result colour are computed when the item is created on the loading thread,
+ * binding a row only sets them on its views.
+ */
+public final class GameHistoryItem {
+
+    /**
+     * Two items are the same game if their IDs match, the content of a game never changes
+     */
+    static final DiffUtil.ItemCallback<GameHistoryItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<GameHistoryItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull GameHistoryItem oldItem, @NonNull GameHistoryItem newItem) {
+            return oldItem.gameId == newItem.gameId;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull GameHistoryItem oldItem, @NonNull GameHistoryItem newItem) {
+            return oldItem.timestamp == newItem.timestamp
+                    && oldItem.resultColor == newItem.resultColor
+                    && oldItem.word.equals(newItem.word)
+                    && oldItem.attemptsText.equals(newItem.attemptsText)
+                    && oldItem.dateText.equals(newItem.dateText);
+        }
+    };
+
+    private final long gameId;
+    private final long timestamp;
+    private final String word;
+    private final String resultText;
+    private final String attemptsText;
+    private final String dateText;
+    private final int resultColor;
+
+    private GameHistoryItem(long gameId, long timestamp, String word, String resultText,
+                            String attemptsText, String dateText, int resultColor) {
+        this.gameId = gameId;
+        this.timestamp = timestamp;
+        this.word = word;
+        this.resultText = resultText;
+        this.attemptsText = attemptsText;
+        this.dateText = dateText;
+        this.resultColor = resultColor;
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Get the timestamp of the game, together with the game ID the position of the row in the history
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public String getResultText() {
+        return resultText;
+    }
+
+    public String getAttemptsText() {
+        return attemptsText;
+    }
+
+    public String getDateText() {
+        return dateText;
+    }
+
+    public int getResultColor() {
+        return resultColor;
+    }
+
+    /**
+     * Creates items from games, safe to use from any thread.
+     * Colours and the date format are resolved once when the factory is created.
+     */
+    public static class Factory {
+
+        private final DateTimeFormatter dateFormatter;
+        private final ZoneId zone;
+        private final Locale locale;
+        private final int winColor;
+        private final int lossColor;
+
+        public Factory(Context context) {
+            this.locale = Locale.getDefault();
+            this.dateFormatter = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm", locale);
+            this.zone = ZoneId.systemDefault();
+            this.winColor = context.getColor(R.color.hangman_used_correct);
+            this.lossColor = context.getColor(R.color.hangman_used_wrong);
+        }
+
+        public GameHistoryItem create(GameHistory game) {
+            return new GameHistoryItem(
+                    game.getGameId(),
+                    game.getTimestamp(),
+                    game.getWord(),
+                    game.isWin() ? "WIN" : "LOSS",
+                    String.format(locale, "%d attempts (%d wrong)", game.getTotalAttempts(), game.getWrongAttempts()),
+                    dateFormatter.format(Instant.ofEpochMilli(game.getTimestamp()).atZone(zone)),
+                    game.isWin() ? winColor : lossColor);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package markus.wieland.hangman.ui.history;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import markus.wieland.hangman.database.GameHistoryObserver;
+import markus.wieland.hangman.database.HangmanRepository;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.GameHistoryFilter;
+
+/**
+ * Loads the game history page by page on a background thread while the list is scrolled.
+ * Only a window of MAX_PAGES pages is kept in the adapter, pages that scroll too far out
+ * of view are dropped and loaded again from the database when the user scrolls back.
+ *
+ * Saved and deleted games are applied to the loaded window from the change events of the
+ * repository, so a new game shows up without loading the history again.
+ *
+ * When scrolling stops, the complete games of the rows on screen and of the next rows in scroll
+ * direction are prefetched into the game cache with one query, so the detail dialog of a tapped
+ * row opens without a query. Starting to scroll again cancels a prefetch that has not run yet.
+ */
+public class GameHistoryPager extends RecyclerView.OnScrollListener implements GameHistoryObserver {
+
+    static final int PAGE_SIZE = 50;
+    static final int MAX_PAGES = 5;
+    static final int PREFETCH_DISTANCE = 20;
+    // Rows beyond the visible ones whose complete games are prefetched in scroll direction
+    static final int TRIES_PREFETCH_AHEAD = 8;
+
+    // Order of the list
+    private static final Comparator<GameHistoryItem> NEWEST_FIRST = (first, second) ->
+            first.getTimestamp() != second.getTimestamp()
+                    ? Long.compare(second.getTimestamp(), first.getTimestamp())
+                    : Long.compare(second.getGameId(), first.getGameId());
+
+    /**
+     * Called when the first page is loaded and whenever a change event empties or fills the list
+     */
+    public interface OnFirstPageLoadedListener {
+        void onFirstPageLoaded(boolean isEmpty);
+    }
+
+    private final HangmanRepository repository;
+    private final GameHistoryAdapter adapter;
+    private final GameHistoryItem.Factory itemFactory;
+    private final LinearLayoutManager layoutManager;
+    private final OnFirstPageLoadedListener listener;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    // Sizes of the pages currently held by the adapter, oldest page last
+    private final ArrayDeque<Integer> pageSizes;
+    private boolean isLoading;
+    private boolean hasOlderPages;
+    private boolean hasNewerPages;
+    private boolean isReleased;
+    private GameHistoryFilter filter;
+    // Incremented when the filter changes, so pages loaded for an older filter are discarded
+    private int generation;
+    private CompletableFuture<Integer> pendingPrefetch;
+    // Direction of the last scroll, 1 towards older games and -1 towards newer ones
+    private int scrollDirection = 1;
+
+    public GameHistoryPager(HangmanRepository repository, GameHistoryAdapter adapter, GameHistoryItem.Factory itemFactory,
+                            LinearLayoutManager layoutManager, OnFirstPageLoadedListener listener) {
+        this.repository = repository;
+        this.adapter = adapter;
+        this.itemFactory = itemFactory;
+        this.layoutManager = layoutManager;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.pageSizes = new ArrayDeque<>();
+        this.hasOlderPages = true;
+        this.hasNewerPages = false;
+        repository.registerObserver(this);
+    }
+
+    /**
+     * Show only the games matching the filter, starting again with the newest page
+     * @param filter Games to show, null for all games
+     */
+    public void setFilter(GameHistoryFilter filter) {
+        this.filter = filter;
+        generation++;
+        pageSizes.clear();
+        hasOlderPages = true;
+        hasNewerPages = false;
+        adapter.setGames(new ArrayList<>());
+        loadFirstPage();
+    }
+
+    /**
+     * Load the newest page of the history
+     */
+    public void loadFirstPage() {
+        isLoading = true;
+        GameHistoryFilter pageFilter = filter;
+        int pageGeneration = generation;
+        executor.execute(() -> {
+            List<GameHistoryItem> page = toItems(
+                    repository.searchGameHistoryPageBefore(pageFilter, Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE));
+            mainHandler.post(() -> {
+                if (isReleased || pageGeneration != generation) return;
+                isLoading = false;
+                hasOlderPages = page.size() == PAGE_SIZE;
+                if (!page.isEmpty()) {
+                    pageSizes.addLast(page.size());
+                    adapter.setGames(page);
+                }
+                listener.onFirstPageLoaded(page.isEmpty());
+            });
+        });
+    }
+
+    /**
+     * Stop loading pages, results of pending loads are discarded
+     */
+    public void release() {
+        isReleased = true;
+        cancelPrefetch();
+        repository.unregisterObserver(this);
+        executor.shutdownNow();
+    }
+
+    // Change events arrive on the thread that wrote them and are applied on the main thread.
+    // All of them pass through the loading thread, so they are applied in the order they were written.
+
+    @Override
+    public void onGamesInserted(List<GameHistory> games) {
+        // The display models are created on the loading thread, behind any page that is already loading
+        deliver(() -> {
+            List<GameHistoryItem> items = toItems(games);
+            mainHandler.post(() -> applyInserted(games, items));
+        });
+    }
+
+    @Override
+    public void onGamesDeleted(long[] gameIds) {
+        deliver(() -> mainHandler.post(() -> applyDeleted(gameIds)));
+    }
+
+    @Override
+    public void onHistoryCleared() {
+        deliver(() -> mainHandler.post(this::applyCleared));
+    }
+
+    private void deliver(Runnable event) {
+        try {
+            executor.execute(event);
+        } catch (RejectedExecutionException e) {
+            // Released while the event was delivered
+        }
+    }
+
+    private void applyInserted(List<GameHistory> games, List<GameHistoryItem> items) {
+        if (isReleased) return;
+        // A page in flight may or may not contain the games, and a large import is cheaper to reload
+        if (isLoading || games.size() > PAGE_SIZE) {
+            setFilter(filter);
+            return;
+        }
+
+        List<GameHistoryItem> matching = new ArrayList<>(items.size());
+        for (int i = 0; i < games.size(); i++) {
+            if (filter == null || filter.matches(games.get(i))) matching.add(items.get(i));
+        }
+        // Newest first, so every game lands after the ones inserted before it and the positions are found in the unchanged list
+        Collections.sort(matching, NEWEST_FIRST);
+
+        int[] positions = new int[matching.size()];
+        List<GameHistoryItem> inserted = new ArrayList<>(matching.size());
+        for (GameHistoryItem item : matching) {
+            int position = findInsertPosition(item);
+            if (position == -1) continue;
+            positions[inserted.size()] = position + inserted.size();
+            inserted.add(item);
+        }
+        if (inserted.isEmpty()) return;
+
+        boolean wasEmpty = adapter.getGameCount() == 0;
+        positions = Arrays.copyOf(positions, inserted.size());
+        adapter.insertGames(positions, inserted);
+        for (int position : positions) {
+            resizePageAt(position, 1);
+        }
+        if (wasEmpty) listener.onFirstPageLoaded(false);
+    }
+
+    private void applyDeleted(long[] gameIds) {
+        if (isReleased) return;
+        if (isLoading) {
+            setFilter(filter);
+            return;
+        }
+
+        boolean wasEmpty = adapter.getGameCount() == 0;
+        for (int position : adapter.removeGames(gameIds)) {
+            resizePageAt(position, -1);
+        }
+        if (wasEmpty || adapter.getGameCount() > 0) return;
+
+        if (hasOlderPages || hasNewerPages) {
+            setFilter(filter);
+        } else {
+            listener.onFirstPageLoaded(true);
+        }
+    }
+
+    private void applyCleared() {
+        if (isReleased) return;
+        generation++;
+        isLoading = false;
+        pageSizes.clear();
+        hasOlderPages = false;
+        hasNewerPages = false;
+        adapter.setGames(new ArrayList<>());
+        listener.onFirstPageLoaded(true);
+    }
+
+    /**
+     * Get the position of a new game in the list sorted newest first,
+     * or -1 if it belongs to a page that is not loaded
+     */
+    private int findInsertPosition(GameHistoryItem game) {
+        int count = adapter.getGameCount();
+        for (int position = 0; position < count; position++) {
+            GameHistoryItem other = adapter.getGame(position);
+            boolean isNewer = game.getTimestamp() > other.getTimestamp()
+                    || (game.getTimestamp() == other.getTimestamp() && game.getGameId() > other.getGameId());
+            if (!isNewer) continue;
+            return position == 0 && hasNewerPages ? -1 : position;
+        }
+        return hasOlderPages ? -1 : count;
+    }
+
+    private List<GameHistoryItem> toItems(List<GameHistory> games) {
+        List<GameHistoryItem> items = new ArrayList<>(games.size());
+        for (GameHistory game : games) {
+            items.add(itemFactory.create(game));
+        }
+        return items;
+    }
+
+    /**
+     * Keep the page sizes in line with the adapter after a single game was inserted or removed
+     */
+    private void resizePageAt(int position, int delta) {
+        if (pageSizes.isEmpty()) {
+            if (delta > 0) pageSizes.addLast(delta);
+            return;
+        }
+
+        Integer[] sizes = pageSizes.toArray(new Integer[0]);
+        int start = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (position < start + sizes[i] || i == sizes.length - 1) {
+                sizes[i] += delta;
+                break;
+            }
+            start += sizes[i];
+        }
+        pageSizes.clear();
+        for (int size : sizes) {
+            if (size > 0) pageSizes.addLast(size);
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (isReleased) return;
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            prefetchVisibleGames();
+        } else if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+            // The rows the prefetch was for are about to leave the screen
+            cancelPrefetch();
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (isReleased) return;
+        if (dy != 0) {
+            scrollDirection = dy > 0 ? 1 : -1;
+        } else if (recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+            // Called without a scroll after a layout changed the visible rows, e.g. when the first page arrived
+            prefetchVisibleGames();
+        }
+        if (isLoading) return;
+
+        if (dy > 0 && hasOlderPages
+                && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+            loadOlderPage();
+        } else if (dy < 0 && hasNewerPages
+                && layoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+            loadNewerPage();
+        }
+    }
+
+    /**
+     * Prefetch the complete games of the visible rows and the next rows in scroll direction,
+     * replacing a prefetch that has not run yet
+     */
+    private void prefetchVisibleGames() {
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return;
+
+        if (scrollDirection > 0) {
+            last += TRIES_PREFETCH_AHEAD;
+        } else {
+            first -= TRIES_PREFETCH_AHEAD;
+        }
+        first = Math.max(first, 0);
+        last = Math.min(last, adapter.getGameCount() - 1);
+        int count = Math.min(last - first + 1, HangmanRepository.PREFETCH_LIMIT);
+        if (count <= 0) return;
+
+        // Rows nearest to the screen first, so they are kept if the range is cut to the limit
+        long[] gameIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            int position = scrollDirection > 0 ? first + i : last - i;
+            gameIds[i] = adapter.getGame(position).getGameId();
+        }
+        cancelPrefetch();
+        pendingPrefetch = repository.prefetchCompleteGamesAsync(gameIds);
+    }
+
+    private void cancelPrefetch() {
+        if (pendingPrefetch != null) {
+            pendingPrefetch.cancel(false);
+            pendingPrefetch = null;
+        }
+    }
+
+    private void loadOlderPage() {
+        GameHistoryItem last = adapter.getLastGame();
+        if (last == null) return;
+
+        isLoading = true;
+        long timestamp = last.getTimestamp();
+        long gameId = last.getGameId();
+        GameHistoryFilter pageFilter = filter;
+        int pageGeneration = generation;
+        executor.execute(() -> {
+            List<GameHistoryItem> page = toItems(repository.searchGameHistoryPageBefore(pageFilter, timestamp, gameId, PAGE_SIZE));
+            mainHandler.post(() -> {
+                if (isReleased || pageGeneration != generation) return;
+                isLoading = false;
+                hasOlderPages = page.size() == PAGE_SIZE;
+                if (page.isEmpty()) return;
+
+                adapter.appendGames(page);
+                pageSizes.addLast(page.size());
+                if (pageSizes.size() > MAX_PAGES) {
+                    adapter.removeFromStart(pageSizes.removeFirst());
+                    hasNewerPages = true;
+                }
+            });
+        });
+    }
+
+    private void loadNewerPage() {
+        GameHistoryItem first = adapter.getFirstGame();
+        if (first == null) return;
+
+        isLoading = true;
+        long timestamp = first.getTimestamp();
+        long gameId = first.getGameId();
+        GameHistoryFilter pageFilter = filter;
+        int pageGeneration = generation;
+        executor.execute(() -> {
+            List<GameHistoryItem> page = toItems(repository.searchGameHistoryPageAfter(pageFilter, timestamp, gameId, PAGE_SIZE));
+            mainHandler.post(() -> {
+                if (isReleased || pageGeneration != generation) return;
+                isLoading = false;
+                hasNewerPages = page.size() == PAGE_SIZE;
+                if (page.isEmpty()) return;
+
+                adapter.prependGames(page);
+                pageSizes.addFirst(page.size());
+                if (pageSizes.size() > MAX_PAGES) {
+                    adapter.removeFromEnd(pageSizes.removeLast());
+                    hasOlderPages = true;
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package markus.wieland.hangman.ui.history;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import markus.wieland.hangman.R;
+import markus.wieland.hangman.database.models.PeriodStatistics;
+
+/**
+ * Simple chart of a statistics time series: one bar per period for the number of games
+ * and a line for the win rate of the periods with games.
+ */
+public class StatisticsChartView extends View {
+
+    private static final float BAR_GAP_RATIO = 0.2f;
+    private static final float LINE_WIDTH_DP = 2f;
+    private static final float TEXT_SIZE_SP = 10f;
+
+    private final Paint barPaint;
+    private final Paint winRatePaint;
+    private final Paint textPaint;
+    private List<PeriodStatistics> periods;
+    private int maxGames;
+
+    public StatisticsChartView(Context context) {
+        this(context, null);
+    }
+
+    public StatisticsChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        float scaledDensity = getResources().getDisplayMetrics().scaledDensity;
+
+        barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        barPaint.setColor(context.getColor(R.color.white));
+        barPaint.setAlpha(80);
+
+        winRatePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        winRatePaint.setColor(context.getColor(R.color.hangman_used_correct));
+        winRatePaint.setStrokeWidth(LINE_WIDTH_DP * density);
+
+        textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setColor(context.getColor(R.color.white));
+        textPaint.setTextSize(TEXT_SIZE_SP * scaledDensity);
+
+        periods = new ArrayList<>();
+    }
+
+    /**
+     * Show a new time series, oldest period first
+     */
+    public void setPeriods(List<PeriodStatistics> periods) {
+        this.periods = periods;
+        maxGames = 0;
+        for (PeriodStatistics period : periods) {
+            maxGames = Math.max(maxGames, period.getGames());
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (periods.isEmpty() || maxGames == 0) return;
+
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float width = getWidth() - left - getPaddingRight();
+        float height = getHeight() - top - getPaddingBottom();
+        float slot = width / periods.size();
+        float gap = slot * BAR_GAP_RATIO;
+
+        float previousX = -1;
+        float previousY = -1;
+        for (int i = 0; i < periods.size(); i++) {
+            PeriodStatistics period = periods.get(i);
+            float x = left + i * slot;
+            if (period.getGames() == 0) continue;
+
+            float barHeight = height * period.getGames() / maxGames;
+            canvas.drawRect(x + gap / 2, top + height - barHeight, x + slot - gap / 2, top + height, barPaint);
+
+            // Periods without games have no win rate, the line connects the neighbouring periods
+            float centerX = x + slot / 2;
+            float winRateY = top + height - (float) (height * period.getWinRate() / 100.0);
+            if (previousX >= 0) {
+                canvas.drawLine(previousX, previousY, centerX, winRateY, winRatePaint);
+            }
+            previousX = centerX;
+            previousY = winRateY;
+        }
+
+        canvas.drawText(String.valueOf(maxGames), left, top + textPaint.getTextSize(), textPaint);
+    }
+}
@@ -0,0 +1,138 @@
+package markus.wieland.hangman.ui.history;
+
+import android.app.Dialog;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.DialogFragment;
+
+import java.util.Locale;
+import java.util.Map;
+
+import markus.wieland.hangman.R;
+import markus.wieland.hangman.database.DatabaseCallScope;
+import markus.wieland.hangman.database.HangmanRepository;
+import markus.wieland.hangman.database.models.Achievement;
+import markus.wieland.hangman.database.models.DashboardStatistics;
+
+/**
+ * Dialog fragment showing the statistics dashboard: average attempts, custom against random words,
+ * the distribution of wrong attempts, the win rate by word length and the achievements
+ */
+public class StatisticsDashboardDialogFragment extends DialogFragment {
+
+    private static final int BAR_WIDTH = 16;
+
+    private HangmanRepository repository;
+
+    public static StatisticsDashboardDialogFragment newInstance() {
+        return new StatisticsDashboardDialogFragment();
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        repository = HangmanRepository.getInstance(requireContext());
+        setStyle(DialogFragment.STYLE_NORMAL, R.style.Theme_Hangman);
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.dialog_statistics_dashboard, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        TextView tvAverageAttempts = view.findViewById(R.id.tv_dashboard_average_attempts);
+        TextView tvAverageWrongAttempts = view.findViewById(R.id.tv_dashboard_average_wrong_attempts);
+        TextView tvWordType = view.findViewById(R.id.tv_dashboard_word_type);
+        TextView tvWrongAttempts = view.findViewById(R.id.tv_dashboard_wrong_attempts);
+        TextView tvWordLength = view.findViewById(R.id.tv_dashboard_word_length);
+        TextView tvAchievements = view.findViewById(R.id.tv_dashboard_achievements);
+        view.findViewById(R.id.btn_close).setOnClickListener(v -> dismiss());
+
+        // Load in the background, the result is dropped if the view is gone by then
+        DatabaseCallScope calls = new DatabaseCallScope(getViewLifecycleOwner());
+        calls.deliver(repository.getDashboardStatisticsAsync(), statistics -> {
+            DashboardStatistics.Group total = statistics.getTotal();
+            tvAverageAttempts.setText(String.format(Locale.getDefault(), "%.1f", total.getAverageAttempts()));
+            tvAverageWrongAttempts.setText(String.format(Locale.getDefault(), "%.1f", total.getAverageWrongAttempts()));
+
+            tvWordType.setText(formatGroup("Custom", statistics.getCustomWords()) + "\n"
+                    + formatGroup("Random", statistics.getRandomWords()));
+
+            // Bars are scaled to the most common number of wrong attempts
+            int maxGames = 0;
+            for (DashboardStatistics.Group group : statistics.getByWrongAttempts().values()) {
+                maxGames = Math.max(maxGames, group.getGames());
+            }
+            StringBuilder distribution = new StringBuilder();
+            for (Map.Entry<Integer, DashboardStatistics.Group> entry : statistics.getByWrongAttempts().entrySet()) {
+                int games = entry.getValue().getGames();
+                appendLine(distribution, String.format(Locale.getDefault(), "%2d wrong %-" + BAR_WIDTH + "s %d",
+                        entry.getKey(), bar(games, maxGames), games));
+            }
+            tvWrongAttempts.setText(distribution.length() == 0 ? "No games played yet" : distribution);
+
+            StringBuilder byLength = new StringBuilder();
+            for (Map.Entry<Integer, DashboardStatistics.Group> entry : statistics.getByWordLength().entrySet()) {
+                appendLine(byLength, formatGroup(String.format(Locale.getDefault(), "%2d letters", entry.getKey()),
+                        entry.getValue()));
+            }
+            tvWordLength.setText(byLength.length() == 0 ? "No games played yet" : byLength);
+        });
+        calls.deliver(repository.getAchievementsAsync(), achievements -> {
+            StringBuilder text = new StringBuilder();
+            for (Achievement achievement : achievements) {
+                appendLine(text, String.format(Locale.getDefault(), "%s %-10s %s",
+                        achievement.isUnlocked() ? "✓" : String.format(Locale.getDefault(), "%d/%d",
+                                achievement.getProgress(), achievement.getTarget()),
+                        achievement.getTitle(), achievement.getDescription()));
+            }
+            tvAchievements.setText(text);
+        });
+
+        if (getDialog() != null && getDialog().getWindow() != null) {
+            getDialog().getWindow().setTitle("Statistics Dashboard");
+        }
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        Dialog dialog = getDialog();
+        if (dialog != null && dialog.getWindow() != null) {
+            dialog.getWindow().setLayout(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT
+            );
+        }
+    }
+
+    private static String formatGroup(String label, DashboardStatistics.Group group) {
+        return String.format(Locale.getDefault(), "%-10s %5.1f%% of %d games, %.1f wrong",
+                label, group.getWinRate(), group.getGames(), group.getAverageWrongAttempts());
+    }
+
+    private static String bar(int games, int maxGames) {
+        int length = maxGames == 0 ? 0 : Math.max(1, Math.round((float) games * BAR_WIDTH / maxGames));
+        StringBuilder bar = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            bar.append('█');
+        }
+        return bar.toString();
+    }
+
+    private static void appendLine(StringBuilder builder, String line) {
+        if (builder.length() > 0) builder.append('\n');
+        builder.append(line);
+    }
+}
@@ -3,16 +3,27 @@ package markus.wieland.hangman.utils;
 import android.content.Context;
 import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.Locale;
 
 import markus.wieland.hangman.database.HangmanRepository;
+import markus.wieland.hangman.database.HistoryFormat;
 import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterStatistics;
 import markus.wieland.hangman.database.models.LetterTry;
 
 /**
- * Utility class for viewing and managing game statistics
+ * Utility class for viewing and managing game statistics.
+ * All methods query synchronously, call them from a background thread.
  */
 public class GameStatisticsUtil {
 
@@ -34,6 +45,68 @@ public class GameStatisticsUtil {
         Log.d(TAG, "=====================================");
     }
 
+    /**
+     * Print queue depth and commit latency of the background writer to logcat
+     */
+    public void printWriteQueueMetrics() {
+        Log.d(TAG, "========== WRITE QUEUE METRICS ==========");
+        Log.d(TAG, repository.getWriteQueueMetrics().toString());
+        Log.d(TAG, "=========================================");
+    }
+
+    /**
+     * Print the latency of every DAO query and the slow-query log to logcat
+     */
+    public void printQueryMetrics() {
+        Log.d(TAG, "========== QUERY METRICS ==========");
+        Log.d(TAG, getQueryMetricsString());
+        Log.d(TAG, "===================================");
+    }
+
+    /**
+     * Get the latency of every DAO query and the slow-query log as text
+     */
+    public String getQueryMetricsString() {
+        StringWriter writer = new StringWriter();
+        try {
+            repository.getQueryMetrics().dump(writer);
+        } catch (IOException e) {
+            // A StringWriter does not throw
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write the latency of every DAO query and the slow-query log to a file
+     * @return true if the file was written
+     */
+    public boolean dumpQueryMetrics(File file) {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            repository.getQueryMetrics().dump(writer);
+            Log.d(TAG, "Dumped query metrics to " + file);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to dump query metrics to " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Print hit rate, average try number and first guess win rate of every letter to logcat
+     */
+    public void printLetterStatistics() {
+        Log.d(TAG, "========== LETTER STATISTICS ==========");
+        for (LetterStatistics letter : repository.getLetterStatistics()) {
+            if (letter.getGuesses() == 0) continue;
+            Log.d(TAG, String.format(Locale.getDefault(),
+                    "%c: %d guesses, %.1f%% correct, avg. try %.1f, first guess %d times (%.1f%% won)",
+                    letter.getLetter(), letter.getGuesses(), letter.getHitRate(),
+                    letter.getAverageTryNumber(), letter.getFirstGuesses(), letter.getFirstGuessWinRate()));
+        }
+        Log.d(TAG, "=======================================");
+    }
+
     /**
      * Print all game history to logcat
      */
@@ -104,6 +177,39 @@ public class GameStatisticsUtil {
         }
     }
 
+    /**
+     * Export all games with their letter tries to a file, e.g. in the app's files directory
+     * @return Number of exported games, -1 if writing failed
+     */
+    public long exportHistory(File file, HistoryFormat format) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long exported = repository.exportHistory(channel, format, null);
+            Log.d(TAG, "Exported " + exported + " games to " + file);
+            return exported;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to export game history to " + file, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Import games from a file written by {@link #exportHistory(File, HistoryFormat)}
+     * @param startOffset 0, or the last logged checkpoint offset to resume an interrupted import
+     * @return Number of imported games, -1 if reading failed
+     */
+    public long importHistory(File file, HistoryFormat format, long startOffset) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long imported = repository.importHistory(channel, format, startOffset, 500, (games, checkpointOffset) ->
+                    Log.d(TAG, "Imported " + games + " games, checkpoint offset " + checkpointOffset));
+            Log.d(TAG, "Imported " + imported + " games from " + file);
+            return imported;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to import game history from " + file, e);
+            return -1;
+        }
+    }
+
     /**
      * Get statistics as formatted string
      */
@@ -0,0 +1,108 @@
+package markus.wieland.hangman.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+import static org.junit.Assert.*;
+
+public class AchievementRuleTest {
+
+    private static final long ALL_LETTERS = (1L << 26) - 1;
+
+    @Test
+    public void counterIsReachedAtItsTarget() {
+        assertFalse(AchievementRule.DEDICATED.isReached(999));
+        assertTrue(AchievementRule.DEDICATED.isReached(1000));
+        assertTrue(AchievementRule.DEDICATED.isReached(1001));
+        assertFalse(AchievementRule.FIRST_WIN.isReached(0));
+        assertTrue(AchievementRule.FIRST_WIN.isReached(1));
+    }
+
+    @Test
+    public void runIsReachedAtItsTarget() {
+        assertFalse(AchievementRule.WIN_STREAK.isReached(9));
+        assertTrue(AchievementRule.WIN_STREAK.isReached(10));
+    }
+
+    @Test
+    public void letterSetIsReachedWithAllBits() {
+        assertFalse(AchievementRule.ALPHABET.isReached(ALL_LETTERS & ~(1L << 25)));
+        assertTrue(AchievementRule.ALPHABET.isReached(ALL_LETTERS));
+        // Larger than the target as a number, but without a single letter
+        assertFalse(AchievementRule.ALPHABET.isReached(1L << 30));
+    }
+
+    @Test
+    public void winsCountForFirstWinAndStreak() {
+        GameHistory win = game(true, 3, false);
+        GameHistory loss = game(false, 10, false);
+
+        assertEquals(1, AchievementRule.FIRST_WIN.getContribution(win, null));
+        assertEquals(0, AchievementRule.FIRST_WIN.getContribution(loss, null));
+        assertNotEquals(0, AchievementRule.WIN_STREAK.getContribution(win, null));
+        assertEquals(0, AchievementRule.WIN_STREAK.getContribution(loss, null));
+    }
+
+    @Test
+    public void flawlessNeedsAWinWithoutWrongGuesses() {
+        assertEquals(1, AchievementRule.FLAWLESS.getContribution(game(true, 0, false), null));
+        assertEquals(0, AchievementRule.FLAWLESS.getContribution(game(true, 1, false), null));
+        assertEquals(0, AchievementRule.FLAWLESS.getContribution(game(false, 0, false), null));
+    }
+
+    @Test
+    public void customWordsAndGamesPlayed() {
+        assertEquals(1, AchievementRule.CUSTOM_WORDS.getContribution(game(false, 10, true), null));
+        assertEquals(0, AchievementRule.CUSTOM_WORDS.getContribution(game(true, 0, false), null));
+        assertEquals(1, AchievementRule.DEDICATED.getContribution(game(false, 10, false), null));
+    }
+
+    @Test
+    public void alphabetIsTheMaskOfCorrectLetters() {
+        List<LetterTry> tries = Arrays.asList(
+            new LetterTry(0, 'A', true, 0),
+            new LetterTry(0, 'c', true, 1),
+            new LetterTry(0, 'Z', true, 2),
+            new LetterTry(0, 'B', false, 3));
+
+        assertEquals(1L | 1L << 2 | 1L << 25, AchievementRule.ALPHABET.getContribution(game(true, 1, false), tries));
+    }
+
+    @Test
+    public void alphabetIgnoresMissingTriesAndOtherCharacters() {
+        GameHistory game = game(true, 0, false);
+        assertEquals(0, AchievementRule.ALPHABET.getContribution(game, null));
+        assertEquals(0, AchievementRule.ALPHABET.getContribution(game, Collections.<LetterTry>emptyList()));
+        assertEquals(0, AchievementRule.ALPHABET.getContribution(game,
+            Arrays.asList(new LetterTry(0, 'Ä', true, 0), new LetterTry(0, '1', true, 1))));
+    }
+
+    @Test
+    public void everyLetterGuessedReachesTheAlphabet() {
+        List<LetterTry> tries = new ArrayList<>();
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            tries.add(new LetterTry(0, letter, true, letter - 'A'));
+        }
+        long progress = AchievementRule.ALPHABET.getContribution(game(true, 0, false), tries);
+        assertTrue(AchievementRule.ALPHABET.isReached(progress));
+    }
+
+    @Test
+    public void fromIdFindsEveryRule() {
+        for (AchievementRule rule : AchievementRule.values()) {
+            assertSame(rule, AchievementRule.fromId(rule.getId()));
+        }
+        assertNull(AchievementRule.fromId("removed_rule"));
+    }
+
+    private static GameHistory game(boolean win, int wrongAttempts, boolean customWord) {
+        return new GameHistory("APPLE", win, wrongAttempts + 5, wrongAttempts, customWord);
+    }
+}
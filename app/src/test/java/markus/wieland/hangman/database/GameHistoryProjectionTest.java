@@ -0,0 +1,242 @@
+package markus.wieland.hangman.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import markus.wieland.hangman.database.dao.GameRow;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+import static org.junit.Assert.*;
+
+public class GameHistoryProjectionTest {
+
+    private final List<GameHistory> history = new ArrayList<>();
+    private int loads;
+
+    private final GameHistoryProjection projection = new GameHistoryProjection((afterGameId, limit, callback) -> {
+        loads++;
+        int read = 0;
+        for (GameHistory game : history) {
+            if (game.getGameId() <= afterGameId) continue;
+            if (read == limit) break;
+            callback.onGameRow(row(game));
+            read++;
+        }
+        return read;
+    });
+
+    @Test
+    public void loadsTheWholeHistoryPageByPage() {
+        for (int i = 1; i <= 12_000; i++) history.add(game(i, i % 3 == 0 ? "PEAR" : "APPLE", i % 2 == 0, i));
+
+        assertEquals(12_000, (int) projection.query(GameHistoryProjection::size));
+        assertEquals(3, loads);
+        assertEquals(6_000, (int) projection.query(GameHistoryProjection::countWins));
+        assertEquals(2, (int) projection.query(GameHistoryProjection::getWordCount));
+        assertEquals(12_000L, (long) projection.query(p -> p.getGameId(p.size() - 1)));
+
+        // Loaded once, later queries only read the columns
+        projection.query(GameHistoryProjection::size);
+        assertEquals(3, loads);
+    }
+
+    @Test
+    public void eventsBeforeTheLoadAreIgnored() {
+        projection.addGames(Collections.singletonList(game(1, "APPLE", true, 1)));
+        projection.removeGames(new long[]{1});
+        assertEquals(0, (int) projection.query(GameHistoryProjection::size));
+    }
+
+    @Test
+    public void insertsAlreadyReadByTheLoadAreSkipped() {
+        history.add(game(1, "APPLE", true, 1));
+        history.add(game(2, "PEAR", false, 2));
+        projection.query(GameHistoryProjection::size);
+
+        projection.addGames(Arrays.asList(game(2, "PEAR", false, 2), game(3, "PLUM", true, 3)));
+        assertEquals(3, (int) projection.query(GameHistoryProjection::size));
+        assertEquals(2, (int) projection.query(GameHistoryProjection::countWins));
+    }
+
+    @Test
+    public void outOfOrderInsertKeepsTheColumnsSortedByGameId() {
+        history.add(game(1, "APPLE", true, 10));
+        projection.query(GameHistoryProjection::size);
+
+        projection.addGames(Collections.singletonList(game(5, "PLUM", false, 50)));
+        projection.addGames(Collections.singletonList(game(3, "PEAR", true, 30)));
+        projection.addGames(Collections.singletonList(game(3, "PEAR", true, 30)));
+
+        projection.query(p -> {
+            assertEquals(3, p.size());
+            assertEquals(1, p.getGameId(0));
+            assertEquals(3, p.getGameId(1));
+            assertEquals(5, p.getGameId(2));
+            assertEquals(30, p.getTimestamp(1));
+            assertEquals("PEAR", p.getWord(p.getWordId(1)));
+            assertTrue(p.isWin(1));
+            assertFalse(p.isWin(2));
+            assertTrue(p.isCustomWord(1));
+            assertEquals(2, p.getWrongAttempts(1));
+            assertEquals(5, p.getTotalAttempts(1));
+            return null;
+        });
+    }
+
+    @Test
+    public void removeCompactsAllColumns() {
+        for (int i = 1; i <= 5; i++) history.add(game(i, "WORD" + i, i % 2 == 1, i));
+        projection.query(GameHistoryProjection::size);
+
+        projection.removeGames(new long[]{1, 4, 99});
+
+        projection.query(p -> {
+            assertEquals(3, p.size());
+            assertEquals(2, p.getGameId(0));
+            assertEquals(3, p.getGameId(1));
+            assertEquals(5, p.getGameId(2));
+            assertEquals("WORD3", p.getWord(p.getWordId(1)));
+            assertFalse(p.isWin(0));
+            assertTrue(p.isWin(1));
+            assertTrue(p.isWin(2));
+            assertEquals(2, p.countWins());
+            return null;
+        });
+    }
+
+    @Test
+    public void clearEmptiesTheColumnsAndCountsAsLoaded() {
+        history.add(game(1, "APPLE", true, 1));
+        projection.clear();
+
+        assertEquals(0, (int) projection.query(GameHistoryProjection::size));
+        assertEquals(0, (int) projection.query(GameHistoryProjection::getWordCount));
+        assertEquals(0, loads);
+
+        projection.addGames(Collections.singletonList(game(1, "PEAR", false, 2)));
+        assertEquals(1, (int) projection.query(GameHistoryProjection::size));
+    }
+
+    @Test
+    public void winRateOnlyCountsGamesInTheRange() {
+        history.add(game(1, "APPLE", true, 100));
+        history.add(game(2, "APPLE", false, 200));
+        history.add(game(3, "APPLE", true, 300));
+        history.add(game(4, "APPLE", false, 400));
+
+        assertEquals(50.0, projection.query(p -> p.getWinRate(0, 500)), 1e-9);
+        assertEquals(100.0, projection.query(p -> p.getWinRate(100, 200)), 1e-9);
+        assertEquals(50.0, projection.query(p -> p.getWinRate(200, 400)), 1e-9);
+        assertEquals(0.0, projection.query(p -> p.getWinRate(500, 600)), 1e-9);
+    }
+
+    @Test
+    public void playCountsShareOneIdPerWord() {
+        history.add(game(1, "APPLE", true, 1));
+        history.add(game(2, "PEAR", true, 2));
+        history.add(game(3, "APPLE", false, 3));
+
+        projection.query(p -> {
+            assertEquals(p.getWordId(0), p.getWordId(2));
+            int[] counts = p.getPlayCountsByWord();
+            assertEquals(2, counts[p.getWordId(0)]);
+            assertEquals(1, counts[p.getWordId(1)]);
+            return null;
+        });
+    }
+
+    @Test
+    public void eventsDuringTheLoadAreAppliedAfterIt() {
+        history.add(game(1, "APPLE", true, 1));
+        history.add(game(2, "PEAR", true, 2));
+        history.add(game(3, "PLUM", false, 3));
+
+        GameHistoryProjection[] loading = new GameHistoryProjection[1];
+        loading[0] = new GameHistoryProjection((afterGameId, limit, callback) -> {
+            // The writer must not wait for the load, its events are buffered
+            Thread writer = new Thread(() -> {
+                loading[0].addGames(Arrays.asList(game(3, "PLUM", false, 3), game(4, "FIG", true, 4)));
+                loading[0].removeGames(new long[]{1});
+            });
+            writer.start();
+            try {
+                writer.join(5000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertFalse("Writer blocked by the load", writer.isAlive());
+
+            int read = 0;
+            for (GameHistory game : history) {
+                if (game.getGameId() <= afterGameId) continue;
+                callback.onGameRow(row(game));
+                read++;
+            }
+            return read;
+        });
+
+        loading[0].query(p -> {
+            assertEquals(3, p.size());
+            assertEquals(2, p.getGameId(0));
+            assertEquals(3, p.getGameId(1));
+            assertEquals(4, p.getGameId(2));
+            return null;
+        });
+    }
+
+    private static GameHistory game(long gameId, String word, boolean win, long timestamp) {
+        GameHistory game = new GameHistory(word, win, 5, 2, gameId % 2 == 1);
+        game.setGameId(gameId);
+        game.setTimestamp(timestamp);
+        return game;
+    }
+
+    private static GameRow row(GameHistory game) {
+        return new GameRow() {
+            @Override
+            public long getGameId() {
+                return game.getGameId();
+            }
+
+            @Override
+            public String getWord() {
+                return game.getWord();
+            }
+
+            @Override
+            public boolean isWin() {
+                return game.isWin();
+            }
+
+            @Override
+            public int getTotalAttempts() {
+                return game.getTotalAttempts();
+            }
+
+            @Override
+            public int getWrongAttempts() {
+                return game.getWrongAttempts();
+            }
+
+            @Override
+            public long getTimestamp() {
+                return game.getTimestamp();
+            }
+
+            @Override
+            public boolean isCustomWord() {
+                return game.isCustomWord();
+            }
+
+            @Override
+            public List<LetterTry> getLetterTries() {
+                return game.getLetterTries();
+            }
+        };
+    }
+}
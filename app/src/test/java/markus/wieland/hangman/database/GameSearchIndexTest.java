@@ -0,0 +1,59 @@
+package markus.wieland.hangman.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GameSearchIndexTest {
+
+    @Test
+    public void suffixesContainEveryTailOfTheWord() {
+        assertEquals("APPLE PPLE PLE LE E", GameSearchIndex.toSuffixes("Apple"));
+        assertEquals("A", GameSearchIndex.toSuffixes("a"));
+        assertEquals("", GameSearchIndex.toSuffixes(""));
+    }
+
+    @Test
+    public void suffixesIgnoreEverythingButLettersAndDigits() {
+        assertEquals("ICECREAM CECREAM ECREAM CREAM REAM EAM AM M", GameSearchIndex.toSuffixes("ice-cream"));
+    }
+
+    @Test
+    public void substringSearchIsAPrefixQueryOnAnySuffix() {
+        assertEquals("PL*", GameSearchIndex.toMatchQuery("pl", false));
+        assertEquals("^AP*", GameSearchIndex.toMatchQuery("ap", true));
+    }
+
+    @Test
+    public void singleLetterIsAlwaysAPrefixQuery() {
+        assertEquals("^A*", GameSearchIndex.toMatchQuery("a", false));
+    }
+
+    @Test
+    public void textWithoutLettersHasNoQuery() {
+        assertNull(GameSearchIndex.toMatchQuery("", false));
+        assertNull(GameSearchIndex.toMatchQuery(" - ", true));
+    }
+
+    @Test
+    public void matchesAgreesWithTheQuery() {
+        assertTrue(GameSearchIndex.matches("APPLE", "pl", false));
+        assertFalse(GameSearchIndex.matches("APPLE", "pl", true));
+        assertTrue(GameSearchIndex.matches("APPLE", "ap", true));
+        assertTrue(GameSearchIndex.matches("APPLE", "a", false));
+        assertFalse(GameSearchIndex.matches("APPLE", "p", false));
+        assertFalse(GameSearchIndex.matches("APPLE", "lp", false));
+    }
+
+    @Test
+    public void matchesNormalizesWordAndText() {
+        assertTrue(GameSearchIndex.matches("Ice Cream", "E-CR", false));
+        assertTrue(GameSearchIndex.matches("ICECREAM", "ice cr", true));
+    }
+
+    @Test
+    public void emptyTextMatchesEveryWord() {
+        assertTrue(GameSearchIndex.matches("APPLE", "", false));
+        assertTrue(GameSearchIndex.matches("APPLE", "  ", true));
+    }
+}
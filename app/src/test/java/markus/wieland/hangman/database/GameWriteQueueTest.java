@@ -0,0 +1,107 @@
+package markus.wieland.hangman.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+import static org.junit.Assert.*;
+
+public class GameWriteQueueTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    private final GameWriteQueue queue = new GameWriteQueue(batch -> {
+        for (GameWriteQueue.PendingGame pendingGame : batch) {
+            written.add(pendingGame.gameHistory.getWord());
+        }
+    });
+
+    @Test
+    public void flushReturnsOnceEveryQueuedGameIsWritten() {
+        for (int i = 0; i < 100; i++) {
+            queue.enqueue(game("WORD" + i), Collections.<LetterTry>emptyList());
+        }
+        assertTrue(queue.flush(TIMEOUT_MILLIS));
+
+        assertEquals(100, written.size());
+        assertEquals("WORD0", written.get(0));
+        assertEquals("WORD99", written.get(99));
+        assertFalse(queue.hasPendingWrites());
+        assertEquals(100, queue.getMetrics().getCommittedGames());
+    }
+
+    @Test
+    public void tasksRunAfterTheGamesQueuedBeforeThem() {
+        List<Integer> seenByTask = new ArrayList<>();
+        queue.enqueue(game("APPLE"), Collections.<LetterTry>emptyList());
+        queue.enqueue(game("PEAR"), Collections.<LetterTry>emptyList());
+        queue.execute(() -> seenByTask.add(written.size()));
+        queue.enqueue(game("PLUM"), Collections.<LetterTry>emptyList());
+        assertTrue(queue.flush(TIMEOUT_MILLIS));
+
+        assertEquals(Collections.singletonList(2), seenByTask);
+        assertEquals(3, written.size());
+    }
+
+    @Test
+    public void flushTimesOutWhileTheWriterIsBusy() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        queue.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        queue.enqueue(game("APPLE"), Collections.<LetterTry>emptyList());
+
+        assertFalse(queue.flush(50));
+        assertTrue(queue.hasPendingWrites());
+
+        release.countDown();
+        assertTrue(queue.flush(TIMEOUT_MILLIS));
+        assertEquals(Collections.singletonList("APPLE"), written);
+    }
+
+    @Test
+    public void emptyQueueIsFlushedRightAway() {
+        assertFalse(queue.hasPendingWrites());
+        assertTrue(queue.flush(0));
+    }
+
+    @Test
+    public void closeWritesTheQueueAndStopsTheWriter() {
+        Thread[] writer = new Thread[1];
+        queue.execute(() -> writer[0] = Thread.currentThread());
+        for (int i = 0; i < 50; i++) {
+            queue.enqueue(game("WORD" + i), Collections.<LetterTry>emptyList());
+        }
+
+        assertTrue(queue.close(TIMEOUT_MILLIS));
+        assertEquals(50, written.size());
+        assertFalse(writer[0].isAlive());
+    }
+
+    @Test
+    public void closeWithoutWritesReturnsRightAway() {
+        assertTrue(queue.close(0));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void gamesAfterCloseAreRejected() {
+        queue.close(TIMEOUT_MILLIS);
+        queue.enqueue(game("APPLE"), Collections.<LetterTry>emptyList());
+    }
+
+    private static GameHistory game(String word) {
+        return new GameHistory(word, true, 5, 0, false);
+    }
+}
@@ -0,0 +1,132 @@
+package markus.wieland.hangman.database;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Arrays;
+import java.util.List;
+
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the repository against a scratch database on the JVM.
+ * The native SQLite mode provides FTS4, which the search index needs.
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class HangmanRepositoryTest {
+
+    private static final String DATABASE_NAME = "hangman_test.db";
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private Context context;
+    private HangmanRepository repository;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DATABASE_NAME);
+        repository = HangmanRepository.createForDatabase(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void enqueuedGameIsWrittenAfterFlush() {
+        GameHistory game = new GameHistory("APPLE", true, 5, 1, false);
+        List<LetterTry> tries = tries();
+        repository.enqueueGame(game, tries);
+
+        assertTrue(repository.flushPendingWrites(TIMEOUT_MILLIS));
+        assertFalse(repository.hasPendingWrites());
+        assertEquals(1, repository.getTotalGamesPlayed());
+        assertEquals(1, repository.getTotalWins());
+
+        GameHistory saved = repository.getCompleteGameHistory(game.getGameId());
+        assertNotNull(saved);
+        assertEquals("APPLE", saved.getWord());
+        assertEquals(tries.size(), saved.getLetterTries().size());
+        assertEquals('X', saved.getLetterTries().get(1).getLetter());
+        assertFalse(saved.getLetterTries().get(1).isCorrect());
+    }
+
+    @Test
+    public void closeWritesQueuedGamesBeforeClosingTheDatabase() {
+        for (int i = 0; i < 20; i++) {
+            repository.enqueueGame(new GameHistory("APPLE", i % 2 == 0, 5, 1, false), tries());
+        }
+        repository.close();
+
+        repository = HangmanRepository.createForDatabase(context, DATABASE_NAME);
+        assertEquals(20, repository.getTotalGamesPlayed());
+        assertEquals(10, repository.getTotalWins());
+    }
+
+    @Test
+    public void defaultRetentionPolicyIsActive() {
+        assertSame(RetentionPolicy.DEFAULT, repository.getRetentionPolicy());
+    }
+
+    @Test
+    public void retentionPolicyPrunesAfterTheIntervalOfSavedGames() {
+        repository.setRetentionPolicy(RetentionPolicy.keepLastGames(10));
+        GameHistory[] games = new GameHistory[HangmanRepository.RETENTION_INTERVAL_GAMES];
+        for (int i = 0; i < games.length; i++) {
+            games[i] = new GameHistory("APPLE", true, 5, 1, false);
+            games[i].setTimestamp(1_000 + i);
+        }
+
+        for (int i = 0; i < games.length - 1; i++) {
+            repository.enqueueGame(games[i], tries());
+        }
+        assertTrue(repository.flushPendingWrites(TIMEOUT_MILLIS));
+        assertEquals(5, repository.getCompleteGameHistory(games[0].getGameId()).getLetterTries().size());
+
+        repository.enqueueGame(games[games.length - 1], tries());
+        assertTrue(repository.flushPendingWrites(TIMEOUT_MILLIS));
+
+        // Only the newest 10 games keep their tries, the pruned ones are no longer served from the cache
+        for (int i = 0; i < games.length; i++) {
+            int expected = i < games.length - 10 ? 0 : 5;
+            assertEquals("Game " + i, expected, repository.getCompleteGameHistory(games[i].getGameId()).getLetterTries().size());
+        }
+        assertEquals(games.length, repository.getTotalGamesPlayed());
+    }
+
+    @Test
+    public void clearingTheHistoryNeverReusesGameIds() {
+        long lastGameId = 0;
+        for (int i = 0; i < 3; i++) {
+            lastGameId = repository.saveGame(new GameHistory("APPLE", true, 5, 1, false), tries());
+        }
+        repository.deleteAllGameHistory();
+        assertEquals(0, repository.getTotalGamesPlayed());
+
+        long gameId = repository.saveGame(new GameHistory("PEAR", false, 11, 11, false), tries());
+        assertEquals(lastGameId + 1, gameId);
+        assertEquals("PEAR", repository.getCompleteGameHistory(gameId).getWord());
+    }
+
+    private static List<LetterTry> tries() {
+        return Arrays.asList(
+                new LetterTry(0, 'A', true, 0),
+                new LetterTry(0, 'X', false, 1),
+                new LetterTry(0, 'P', true, 2),
+                new LetterTry(0, 'L', true, 3),
+                new LetterTry(0, 'E', true, 4));
+    }
+}
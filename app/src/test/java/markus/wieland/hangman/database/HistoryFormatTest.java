@@ -0,0 +1,151 @@
+package markus.wieland.hangman.database;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import markus.wieland.hangman.database.dao.GameRow;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+import static org.junit.Assert.*;
+
+public class HistoryFormatTest {
+
+    @Test
+    public void csvRoundTripKeepsTheGame() {
+        assertRoundTrip(HistoryFormat.CSV, game("APPLE"));
+    }
+
+    @Test
+    public void jsonLinesRoundTripKeepsTheGame() {
+        assertRoundTrip(HistoryFormat.JSON_LINES, game("APPLE"));
+    }
+
+    @Test
+    public void csvQuotesWordsWithSeparators() {
+        assertRoundTrip(HistoryFormat.CSV, game("SAY \"HI\", BOB"));
+    }
+
+    @Test
+    public void parsedTriesUseZeroBasedOrderLikeTheCodec() {
+        GameHistory parsed = HistoryFormat.CSV.parseGame(HistoryFormat.CSV.formatGame(row(game("APPLE"))));
+        List<LetterTry> decoded = LetterTryCodec.decode(0, LetterTryCodec.encode(parsed.getLetterTries()));
+        for (int i = 0; i < parsed.getLetterTries().size(); i++) {
+            assertEquals(i, parsed.getLetterTries().get(i).getTryOrder());
+            assertEquals(decoded.get(i).getTryOrder(), parsed.getLetterTries().get(i).getTryOrder());
+        }
+    }
+
+    @Test
+    public void gameWithoutTriesHasAnEmptyField() {
+        GameHistory game = game("PEAR");
+        game.setLetterTries(Arrays.<LetterTry>asList());
+        assertRoundTrip(HistoryFormat.CSV, game);
+        assertRoundTrip(HistoryFormat.JSON_LINES, game);
+    }
+
+    @Test
+    public void headerIsOnlyWrittenForCsv() {
+        assertTrue(HistoryFormat.CSV.getHeader().startsWith("game_id,"));
+        assertNull(HistoryFormat.JSON_LINES.getHeader());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lettersOutsideAToZAreRejectedWhileParsing() {
+        HistoryFormat.CSV.parseGame("1,APPLE,1,2,0,1000,0,A+1-");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownResultIsRejected() {
+        HistoryFormat.CSV.parseGame("1,APPLE,1,2,0,1000,0,A+P?");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingFieldsAreRejected() {
+        HistoryFormat.CSV.parseGame("1,APPLE,1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedJsonIsRejected() {
+        HistoryFormat.JSON_LINES.parseGame("{\"word\": \"APPLE\"");
+    }
+
+    private static void assertRoundTrip(HistoryFormat format, GameHistory game) {
+        String line = format.formatGame(row(game));
+        assertFalse(line.contains("\n"));
+        GameHistory parsed = format.parseGame(line);
+
+        assertEquals(game.getWord(), parsed.getWord());
+        assertEquals(game.isWin(), parsed.isWin());
+        assertEquals(game.getTotalAttempts(), parsed.getTotalAttempts());
+        assertEquals(game.getWrongAttempts(), parsed.getWrongAttempts());
+        assertEquals(game.getTimestamp(), parsed.getTimestamp());
+        assertEquals(game.isCustomWord(), parsed.isCustomWord());
+        assertEquals(game.getLetterTries().size(), parsed.getLetterTries().size());
+        for (int i = 0; i < game.getLetterTries().size(); i++) {
+            LetterTry expected = game.getLetterTries().get(i);
+            LetterTry actual = parsed.getLetterTries().get(i);
+            assertEquals(expected.getLetter(), actual.getLetter());
+            assertEquals(expected.isCorrect(), actual.isCorrect());
+            assertEquals(expected.getTryOrder(), actual.getTryOrder());
+        }
+    }
+
+    private static GameHistory game(String word) {
+        GameHistory game = new GameHistory(word, true, 5, 2, true);
+        game.setGameId(42);
+        game.setTimestamp(1_700_000_000_123L);
+        game.addLetterTry(new LetterTry(0, 'E', true, 0));
+        game.addLetterTry(new LetterTry(0, 'T', false, 1));
+        game.addLetterTry(new LetterTry(0, 'A', true, 2));
+        game.addLetterTry(new LetterTry(0, 'S', false, 3));
+        game.addLetterTry(new LetterTry(0, 'P', true, 4));
+        return game;
+    }
+
+    private static GameRow row(GameHistory game) {
+        return new GameRow() {
+            @Override
+            public long getGameId() {
+                return game.getGameId();
+            }
+
+            @Override
+            public String getWord() {
+                return game.getWord();
+            }
+
+            @Override
+            public boolean isWin() {
+                return game.isWin();
+            }
+
+            @Override
+            public int getTotalAttempts() {
+                return game.getTotalAttempts();
+            }
+
+            @Override
+            public int getWrongAttempts() {
+                return game.getWrongAttempts();
+            }
+
+            @Override
+            public long getTimestamp() {
+                return game.getTimestamp();
+            }
+
+            @Override
+            public boolean isCustomWord() {
+                return game.isCustomWord();
+            }
+
+            @Override
+            public List<LetterTry> getLetterTries() {
+                return game.getLetterTries();
+            }
+        };
+    }
+}
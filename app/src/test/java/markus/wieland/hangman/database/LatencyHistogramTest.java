@@ -0,0 +1,79 @@
+package markus.wieland.hangman.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram("empty");
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getAverageMillis(), DELTA);
+        assertEquals(0.0, histogram.getAverageRows(), DELTA);
+        assertEquals(0.0, histogram.getPercentileMillis(50), DELTA);
+        assertEquals(0.0, histogram.getMaxMillis(), DELTA);
+    }
+
+    @Test
+    public void percentileIsTheUpperBoundOfItsBucket() {
+        LatencyHistogram histogram = new LatencyHistogram("query");
+        for (int i = 0; i < 90; i++) histogram.record(10_000, 1, false);
+        for (int i = 0; i < 10; i++) histogram.record(5_000_000, 1, false);
+
+        // 10 µs lies in [8, 16) µs
+        assertEquals(0.016, histogram.getPercentileMillis(50), DELTA);
+        assertEquals(0.016, histogram.getPercentileMillis(90), DELTA);
+        // 5 ms lies in [4.096, 8.192) ms, the bound is capped at the maximum
+        assertEquals(5.0, histogram.getPercentileMillis(95), DELTA);
+        assertEquals(5.0, histogram.getPercentileMillis(100), DELTA);
+    }
+
+    @Test
+    public void percentileZeroIsTheFirstRecordedBucket() {
+        LatencyHistogram histogram = new LatencyHistogram("query");
+        histogram.record(500, 0, false);
+        histogram.record(3_000_000, 0, false);
+        assertEquals(0.002, histogram.getPercentileMillis(0), DELTA);
+    }
+
+    @Test
+    public void hugeDurationsGoToTheLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram("query");
+        histogram.record(Long.MAX_VALUE / 2, 0, false);
+        assertEquals(histogram.getMaxMillis(), histogram.getPercentileMillis(50), DELTA);
+    }
+
+    @Test
+    public void averagesMaxAndMainThreadCount() {
+        LatencyHistogram histogram = new LatencyHistogram("query");
+        histogram.record(1_000_000, 10, true);
+        histogram.record(3_000_000, 0, false);
+        histogram.record(2_000_000, 5, true);
+
+        assertEquals("query", histogram.getName());
+        assertEquals(3, histogram.getCount());
+        assertEquals(2.0, histogram.getAverageMillis(), DELTA);
+        assertEquals(3.0, histogram.getMaxMillis(), DELTA);
+        assertEquals(5.0, histogram.getAverageRows(), DELTA);
+        assertEquals(2, histogram.getMainThreadCount());
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram("query");
+        histogram.record(1_000_000, 10, true);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMainThreadCount());
+        assertEquals(0.0, histogram.getMaxMillis(), DELTA);
+        assertEquals(0.0, histogram.getPercentileMillis(99), DELTA);
+
+        histogram.record(10_000, 1, false);
+        assertEquals(0.010, histogram.getPercentileMillis(50), DELTA);
+    }
+}
@@ -0,0 +1,74 @@
+package markus.wieland.hangman.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import markus.wieland.hangman.database.models.LetterTry;
+
+import static org.junit.Assert.*;
+
+public class LetterTryCodecTest {
+
+    @Test
+    public void roundTripKeepsLettersResultsAndOrder() {
+        List<LetterTry> tries = Arrays.asList(
+                new LetterTry(0, 'E', true, 0),
+                new LetterTry(0, 'T', false, 1),
+                new LetterTry(0, 'Z', true, 2),
+                new LetterTry(0, 'A', false, 3));
+
+        List<LetterTry> decoded = LetterTryCodec.decode(7, LetterTryCodec.encode(tries));
+
+        assertEquals(tries.size(), decoded.size());
+        for (int i = 0; i < tries.size(); i++) {
+            assertEquals(7, decoded.get(i).getGameId());
+            assertEquals(tries.get(i).getLetter(), decoded.get(i).getLetter());
+            assertEquals(tries.get(i).isCorrect(), decoded.get(i).isCorrect());
+            assertEquals(i, decoded.get(i).getTryOrder());
+        }
+    }
+
+    @Test
+    public void paddingOfEveryLengthDecodesToNoExtraTry() {
+        // 6 bits per try, so the unused bits of the last byte vary with the length
+        List<LetterTry> tries = new ArrayList<>();
+        for (int length = 0; length <= 26; length++) {
+            byte[] sequence = LetterTryCodec.encode(tries);
+            assertEquals((length * 6 + 7) / 8, sequence.length);
+            assertEquals(length, LetterTryCodec.countTries(sequence));
+            assertEquals(length, LetterTryCodec.decode(0, sequence).size());
+            tries.add(new LetterTry(0, (char) ('A' + length % 26), length % 2 == 0, length));
+        }
+    }
+
+    @Test
+    public void fullGameFitsIntoTwentyBytes() {
+        List<LetterTry> tries = new ArrayList<>();
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            tries.add(new LetterTry(0, letter, true, letter - 'A'));
+        }
+        assertEquals(20, LetterTryCodec.encode(tries).length);
+    }
+
+    @Test
+    public void lowerCaseLettersAreStoredUpperCase() {
+        List<LetterTry> decoded = LetterTryCodec.decode(0,
+                LetterTryCodec.encode(Collections.singletonList(new LetterTry(0, 'q', false, 0))));
+        assertEquals('Q', decoded.get(0).getLetter());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lettersOutsideAToZAreRejected() {
+        LetterTryCodec.encode(Collections.singletonList(new LetterTry(0, 'Ä', true, 0)));
+    }
+
+    @Test
+    public void nullSequenceHasNoTries() {
+        assertEquals(0, LetterTryCodec.countTries(null));
+        assertTrue(LetterTryCodec.decode(0, null).isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package markus.wieland.hangman.database.models;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class PeriodStatisticsTest {
+
+    // A Wednesday
+    private static final LocalDate DATE = LocalDate.of(2024, 2, 28);
+
+    @Test
+    public void periodStartIsTheDayTheMondayOrTheFirstOfTheMonth() {
+        assertEquals(DATE, PeriodStatistics.Granularity.DAY.getPeriodStart(DATE));
+        assertEquals(LocalDate.of(2024, 2, 26), PeriodStatistics.Granularity.WEEK.getPeriodStart(DATE));
+        assertEquals(LocalDate.of(2024, 2, 1), PeriodStatistics.Granularity.MONTH.getPeriodStart(DATE));
+    }
+
+    @Test
+    public void weeksStartOnMondayAcrossMonthsAndYears() {
+        // Sunday, the week started in the previous year
+        assertEquals(LocalDate.of(2024, 12, 30),
+                PeriodStatistics.Granularity.WEEK.getPeriodStart(LocalDate.of(2025, 1, 5)));
+        LocalDate monday = LocalDate.of(2025, 1, 6);
+        assertEquals(monday, PeriodStatistics.Granularity.WEEK.getPeriodStart(monday));
+    }
+
+    @Test
+    public void nextPeriodStartFollowsWithoutGaps() {
+        assertEquals(LocalDate.of(2024, 2, 29), PeriodStatistics.Granularity.DAY.getNextPeriodStart(DATE));
+        assertEquals(LocalDate.of(2024, 3, 4),
+                PeriodStatistics.Granularity.WEEK.getNextPeriodStart(LocalDate.of(2024, 2, 26)));
+        assertEquals(LocalDate.of(2024, 3, 1),
+                PeriodStatistics.Granularity.MONTH.getNextPeriodStart(LocalDate.of(2024, 2, 1)));
+    }
+
+    @Test
+    public void everyDayBelongsToExactlyOnePeriod() {
+        for (PeriodStatistics.Granularity granularity : PeriodStatistics.Granularity.values()) {
+            LocalDate start = granularity.getPeriodStart(LocalDate.of(2023, 12, 1));
+            for (int i = 0; i < 120; i++) {
+                LocalDate next = granularity.getNextPeriodStart(start);
+                for (LocalDate day = start; day.isBefore(next); day = day.plusDays(1)) {
+                    assertEquals(granularity + " " + day, start, granularity.getPeriodStart(day));
+                }
+                start = next;
+            }
+        }
+    }
+
+    @Test
+    public void addSumsShorterPeriods() {
+        PeriodStatistics week = new PeriodStatistics(LocalDate.of(2024, 2, 26), PeriodStatistics.Granularity.WEEK);
+        week.add(3, 2, 30, 6);
+        week.add(1, 0, 15, 11);
+        assertEquals(4, week.getGames());
+        assertEquals(2, week.getWins());
+        assertEquals(2, week.getLosses());
+        assertEquals(50.0, week.getWinRate(), 0.001);
+        assertEquals(17 / 4.0, week.getAverageWrongAttempts(), 0.001);
+    }
+
+    @Test
+    public void emptyPeriodHasNoRates() {
+        PeriodStatistics day = new PeriodStatistics(DATE, PeriodStatistics.Granularity.DAY);
+        assertEquals(0.0, day.getWinRate(), 0.0);
+        assertEquals(0.0, day.getAverageWrongAttempts(), 0.0);
+    }
+}
@@ -0,0 +1,497 @@
+package markus.wieland.hangman.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import markus.wieland.hangman.database.HangmanRepository;
+import markus.wieland.hangman.database.HistoryFormat;
+import markus.wieland.hangman.database.RetentionPolicy;
+import markus.wieland.hangman.database.dao.GameRow;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.GameHistoryFilter;
+import markus.wieland.hangman.database.models.LetterTry;
+import markus.wieland.hangman.database.models.PeriodStatistics;
+
+/**
+ * Measures the write throughput of the repository in rows per second, and how the latency of
+ * the repository methods scales with the size of the history.
+ * Every game is a single row, its letter tries are packed into it.
+ * Runs against a separate scratch database, the real game history is never touched.
+ * Runs for minutes, never call it from the app; {@link PersistenceBenchmarkTest} runs it on the JVM.
+ */
+public class PersistenceBenchmark {
+
+    private static final String TAG = "PersistenceBenchmark";
+    private static final String DATABASE_NAME = "hangman_benchmark.db";
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final int MAX_SINGLE_SAVES = 1000;
+    private static final long SEED = 42;
+
+    // History sizes of the scaling benchmark
+    public static final int[] DEFAULT_SCALES = {1_000, 100_000, 1_000_000};
+    // Each method is timed this often per size, the median is reported
+    private static final int SCALING_REPETITIONS = 5;
+    private static final int PAGE_SIZE = 50;
+    // Methods that build the whole history as objects are skipped above this size
+    private static final int MAX_MATERIALIZED_GAMES = 100_000;
+    // Time growing faster than n^1.2 between two sizes counts as super-linear
+    private static final double SUPER_LINEAR_EXPONENT = 1.2;
+    // Below this both sizes are dominated by noise and fixed costs, no scaling is derived
+    private static final double MIN_SCALING_MILLIS = 1.0;
+    // Games per timed bulk delete and per timed history import
+    private static final int BULK_GAMES = 100;
+    // Oldest games whose tries each timed retention run prunes in addition to the previous runs
+    private static final int RETENTION_STEP_GAMES = 100;
+    // Clearing the history is timed once per size, it empties the history for the next size
+    private static final String CLEAR_OPERATION = "deleteAllGameHistory";
+    private static final long CLEAR_FLUSH_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * Result of a single benchmark run
+     */
+    public static class Result {
+        private final String name;
+        private final int games;
+        private final long rows;
+        private final long durationNanos;
+
+        Result(String name, int games, long rows, long durationNanos) {
+            this.name = name;
+            this.games = games;
+            this.rows = rows;
+            this.durationNanos = durationNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public double getDurationMillis() {
+            return durationNanos / 1_000_000.0;
+        }
+
+        public double getRowsPerSecond() {
+            return durationNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / durationNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format("%s: %d games, %d rows in %.1f ms (%.0f rows/s)",
+                    name, games, rows, getDurationMillis(), getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Median latency of one repository method at every history size
+     */
+    public static class ScalingResult {
+        private final String name;
+        private final int[] scales;
+        private final double[] medianMillis;
+
+        ScalingResult(String name, int[] scales) {
+            this.name = name;
+            this.scales = scales;
+            this.medianMillis = new double[scales.length];
+            Arrays.fill(medianMillis, Double.NaN);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the median latency at the history size of the given index, NaN if it was skipped
+         */
+        public double getMedianMillis(int scaleIndex) {
+            return medianMillis[scaleIndex];
+        }
+
+        /**
+         * Get the largest growth exponent k between two consecutive sizes, where time grows like n^k.
+         * About 0 for index lookups, 1 for scans of the whole history.
+         * @return The exponent, NaN if no two consecutive sizes took long enough to compare
+         */
+        public double getScalingExponent() {
+            double exponent = Double.NaN;
+            for (int i = 1; i < scales.length; i++) {
+                double before = medianMillis[i - 1];
+                double after = medianMillis[i];
+                if (Double.isNaN(before) || Double.isNaN(after) || after < MIN_SCALING_MILLIS) continue;
+                double growth = Math.log(after / Math.max(before, 0.001)) / Math.log((double) scales[i] / scales[i - 1]);
+                if (Double.isNaN(exponent) || growth > exponent) exponent = growth;
+            }
+            return exponent;
+        }
+
+        public boolean isSuperLinear() {
+            return getScalingExponent() > SUPER_LINEAR_EXPONENT;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format(Locale.ROOT, "%-34s", name));
+            for (int i = 0; i < scales.length; i++) {
+                builder.append(Double.isNaN(medianMillis[i])
+                        ? String.format(Locale.ROOT, " %7d: skipped   ", scales[i])
+                        : String.format(Locale.ROOT, " %7d: %9.3f ms", scales[i], medianMillis[i]));
+            }
+            double exponent = getScalingExponent();
+            if (!Double.isNaN(exponent)) {
+                builder.append(String.format(Locale.ROOT, "  n^%.2f", exponent));
+            }
+            if (isSuperLinear()) builder.append("  SUPER-LINEAR");
+            return builder.toString();
+        }
+    }
+
+    /**
+     * One timed call of a repository method
+     */
+    private interface Operation {
+        void run(HangmanRepository repository, Workload workload) throws IOException;
+    }
+
+    /**
+     * The games the timed calls pick from, so reads and deletes always hit games that exist
+     */
+    private static class Workload {
+        private final Random random = new Random(SEED);
+        // IDs of the games in the history, deleted ones are swapped out
+        private long[] gameIds = new long[0];
+        private int gameCount;
+        // Oldest games pruned by the timed retention runs so far, over all sizes
+        private int prunedGames;
+
+        void collectGameIds(HangmanRepository repository) {
+            gameIds = new long[Math.max(repository.getTotalGamesPlayed(), 1)];
+            gameCount = 0;
+            repository.forEachGame(row -> {
+                if (gameCount == gameIds.length) gameIds = Arrays.copyOf(gameIds, gameCount * 2);
+                gameIds[gameCount++] = row.getGameId();
+            });
+        }
+
+        int getGameCount() {
+            return gameCount;
+        }
+
+        long randomGameId() {
+            return gameIds[random.nextInt(gameCount)];
+        }
+
+        /**
+         * Pick a game and forget it, for a timed delete
+         */
+        long takeGameId() {
+            int index = random.nextInt(gameCount);
+            long gameId = gameIds[index];
+            gameIds[index] = gameIds[--gameCount];
+            return gameId;
+        }
+    }
+
+    private final Context context;
+
+    public PersistenceBenchmark(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Compare saving games one by one with the batched bulk import and log the results
+     * @param games Number of games to import, the one by one run is capped at 1000 games
+     * @return The results of both runs
+     */
+    public List<Result> runInsertBenchmark(int games) {
+        List<Result> results = new ArrayList<>();
+        context.deleteDatabase(DATABASE_NAME);
+        HangmanRepository repository = HangmanRepository.createForDatabase(context, DATABASE_NAME);
+
+        try {
+            SyntheticHistoryGenerator generator = SyntheticHistoryGenerator.fromAssets(context, SEED);
+            List<GameHistory> singleGames = generator.generateList(Math.min(games, MAX_SINGLE_SAVES));
+            long start = System.nanoTime();
+            for (GameHistory game : singleGames) {
+                repository.saveGame(game, game.getLetterTries());
+            }
+            results.add(new Result("saveGame (one transaction per game)",
+                    singleGames.size(), singleGames.size(), System.nanoTime() - start));
+
+            List<GameHistory> importedGames = generator.generateList(games);
+            start = System.nanoTime();
+            repository.importGames(importedGames.iterator(), IMPORT_BATCH_SIZE);
+            results.add(new Result("importGames (batches of " + IMPORT_BATCH_SIZE + ")",
+                    importedGames.size(), importedGames.size(), System.nanoTime() - start));
+        } finally {
+            repository.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+
+        for (Result result : results) {
+            Log.d(TAG, result.toString());
+        }
+        return results;
+    }
+
+    /**
+     * Time the repository methods at the default history sizes, see {@link #runScalingBenchmark(int[])}
+     */
+    public List<ScalingResult> runScalingBenchmark() throws IOException {
+        return runScalingBenchmark(DEFAULT_SCALES);
+    }
+
+    /**
+     * Grow a scratch history to each of the given sizes with generated games and time every
+     * repository method at each size, reporting the median of 5 calls and flagging methods whose
+     * time grows faster than the history. Letter tries are only pruned by the timed retention runs.
+     * Clearing the history is timed once at the end of every size, the next size is filled from zero.
+     * Filling a million games takes a few minutes on a phone.
+     * @param scales History sizes in increasing order
+     * @return One result per method, also logged
+     * @throws IOException if a timed export or import fails
+     */
+    public List<ScalingResult> runScalingBenchmark(int[] scales) throws IOException {
+        SyntheticHistoryGenerator generator = SyntheticHistoryGenerator.fromAssets(context, SEED);
+        // A separate generator, so the imported export does not shift the games of the history
+        byte[] export = formatCsv(SyntheticHistoryGenerator.fromAssets(context, SEED + 1).generateList(BULK_GAMES));
+        Map<String, Operation> operations = scalingOperations(generator.getWord(0), export);
+        Map<String, ScalingResult> results = new LinkedHashMap<>();
+        for (String name : operations.keySet()) {
+            results.put(name, new ScalingResult(name, scales));
+        }
+        results.put(CLEAR_OPERATION, new ScalingResult(CLEAR_OPERATION, scales));
+
+        context.deleteDatabase(DATABASE_NAME);
+        HangmanRepository repository = HangmanRepository.createForDatabase(context, DATABASE_NAME);
+        repository.setRetentionPolicy(null);
+        Workload workload = new Workload();
+
+        try {
+            for (int scale = 0; scale < scales.length; scale++) {
+                generator.fill(repository, scales[scale] - repository.getTotalGamesPlayed());
+                workload.collectGameIds(repository);
+                int games = workload.getGameCount();
+                for (Map.Entry<String, Operation> operation : operations.entrySet()) {
+                    boolean materializes = operation.getKey().startsWith("getAll");
+                    if (materializes && games > MAX_MATERIALIZED_GAMES) continue;
+                    results.get(operation.getKey()).medianMillis[scale] =
+                            timeMedian(operation.getValue(), repository, workload);
+                }
+
+                long start = System.nanoTime();
+                repository.deleteAllGameHistory();
+                results.get(CLEAR_OPERATION).medianMillis[scale] = (System.nanoTime() - start) / 1_000_000.0;
+                // Returning the freed pages runs on the writer thread, it must not overlap the next fill
+                repository.flushPendingWrites(CLEAR_FLUSH_TIMEOUT_MILLIS);
+                workload.prunedGames = 0;
+                Log.d(TAG, "Timed all methods at " + games + " games");
+            }
+        } finally {
+            repository.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+
+        for (ScalingResult result : results.values()) {
+            Log.d(TAG, result.toString());
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * The timed calls by name.
+     * Reads and deletes pick random existing games, which are mostly not cached.
+     * @param export A CSV export of a few games, imported by the timed history import
+     */
+    private static Map<String, Operation> scalingOperations(String popularWord, byte[] export) {
+        GameHistoryFilter winFilter = new GameHistoryFilter();
+        winFilter.setWin(true);
+        GameHistoryFilter textFilter = new GameHistoryFilter();
+        textFilter.setText(popularWord.substring(0, Math.min(3, popularWord.length())));
+        WritableByteChannel discard = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer buffer) {
+                int written = buffer.remaining();
+                buffer.position(buffer.limit());
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("getGameStatistics", (repository, workload) -> repository.getGameStatistics());
+        operations.put("getDashboardStatistics", (repository, workload) -> repository.getDashboardStatistics());
+        operations.put("getStreakStatistics", (repository, workload) -> repository.getStreakStatistics());
+        operations.put("getStatisticsOverTime (30 days)", (repository, workload) -> repository.getStatisticsOverTime(
+                LocalDate.now().minusDays(29), LocalDate.now(), PeriodStatistics.Granularity.DAY));
+        operations.put("getLetterStatistics", (repository, workload) -> repository.getLetterStatistics());
+        operations.put("getBestFirstGuesses", (repository, workload) -> repository.getBestFirstGuesses(5));
+        operations.put("getWordStatistics", (repository, workload) -> repository.getWordStatistics(popularWord));
+        operations.put("getHardestWords", (repository, workload) -> repository.getHardestWords(10));
+        operations.put("getMostPlayedWords", (repository, workload) -> repository.getMostPlayedWords(10));
+        operations.put("getAchievements", (repository, workload) -> repository.getAchievements());
+        operations.put("getTotalGamesPlayed", (repository, workload) -> repository.getTotalGamesPlayed());
+        operations.put("getTotalWins", (repository, workload) -> repository.getTotalWins());
+        operations.put("getWinRate", (repository, workload) -> repository.getWinRate());
+        operations.put("getRecentGameHistory", (repository, workload) ->
+                repository.getRecentGameHistory(PAGE_SIZE));
+        operations.put("getRecentGamesWithTries", (repository, workload) ->
+                repository.getRecentGamesWithTries(PAGE_SIZE));
+        operations.put("getGameHistoryPageBefore", (repository, workload) ->
+                repository.getGameHistoryPageBefore(Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE));
+        operations.put("getGameHistoryPageAfter", (repository, workload) ->
+                repository.getGameHistoryPageAfter(0, 0, PAGE_SIZE));
+        operations.put("searchGameHistoryPageBefore (wins)", (repository, workload) ->
+                repository.searchGameHistoryPageBefore(winFilter, Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE));
+        operations.put("searchGameHistoryPageBefore (text)", (repository, workload) ->
+                repository.searchGameHistoryPageBefore(textFilter, Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE));
+        operations.put("getGameHistoryById", (repository, workload) ->
+                repository.getGameHistoryById(workload.randomGameId()));
+        operations.put("getCompleteGameHistory", (repository, workload) ->
+                repository.getCompleteGameHistory(workload.randomGameId()));
+        operations.put("getLetterTriesByGameId", (repository, workload) ->
+                repository.getLetterTriesByGameId(workload.randomGameId()));
+        operations.put("prefetchCompleteGames", (repository, workload) -> {
+            long[] gameIds = new long[HangmanRepository.PREFETCH_LIMIT];
+            for (int i = 0; i < gameIds.length; i++) {
+                gameIds[i] = workload.randomGameId();
+            }
+            repository.prefetchCompleteGames(gameIds);
+        });
+        operations.put("getGamesByWord", (repository, workload) -> repository.getGamesByWord(popularWord));
+        operations.put("queryProjection (win rate)", (repository, workload) ->
+                repository.queryProjection(projection -> projection.getWinRate(Long.MIN_VALUE, Long.MAX_VALUE)));
+        operations.put("forEachGame", (repository, workload) -> repository.forEachGame(row -> { }));
+        operations.put("exportHistory (CSV)", (repository, workload) ->
+                repository.exportHistory(discard, HistoryFormat.CSV, null));
+        operations.put("getAllGameHistory", (repository, workload) -> repository.getAllGameHistory());
+        operations.put("getAllGamesWithTries", (repository, workload) -> repository.getAllGamesWithTries());
+        // Writes come last, they change the history the reads above are timed on
+        operations.put("saveGame", (repository, workload) -> {
+            GameHistory game = new GameHistory(popularWord, true, popularWord.length(), 0, false);
+            repository.saveGame(game, game.getLetterTries());
+        });
+        operations.put("importHistory (CSV)", (repository, workload) -> repository.importHistory(
+                Channels.newChannel(new ByteArrayInputStream(export)), HistoryFormat.CSV, 0, IMPORT_BATCH_SIZE, null));
+        operations.put("rebuildStatistics", (repository, workload) -> repository.rebuildStatistics());
+        operations.put("applyRetentionPolicy", (repository, workload) -> {
+            // Each run prunes the tries of the next oldest games, the history only grows at the new end
+            workload.prunedGames += RETENTION_STEP_GAMES;
+            repository.setRetentionPolicy(RetentionPolicy.keepLastGames(
+                    Math.max(1, repository.getTotalGamesPlayed() - workload.prunedGames)));
+            try {
+                repository.applyRetentionPolicy();
+            } finally {
+                repository.setRetentionPolicy(null);
+            }
+        });
+        // Deletes take their games out of the workload, so no call deletes a game twice
+        operations.put("deleteGameHistory", (repository, workload) ->
+                repository.deleteGameHistory(workload.takeGameId()));
+        operations.put("deleteGames (" + BULK_GAMES + ")", (repository, workload) -> {
+            long[] gameIds = new long[Math.min(BULK_GAMES, workload.getGameCount())];
+            for (int i = 0; i < gameIds.length; i++) {
+                gameIds[i] = workload.takeGameId();
+            }
+            repository.deleteGames(gameIds);
+        });
+        return operations;
+    }
+
+    /**
+     * Write games as a CSV export, like {@link HangmanRepository#exportHistory} writes the history
+     */
+    private static byte[] formatCsv(List<GameHistory> games) {
+        StringBuilder csv = new StringBuilder(HistoryFormat.CSV.getHeader()).append('\n');
+        for (GameHistory game : games) {
+            csv.append(HistoryFormat.CSV.formatGame(new GameRow() {
+                @Override
+                public long getGameId() {
+                    return game.getGameId();
+                }
+
+                @Override
+                public String getWord() {
+                    return game.getWord();
+                }
+
+                @Override
+                public boolean isWin() {
+                    return game.isWin();
+                }
+
+                @Override
+                public int getTotalAttempts() {
+                    return game.getTotalAttempts();
+                }
+
+                @Override
+                public int getWrongAttempts() {
+                    return game.getWrongAttempts();
+                }
+
+                @Override
+                public long getTimestamp() {
+                    return game.getTimestamp();
+                }
+
+                @Override
+                public boolean isCustomWord() {
+                    return game.isCustomWord();
+                }
+
+                @Override
+                public List<LetterTry> getLetterTries() {
+                    return game.getLetterTries();
+                }
+            })).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double timeMedian(Operation operation, HangmanRepository repository, Workload workload)
+            throws IOException {
+        double[] millis = new double[SCALING_REPETITIONS];
+        for (int i = 0; i < millis.length; i++) {
+            long start = System.nanoTime();
+            operation.run(repository, workload);
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis[millis.length / 2];
+    }
+}
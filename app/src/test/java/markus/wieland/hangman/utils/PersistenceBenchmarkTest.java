@@ -0,0 +1,75 @@
+package markus.wieland.hangman.utils;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+import org.robolectric.shadows.ShadowLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the persistence benchmarks on the JVM with {@code ./gradlew test}, no device needed.
+ * Robolectric's native SQLite mode runs the repository against a real SQLite with the app's schema.
+ * The history sizes of the scaling benchmark default to 1k, 100k and 1M games and can be changed with
+ * {@code -PbenchmarkScales=1000,10000}. The results are printed to the test output.
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class PersistenceBenchmarkTest {
+
+    private static final String ARGUMENT_SCALES = "benchmarkScales";
+    private static final int INSERT_GAMES = 10_000;
+
+    @Before
+    public void setUp() {
+        ShadowLog.stream = System.out;
+    }
+
+    @Test
+    public void importIsFasterThanSavingOneByOne() {
+        List<PersistenceBenchmark.Result> results = new PersistenceBenchmark(getContext()).runInsertBenchmark(INSERT_GAMES);
+        assertEquals(2, results.size());
+        PersistenceBenchmark.Result single = results.get(0);
+        PersistenceBenchmark.Result imported = results.get(1);
+        assertEquals(INSERT_GAMES, imported.getGames());
+        assertTrue(single + " vs " + imported, imported.getRowsPerSecond() > single.getRowsPerSecond());
+    }
+
+    @Test
+    public void repositoryMethodsScaleAtMostLinearly() throws IOException {
+        List<PersistenceBenchmark.ScalingResult> results =
+                new PersistenceBenchmark(getContext()).runScalingBenchmark(getScales());
+
+        List<String> superLinear = new ArrayList<>();
+        for (PersistenceBenchmark.ScalingResult result : results) {
+            if (result.isSuperLinear()) superLinear.add(result.toString());
+        }
+        assertTrue("Methods slower than linear in the history size:\n" + String.join("\n", superLinear),
+                superLinear.isEmpty());
+    }
+
+    private static Context getContext() {
+        return RuntimeEnvironment.getApplication();
+    }
+
+    private static int[] getScales() {
+        String scales = System.getProperty(ARGUMENT_SCALES);
+        if (scales == null || scales.isEmpty()) return PersistenceBenchmark.DEFAULT_SCALES;
+
+        String[] parts = scales.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
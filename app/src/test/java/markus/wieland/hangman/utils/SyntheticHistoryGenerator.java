@@ -0,0 +1,195 @@
+package markus.wieland.hangman.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import markus.wieland.hangman.HangmanGenerator;
+import markus.wieland.hangman.database.HangmanRepository;
+import markus.wieland.hangman.database.models.GameHistory;
+import markus.wieland.hangman.database.models.LetterTry;
+
+/**
+ * Seeded generator of realistic game histories, e.g. to fill a scratch database with a million games.
+ * The same seed and word list always generate the same games.
+ *
+ * Games imitate real players: a few words are played much more often than the rest, about one in
+ * seven games uses a custom word, letters are guessed mostly in the order of their frequency with some
+ * deviation and a game ends after the word is complete or 11 wrong guesses, like {@code Hangman}.
+ * Timestamps advance by random gaps, bursts of games alternate with longer pauses.
+ */
+public class SyntheticHistoryGenerator {
+
+    private static final String TAG = "SyntheticHistory";
+    private static final String WORDS_ASSET = "words.txt";
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final int MAX_WRONG_ATTEMPTS = 11;
+    private static final double CUSTOM_WORD_SHARE = 0.15;
+    // Larger values concentrate the plays on fewer words
+    private static final double WORD_POPULARITY_SKEW = 2.5;
+    // Chance to guess the most frequent remaining letter, otherwise the next one is considered
+    private static final double FREQUENCY_ORDER_CHANCE = 0.6;
+    private static final long DEFAULT_HISTORY_DAYS = 5 * 365;
+    private static final double DEFAULT_GAMES_PER_DAY = 500;
+
+    private static final String[] FALLBACK_WORDS = {
+        "ANDROID", "HANGMAN", "KEYBOARD", "SQLITE", "JAVA", "LETTER",
+        "HISTORY", "GALLOWS", "PUZZLE", "WINDOW", "QUARTZ", "JAZZ"
+    };
+    private static final char[] LETTERS_BY_FREQUENCY = "ETAOINSHRDLCUMWFGYPBVKJXQZ".toCharArray();
+
+    private final Random random;
+    private final List<String> words;
+    private long nextTimestamp = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(DEFAULT_HISTORY_DAYS);
+    private double meanGapMillis = TimeUnit.DAYS.toMillis(1) / DEFAULT_GAMES_PER_DAY;
+
+    /**
+     * @param seed Seed of all random choices
+     * @param words Words to play, their popularity is assigned randomly from the seed
+     */
+    public SyntheticHistoryGenerator(long seed, List<String> words) {
+        this.random = new Random(seed);
+        this.words = new ArrayList<>(words.isEmpty() ? Arrays.asList(FALLBACK_WORDS) : words);
+        // The list order decides the popularity, an alphabetical list would favour words starting with A
+        Collections.shuffle(this.words, random);
+    }
+
+    /**
+     * Create a generator that plays the English words of the app
+     */
+    public static SyntheticHistoryGenerator fromAssets(Context context, long seed) {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open(WORDS_ASSET)))) {
+            String word;
+            while ((word = reader.readLine()) != null) {
+                if (!HangmanGenerator.doesNotMatchPattern(word)) words.add(word);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + WORDS_ASSET + ", using the fallback words", e);
+            words.clear();
+        }
+        return new SyntheticHistoryGenerator(seed, words);
+    }
+
+    /**
+     * Set the timestamp of the next generated game, by default five years ago
+     */
+    public void setStartTimestamp(long timestamp) {
+        this.nextTimestamp = timestamp;
+    }
+
+    /**
+     * Set the average number of games per day, which decides how far the timestamps spread
+     */
+    public void setGamesPerDay(double gamesPerDay) {
+        this.meanGapMillis = TimeUnit.DAYS.toMillis(1) / gamesPerDay;
+    }
+
+    /**
+     * Get a word the generator plays, e.g. to query it
+     * @param rank 0 for the most played word
+     */
+    public String getWord(int rank) {
+        return words.get(rank % words.size());
+    }
+
+    /**
+     * Generate games lazily, so a million games never have to be held in memory at once.
+     * Every call continues where the previous one stopped.
+     */
+    public Iterator<GameHistory> generate(int count) {
+        return new Iterator<GameHistory>() {
+            private int generated;
+
+            @Override
+            public boolean hasNext() {
+                return generated < count;
+            }
+
+            @Override
+            public GameHistory next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                generated++;
+                return nextGame();
+            }
+        };
+    }
+
+    /**
+     * Generate games into a list, only meant for small counts
+     */
+    public List<GameHistory> generateList(int count) {
+        List<GameHistory> games = new ArrayList<>(count);
+        Iterator<GameHistory> iterator = generate(count);
+        while (iterator.hasNext()) {
+            games.add(iterator.next());
+        }
+        return games;
+    }
+
+    /**
+     * Import generated games into a repository in batched transactions
+     * @return Number of imported games
+     */
+    public int fill(HangmanRepository repository, int count) {
+        long start = System.nanoTime();
+        int imported = repository.importGames(generate(count), IMPORT_BATCH_SIZE);
+        Log.d(TAG, String.format(Locale.ROOT, "Imported %d games in %d ms", imported,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        return imported;
+    }
+
+    private GameHistory nextGame() {
+        String word = words.get((int) (Math.pow(random.nextDouble(), WORD_POPULARITY_SKEW) * words.size()));
+        String letters = word.toUpperCase(Locale.ROOT);
+        GameHistory game = new GameHistory(word, false, 0, 0, random.nextDouble() < CUSTOM_WORD_SHARE);
+        game.setTimestamp(nextTimestamp);
+        // Exponential gaps: mostly short ones within a session, now and then a long pause
+        nextTimestamp += 1 + (long) (-Math.log(1 - random.nextDouble()) * meanGapMillis);
+
+        boolean[] guessed = new boolean[LETTERS_BY_FREQUENCY.length];
+        long missing = letters.chars().distinct().count();
+        int wrong = 0;
+        int tryOrder = 0;
+        while (missing > 0 && wrong < MAX_WRONG_ATTEMPTS) {
+            int index = nextGuess(guessed);
+            guessed[index] = true;
+            char letter = LETTERS_BY_FREQUENCY[index];
+            boolean isCorrect = letters.indexOf(letter) >= 0;
+            game.addLetterTry(new LetterTry(0, letter, isCorrect, tryOrder++));
+            if (isCorrect) missing--;
+            else wrong++;
+        }
+
+        game.setWin(missing == 0);
+        game.setTotalAttempts(tryOrder);
+        game.setWrongAttempts(wrong);
+        return game;
+    }
+
+    /**
+     * Pick the next letter: walk the letters not guessed yet from the most frequent one and take
+     * each with a fixed chance, the last one is always taken
+     */
+    private int nextGuess(boolean[] guessed) {
+        int candidate = -1;
+        for (int i = 0; i < guessed.length; i++) {
+            if (guessed[i]) continue;
+            candidate = i;
+            if (random.nextDouble() < FREQUENCY_ORDER_CHANCE) return i;
+        }
+        return candidate;
+    }
+}